@@ -0,0 +1,149 @@
+package com.experiment.aws.awsservicetester.config;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.experiment.aws.awsservicetester.config.AwsClientProperties.Client;
+import com.experiment.aws.awsservicetester.config.AwsClientProperties.HttpImplementation;
+
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.awscore.client.builder.AwsAsyncClientBuilder;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.awscore.client.builder.AwsSyncClientBuilder;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpConfigurationOption;
+import software.amazon.awssdk.http.SdkHttpService;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpService;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.utils.AttributeMap;
+
+/**
+ * Applies {@link AwsClientProperties.Client} settings to an SDK client builder. The HTTP implementation is
+ * looked up through the SDK's own service loader, and the pool and timeout settings are passed as generic
+ * SDK HTTP options that every implementation understands. The SDK builds and closes the HTTP client
+ * together with the service client. Every client reports its calls through {@link AwsMetricsInterceptor}.
+ */
+final class AwsClientFactory {
+
+    // Package of each implementation's SdkHttpService / SdkAsyncHttpService, and the module that provides it
+    private static final Map<HttpImplementation, String> SERVICE_PACKAGES = Map.of(
+            HttpImplementation.APACHE, "software.amazon.awssdk.http.apache.",
+            HttpImplementation.URL_CONNECTION, "software.amazon.awssdk.http.urlconnection.",
+            HttpImplementation.NETTY, "software.amazon.awssdk.http.nio.netty.",
+            HttpImplementation.CRT, "software.amazon.awssdk.http.crt.");
+    private static final Map<HttpImplementation, String> MODULES = Map.of(
+            HttpImplementation.APACHE, "apache-client",
+            HttpImplementation.URL_CONNECTION, "url-connection-client",
+            HttpImplementation.NETTY, "netty-nio-client",
+            HttpImplementation.CRT, "aws-crt-client");
+
+    private AwsClientFactory() {
+    }
+
+    static <B extends AwsClientBuilder<B, C> & AwsSyncClientBuilder<B, C>, C> C buildSync(String service, B builder,
+            Client settings, MeterRegistry metrics) {
+        applyCommon(builder, settings);
+        addMetrics(builder, service, metrics);
+        builder.httpClientBuilder(syncHttpClient(service, settings));
+        return builder.build();
+    }
+
+    static <B extends AwsClientBuilder<B, C> & AwsAsyncClientBuilder<B, C>, C> C buildAsync(String service, B builder,
+            Client settings, MeterRegistry metrics) {
+        applyCommon(builder, settings);
+        addMetrics(builder, service, metrics);
+        builder.httpClientBuilder(asyncHttpClient(service, settings));
+        return builder.build();
+    }
+
+    /**
+     * Region (unset: the SDK's default region chain), credentials, endpoint override and API call timeouts.
+     * Other override settings made on the builder beforehand (e.g. retry policy) are kept.
+     */
+    static void applyCommon(AwsClientBuilder<?, ?> builder, Client settings) {
+        if (settings.getRegion() != null && !settings.getRegion().isBlank()) {
+            builder.region(Region.of(settings.getRegion()));
+        }
+        builder.credentialsProvider(DefaultCredentialsProvider.create());
+        if (settings.getEndpointOverride() != null) {
+            builder.endpointOverride(settings.getEndpointOverride());
+        }
+        ClientOverrideConfiguration.Builder overrides = builder.overrideConfiguration().toBuilder();
+        if (settings.getApiCallTimeout() != null) {
+            overrides.apiCallTimeout(settings.getApiCallTimeout());
+        }
+        if (settings.getApiCallAttemptTimeout() != null) {
+            overrides.apiCallAttemptTimeout(settings.getApiCallAttemptTimeout());
+        }
+        builder.overrideConfiguration(overrides.build());
+    }
+
+    private static void addMetrics(AwsClientBuilder<?, ?> builder, String service, MeterRegistry metrics) {
+        builder.overrideConfiguration(builder.overrideConfiguration().toBuilder()
+                .addExecutionInterceptor(new AwsMetricsInterceptor(metrics, service))
+                .build());
+    }
+
+    static SdkHttpClient.Builder<?> syncHttpClient(String service, Client settings) {
+        HttpImplementation implementation = settings.getHttpImplementation();
+        String servicePackage = SERVICE_PACKAGES.get(implementation);
+        SdkHttpClient.Builder<?> delegate = ServiceLoader.load(SdkHttpService.class).stream()
+                .filter(provider -> provider.type().getName().startsWith(servicePackage))
+                .findFirst()
+                .map(provider -> (SdkHttpClient.Builder<?>) provider.get().createHttpClientBuilder())
+                .orElseThrow(() -> missing(service, implementation, "synchronous"));
+        return new TunedSyncBuilder(delegate, httpOptions(settings));
+    }
+
+    static SdkAsyncHttpClient.Builder<?> asyncHttpClient(String service, Client settings) {
+        HttpImplementation implementation = settings.getHttpImplementation();
+        String servicePackage = SERVICE_PACKAGES.get(implementation);
+        SdkAsyncHttpClient.Builder<?> delegate = ServiceLoader.load(SdkAsyncHttpService.class).stream()
+                .filter(provider -> provider.type().getName().startsWith(servicePackage))
+                .findFirst()
+                .map(provider -> (SdkAsyncHttpClient.Builder<?>) provider.get().createAsyncHttpClientFactory())
+                .orElseThrow(() -> missing(service, implementation, "asynchronous"));
+        return new TunedAsyncBuilder(delegate, httpOptions(settings));
+    }
+
+    static AttributeMap httpOptions(Client settings) {
+        return AttributeMap.builder()
+                .put(SdkHttpConfigurationOption.MAX_CONNECTIONS, settings.getMaxConnections())
+                .put(SdkHttpConfigurationOption.CONNECTION_ACQUIRE_TIMEOUT, settings.getConnectionAcquisitionTimeout())
+                .put(SdkHttpConfigurationOption.CONNECTION_TIMEOUT, settings.getConnectionTimeout())
+                .put(SdkHttpConfigurationOption.READ_TIMEOUT, settings.getSocketTimeout())
+                .put(SdkHttpConfigurationOption.WRITE_TIMEOUT, settings.getSocketTimeout())
+                .put(SdkHttpConfigurationOption.TCP_KEEPALIVE, settings.isTcpKeepAlive())
+                .put(SdkHttpConfigurationOption.REAP_IDLE_CONNECTIONS, settings.isReapIdleConnections())
+                .put(SdkHttpConfigurationOption.CONNECTION_MAX_IDLE_TIMEOUT, settings.getConnectionMaxIdleTime())
+                .put(SdkHttpConfigurationOption.CONNECTION_TIME_TO_LIVE, settings.getConnectionTimeToLive())
+                .build();
+    }
+
+    private static IllegalStateException missing(String service, HttpImplementation implementation, String kind) {
+        return new IllegalStateException("No " + kind + " " + implementation + " HTTP client for " + service
+                + ": add software.amazon.awssdk:" + MODULES.get(implementation) + " to the classpath or choose another "
+                + "aws.clients." + service + ".http-implementation");
+    }
+
+    // Our options take precedence over the service defaults the SDK passes in
+    private record TunedSyncBuilder(SdkHttpClient.Builder<?> delegate, AttributeMap options)
+            implements SdkHttpClient.Builder<TunedSyncBuilder> {
+        @Override
+        public SdkHttpClient buildWithDefaults(AttributeMap serviceDefaults) {
+            return delegate.buildWithDefaults(options.merge(serviceDefaults));
+        }
+    }
+
+    private record TunedAsyncBuilder(SdkAsyncHttpClient.Builder<?> delegate, AttributeMap options)
+            implements SdkAsyncHttpClient.Builder<TunedAsyncBuilder> {
+        @Override
+        public SdkAsyncHttpClient buildWithDefaults(AttributeMap serviceDefaults) {
+            return delegate.buildWithDefaults(options.merge(serviceDefaults));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.experiment.aws.awsservicetester.config;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Per-service AWS client settings ({@code aws.clients.s3.*}, {@code aws.clients.textract.*},
+ * {@code aws.clients.bedrock.*}). The S3 settings also apply to the presigner, which only uses
+ * the region and the endpoint override.
+ */
+@ConfigurationProperties(prefix = "aws.clients")
+public class AwsClientProperties {
+
+    /**
+     * HTTP client implementations. APACHE and URL_CONNECTION are synchronous, NETTY is asynchronous,
+     * CRT is both. Implementations other than APACHE and NETTY need their SDK module on the classpath.
+     */
+    public enum HttpImplementation { APACHE, URL_CONNECTION, NETTY, CRT }
+
+    private Client s3 = new Client(HttpImplementation.APACHE);
+    private Client textract = new Client(HttpImplementation.APACHE);
+    private Client bedrock = new Client(HttpImplementation.NETTY);
+
+    public Client getS3() {
+        return s3;
+    }
+
+    public void setS3(Client s3) {
+        this.s3 = s3;
+    }
+
+    public Client getTextract() {
+        return textract;
+    }
+
+    public void setTextract(Client textract) {
+        this.textract = textract;
+    }
+
+    public Client getBedrock() {
+        return bedrock;
+    }
+
+    public void setBedrock(Client bedrock) {
+        this.bedrock = bedrock;
+    }
+
+    public static class Client {
+        private String region;
+        // e.g. a local stand-in for tests; null uses the regional AWS endpoint
+        private URI endpointOverride;
+        private HttpImplementation httpImplementation;
+        private int maxConnections = 50;
+        // How long a request waits for a pooled connection before failing
+        private Duration connectionAcquisitionTimeout = Duration.ofSeconds(10);
+        private Duration connectionTimeout = Duration.ofSeconds(2);
+        private Duration socketTimeout = Duration.ofSeconds(30);
+        private boolean tcpKeepAlive = true;
+        // Closes pooled connections idle for longer than connectionMaxIdleTime in the background
+        private boolean reapIdleConnections = true;
+        private Duration connectionMaxIdleTime = Duration.ofSeconds(60);
+        // Zero keeps connections until they go idle or fail
+        private Duration connectionTimeToLive = Duration.ZERO;
+        // Whole call including retries, and a single attempt; null means no limit
+        private Duration apiCallTimeout;
+        private Duration apiCallAttemptTimeout;
+
+        public Client() {
+        }
+
+        Client(HttpImplementation httpImplementation) {
+            this.httpImplementation = httpImplementation;
+        }
+
+        public String getRegion() {
+            return region;
+        }
+
+        public void setRegion(String region) {
+            this.region = region;
+        }
+
+        public URI getEndpointOverride() {
+            return endpointOverride;
+        }
+
+        public void setEndpointOverride(URI endpointOverride) {
+            this.endpointOverride = endpointOverride;
+        }
+
+        public HttpImplementation getHttpImplementation() {
+            return httpImplementation;
+        }
+
+        public void setHttpImplementation(HttpImplementation httpImplementation) {
+            this.httpImplementation = httpImplementation;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Duration getConnectionAcquisitionTimeout() {
+            return connectionAcquisitionTimeout;
+        }
+
+        public void setConnectionAcquisitionTimeout(Duration connectionAcquisitionTimeout) {
+            this.connectionAcquisitionTimeout = connectionAcquisitionTimeout;
+        }
+
+        public Duration getConnectionTimeout() {
+            return connectionTimeout;
+        }
+
+        public void setConnectionTimeout(Duration connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+        }
+
+        public Duration getSocketTimeout() {
+            return socketTimeout;
+        }
+
+        public void setSocketTimeout(Duration socketTimeout) {
+            this.socketTimeout = socketTimeout;
+        }
+
+        public boolean isTcpKeepAlive() {
+            return tcpKeepAlive;
+        }
+
+        public void setTcpKeepAlive(boolean tcpKeepAlive) {
+            this.tcpKeepAlive = tcpKeepAlive;
+        }
+
+        public boolean isReapIdleConnections() {
+            return reapIdleConnections;
+        }
+
+        public void setReapIdleConnections(boolean reapIdleConnections) {
+            this.reapIdleConnections = reapIdleConnections;
+        }
+
+        public Duration getConnectionMaxIdleTime() {
+            return connectionMaxIdleTime;
+        }
+
+        public void setConnectionMaxIdleTime(Duration connectionMaxIdleTime) {
+            this.connectionMaxIdleTime = connectionMaxIdleTime;
+        }
+
+        public Duration getConnectionTimeToLive() {
+            return connectionTimeToLive;
+        }
+
+        public void setConnectionTimeToLive(Duration connectionTimeToLive) {
+            this.connectionTimeToLive = connectionTimeToLive;
+        }
+
+        public Duration getApiCallTimeout() {
+            return apiCallTimeout;
+        }
+
+        public void setApiCallTimeout(Duration apiCallTimeout) {
+            this.apiCallTimeout = apiCallTimeout;
+        }
+
+        public Duration getApiCallAttemptTimeout() {
+            return apiCallAttemptTimeout;
+        }
+
+        public void setApiCallAttemptTimeout(Duration apiCallAttemptTimeout) {
+            this.apiCallAttemptTimeout = apiCallAttemptTimeout;
+        }
+    }
+}
@@ -1,45 +1,68 @@
-package com.experiment.aws.awsservicetester.config;
-
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.presigner.S3Presigner;
-import software.amazon.awssdk.services.textract.TextractClient;
-
-@Configuration
-public class AwsConfig {
-    @Bean
-    public S3Client s3Client() {
-        return S3Client.builder()
-            .region(Region.US_EAST_1) // Change as needed
-            .credentialsProvider(DefaultCredentialsProvider.create())
-            .build();
-    }
-    
-    @Bean
-    public S3Presigner s3Presigner() {
-        return S3Presigner.builder()
-            .region(Region.US_EAST_1) // Change as needed
-            .credentialsProvider(DefaultCredentialsProvider.create())
-            .build();	
-    }
-    
-    @Bean
-    public TextractClient textractClient() {
-        return TextractClient.builder()
-                .region(Region.US_EAST_1) // Change to your region
-                .build();
-    }
-    
-    @Bean
-    public BedrockRuntimeClient bedrockRuntimeClient() {
-        return BedrockRuntimeClient.builder()
-            .region(Region.US_EAST_1)
-            .credentialsProvider(DefaultCredentialsProvider.create())
-            .build();
-    }
-}
\ No newline at end of file
+package com.experiment.aws.awsservicetester.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.experiment.aws.awsservicetester.config.AwsClientProperties.Client;
+
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.textract.TextractClient;
+
+/**
+ * AWS clients, each configured from its {@code aws.clients.<service>.*} properties (see {@link AwsClientProperties}).
+ */
+@Configuration
+@EnableConfigurationProperties(AwsClientProperties.class)
+public class AwsConfig {
+
+    @Bean
+    public S3Client s3Client(AwsClientProperties properties, MeterRegistry metrics) {
+        Client settings = properties.getS3();
+        S3ClientBuilder builder = S3Client.builder();
+        if (settings.getEndpointOverride() != null) {
+            // local S3 stand-ins (MinIO, LocalStack) usually do not resolve bucket subdomains
+            builder.forcePathStyle(true);
+        }
+        return AwsClientFactory.buildSync("s3", builder, settings, metrics);
+    }
+
+    @Bean
+    public S3Presigner s3Presigner(AwsClientProperties properties) {
+        // Presigning is local; only the region and endpoint of the S3 settings apply
+        Client settings = properties.getS3();
+        S3Presigner.Builder builder = S3Presigner.builder()
+            .credentialsProvider(DefaultCredentialsProvider.create());
+        if (settings.getRegion() != null && !settings.getRegion().isBlank()) {
+            builder.region(Region.of(settings.getRegion()));
+        }
+        if (settings.getEndpointOverride() != null) {
+            builder.endpointOverride(settings.getEndpointOverride())
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+        }
+        return builder.build();
+    }
+
+    @Bean
+    public TextractClient textractClient(AwsClientProperties properties, MeterRegistry metrics) {
+        return AwsClientFactory.buildSync("textract", TextractClient.builder(), properties.getTextract(), metrics);
+    }
+
+    @Bean
+    public BedrockRuntimeAsyncClient bedrockRuntimeAsyncClient(AwsClientProperties properties, MeterRegistry metrics) {
+        BedrockRuntimeAsyncClientBuilder builder = BedrockRuntimeAsyncClient.builder()
+            // BedrockInvoker owns retries (throttling-aware backoff + circuit breaker)
+            .overrideConfiguration(o -> o.retryPolicy(RetryPolicy.none()));
+        return AwsClientFactory.buildAsync("bedrock", builder, properties.getBedrock(), metrics);
+    }
+}
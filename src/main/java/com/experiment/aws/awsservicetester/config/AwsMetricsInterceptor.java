@@ -0,0 +1,96 @@
+package com.experiment.aws.awsservicetester.config;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+/**
+ * Times every API call a client makes (all attempts and backoff included) as {@code aws.client.requests},
+ * tagged with service, operation, outcome and, for Bedrock, the model id. Outcome is {@code success}, the
+ * service's error code (e.g. {@code ThrottlingException}), {@code timeout}, {@code cancelled} or
+ * {@code client_error}. Each HTTP attempt also counts in {@code aws.client.attempts}, so retries show up as
+ * attempts per request.
+ */
+final class AwsMetricsInterceptor implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> START_NANOS = new ExecutionAttribute<>("MetricsStartNanos");
+
+    private final MeterRegistry metrics;
+    private final String service;
+
+    AwsMetricsInterceptor(MeterRegistry metrics, String service) {
+        this.metrics = metrics;
+        this.service = service;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes attributes) {
+        attributes.putAttribute(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes attributes) {
+        Counter.builder("aws.client.attempts")
+                .description("HTTP attempts of AWS API calls, retries included")
+                .tags("service", service, "operation", operation(attributes))
+                .register(metrics)
+                .increment();
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes attributes) {
+        record(context.request(), attributes, "success");
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes attributes) {
+        record(context.request(), attributes, outcome(context.exception()));
+    }
+
+    private void record(SdkRequest request, ExecutionAttributes attributes, String outcome) {
+        Long start = attributes.getAttribute(START_NANOS);
+        if (start == null) {
+            return;
+        }
+        String model = request.getValueForField("modelId", String.class).orElse("none");
+        Timer.builder("aws.client.requests")
+                .description("AWS API calls from first attempt to final response")
+                .tags("service", service, "operation", operation(attributes), "outcome", outcome, "model", model)
+                .register(metrics)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static String operation(ExecutionAttributes attributes) {
+        String operation = attributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        return operation != null ? operation : "unknown";
+    }
+
+    static String outcome(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof AwsServiceException se && se.awsErrorDetails() != null
+                    && se.awsErrorDetails().errorCode() != null) {
+                return se.awsErrorDetails().errorCode();
+            }
+            if (t instanceof ApiCallTimeoutException || t instanceof ApiCallAttemptTimeoutException) {
+                return "timeout";
+            }
+            if (t instanceof CancellationException || t instanceof InterruptedException) {
+                return "cancelled";
+            }
+        }
+        return "client_error";
+    }
+}
@@ -0,0 +1,65 @@
+package com.experiment.aws.awsservicetester.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+
+import com.experiment.aws.awsservicetester.service.FieldExtractor;
+import com.experiment.aws.awsservicetester.service.PatternFieldExtractor;
+
+/**
+ * Built-in deterministic extractors for the extraction fast path. The registry tries them in
+ * {@link Order} and uses the first that supports a field (by whole words of the field name);
+ * add another {@link FieldExtractor} bean to extend it.
+ */
+@Configuration
+public class FieldExtractorConfig {
+
+    private static final String MONTH = "(?:jan|feb|mar|apr|may|jun|jul|aug|sep|sept|oct|nov|dec)[a-z]*\\.?";
+
+    @Bean
+    @Order(1)
+    public FieldExtractor dateExtractor() {
+        return new PatternFieldExtractor("date", "date|dob|birth|birthday|expiry|expiration|expires|issued|valid|validity",
+                "(?i)\\b(?:\\d{4}-\\d{2}-\\d{2}"
+                        + "|\\d{1,2}[/.-]\\d{1,2}[/.-]\\d{2,4}"
+                        + "|\\d{1,2}(?:st|nd|rd|th)?[ -]" + MONTH + "[ ,-]+\\d{4}"
+                        + "|" + MONTH + " \\d{1,2},? \\d{4})\\b", true);
+    }
+
+    @Bean
+    @Order(2)
+    public FieldExtractor panExtractor() {
+        // Indian Permanent Account Number: 5 letters, 4 digits, 1 letter
+        return new PatternFieldExtractor("pan", "pan", "\\b[A-Z]{5}[0-9]{4}[A-Z]\\b");
+    }
+
+    @Bean
+    @Order(3)
+    public FieldExtractor emailExtractor() {
+        return new PatternFieldExtractor("email", "email|mail|e_mail", "[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}");
+    }
+
+    @Bean
+    @Order(4)
+    public FieldExtractor phoneExtractor() {
+        return new PatternFieldExtractor("phone", "phone|mobile|tel|telephone|cell|contact_(?:no|num|number)",
+                "(?<![\\w+])(?:\\+\\d{1,3}[\\s-]?)?(?:\\(?\\d{2,5}\\)?[\\s-]?)?\\d{3,5}[\\s-]?\\d{4}(?!\\d)", true);
+    }
+
+    @Bean
+    @Order(5)
+    public FieldExtractor amountExtractor() {
+        // "total" and "due" also name counts and non-money fields (total_pages, due_diligence)
+        return new PatternFieldExtractor("amount",
+                "amount|price|balance|fees?|cost|paid|total(?!_(?:pages?|count|items?|quantity|qty))|due(?!_diligence)",
+                "(?:[$€£₹]|\\b(?:INR|USD|EUR|GBP|Rs\\.?))\\s?\\d[\\d,]*(?:\\.\\d{1,2})?", true);
+    }
+
+    @Bean
+    @Order(6)
+    public FieldExtractor genderExtractor() {
+        return PatternFieldExtractor.dictionary("gender", "gender|sex",
+                "male", "female", "transgender");
+    }
+}
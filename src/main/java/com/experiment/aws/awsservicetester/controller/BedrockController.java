@@ -1,47 +1,148 @@
-package com.experiment.aws.awsservicetester.controller;
-
-import java.util.Map;
-
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
-
-import com.experiment.aws.awsservicetester.service.BedrockService;
-
-@RestController
-@RequestMapping("/api/bedrock")
-public class BedrockController {
-
-	private final BedrockService bedrockService;
-
-    public BedrockController(BedrockService bedrockService) {
-        this.bedrockService = bedrockService;
-    }
-
-    @PostMapping("/playground")
-    public String playground(@RequestParam String prompt) {
-        try {
-            return bedrockService.getModelResponse(prompt);
-        } catch (Exception e) {
-            return "Error: " + e.getMessage();
-        }
-    }
-    
-    @PostMapping("/sentiment")
-    public ResponseEntity<Map<String, String>> sentiment(@RequestParam String text) {
-        try {
-            String sentiment = bedrockService.analyzeSentiment(text);
-            return ResponseEntity.ok(Map.of(
-                "text", text,
-                "sentiment", sentiment
-            ));
-        } catch (Exception e) {
-            return ResponseEntity.status(500).body(Map.of(
-                "text", text,
-                "sentiment", "error: " + e.getMessage()
-            ));
-        }
-    }
-}
+package com.experiment.aws.awsservicetester.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.experiment.aws.awsservicetester.service.BedrockService;
+import com.experiment.aws.awsservicetester.service.SentimentBatcher;
+
+@RestController
+@RequestMapping("/api/bedrock")
+public class BedrockController {
+
+	private final BedrockService bedrockService;
+	private final SentimentBatcher sentimentBatcher;
+
+    public BedrockController(BedrockService bedrockService, SentimentBatcher sentimentBatcher) {
+        this.bedrockService = bedrockService;
+        this.sentimentBatcher = sentimentBatcher;
+    }
+
+    @PostMapping("/playground")
+    public CompletableFuture<String> playground(@RequestParam String prompt, @RequestParam(defaultValue = "false") boolean cache) {
+        // Returned as a future so the servlet thread is released while Bedrock answers
+        return bedrockService.getModelResponseAsync(prompt, cache)
+                .exceptionally(e -> "Error: " + (e.getCause() != null ? e.getCause() : e).getMessage());
+    }
+    
+    /**
+     * Server-Sent Events variant of the playground: each text delta is pushed as a "delta" event
+     * as soon as Bedrock produces it, followed by a single "done" (or "error") event.
+     * If the client disconnects the Bedrock stream is cancelled. The emitter and the Bedrock stream share
+     * one upper bound, {@code bedrock.stream.timeout-seconds}.
+     */
+    @PostMapping(value = "/playground", params = "stream=true")
+    public SseEmitter playgroundStream(@RequestParam String prompt) {
+        SseEmitter emitter = new SseEmitter(bedrockService.getStreamTimeout().toMillis());
+        CompletableFuture<Void> invocation = bedrockService.streamModelResponse(prompt, delta -> {
+            try {
+                emitter.send(SseEmitter.event().name("delta").data(delta));
+            } catch (IOException e) {
+                // client went away; propagate so the SDK tears the stream down
+                throw new IllegalStateException("Client disconnected", e);
+            }
+        });
+        invocation.whenComplete((ignored, error) -> {
+            try {
+                if (error == null) {
+                    emitter.send(SseEmitter.event().name("done").data(""));
+                } else {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    emitter.send(SseEmitter.event().name("error").data(String.valueOf(cause.getMessage())));
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        Runnable abort = () -> invocation.cancel(true);
+        emitter.onCompletion(abort);
+        emitter.onTimeout(abort);
+        emitter.onError(e -> abort.run());
+        return emitter;
+    }
+
+    @PostMapping("/sentiment")
+    public ResponseEntity<Map<String, String>> sentiment(@RequestParam String text) {
+        try {
+            // goes through the micro-batcher so concurrent requests share one model call
+            String sentiment = sentimentBatcher.submit(text).get();
+            return ResponseEntity.ok(Map.of(
+                "text", text,
+                "sentiment", sentiment
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of(
+                "text", text,
+                "sentiment", "error: " + rootMessage(e)
+            ));
+        }
+    }
+
+    /**
+     * Classifies a JSON array of texts. Results come back in input order, one entry per text;
+     * a failed item carries "error: ..." as its sentiment instead of failing the whole request.
+     */
+    @PostMapping("/sentiment/batch")
+    public ResponseEntity<?> sentimentBatch(@RequestBody List<String> texts) {
+        if (texts == null || texts.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "texts must not be empty"));
+        }
+        List<CompletableFuture<String>> futures = sentimentBatcher.submitAll(texts);
+        List<Map<String, String>> results = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            String sentiment;
+            try {
+                sentiment = futures.get(i).get();
+            } catch (Exception e) {
+                sentiment = "error: " + rootMessage(e);
+            }
+            results.add(Map.of("text", texts.get(i), "sentiment", sentiment));
+        }
+        return ResponseEntity.ok(results);
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(bedrockService.getCacheStats());
+    }
+
+    @GetMapping("/invocations/stats")
+    public ResponseEntity<Map<String, Object>> getInvocationStats() {
+        return ResponseEntity.ok(bedrockService.getInvocationStats());
+    }
+
+    /**
+     * Model per operation, which model is currently active, and per-model latency histograms.
+     */
+    @GetMapping("/models/stats")
+    public ResponseEntity<Map<String, Object>> getRoutingStats() {
+        return ResponseEntity.ok(bedrockService.getRoutingStats());
+    }
+
+    @GetMapping("/prompt-cache/stats")
+    public ResponseEntity<Map<String, Object>> getPromptCacheStats() {
+        return ResponseEntity.ok(bedrockService.getPromptCacheStats());
+    }
+
+    private static String rootMessage(Exception e) {
+        if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+        return cause.getMessage();
+    }
+}
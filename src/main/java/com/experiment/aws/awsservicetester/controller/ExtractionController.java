@@ -1,49 +1,183 @@
-package com.experiment.aws.awsservicetester.controller;
-
-import java.util.Map;
-
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.*;
-
-import com.experiment.aws.awsservicetester.models.ExtractionJobResult;
-import com.experiment.aws.awsservicetester.service.ExtractionService;
-
-@RestController
-@RequestMapping("/api/extraction")
-public class ExtractionController {
-
-    private final ExtractionService extractionService;
-
-    public ExtractionController(ExtractionService fieldExtractionService) {
-        this.extractionService = fieldExtractionService;
-    }
-    
-    @PostMapping("/start")
-    public ResponseEntity<Map<String, String>> startExtraction(
-            @RequestParam String bucket,
-            @RequestParam String key,
-            @RequestParam String fields
-    ) {
-        try {
-            String jobId = extractionService.startExtractionJob(bucket, key, fields);
-            if (fields == null || fields.trim().isEmpty()) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Field must not be empty or null"));
-            }
-            return ResponseEntity.ok(Map.of(
-                    "jobId", jobId,
-                    "message", "Extraction job started. Use the jobId to poll for results."
-            ));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-        }
-    }
-
-    @GetMapping("/results")
-    public ResponseEntity<?> getExtractionResult(@RequestParam String jobId) {
-        ExtractionJobResult result = extractionService.getExtractionResult(jobId);
-        if ("NOT_FOUND".equals(result.status)) {
-            return ResponseEntity.status(404).body(Map.of("error", result.error));
-        }
-        return ResponseEntity.ok(result);
-    }
+package com.experiment.aws.awsservicetester.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.experiment.aws.awsservicetester.models.BatchExtractionResult;
+import com.experiment.aws.awsservicetester.models.BatchItemResult;
+import com.experiment.aws.awsservicetester.models.ExtractionJobResult;
+import com.experiment.aws.awsservicetester.models.ExtractionOptions;
+import com.experiment.aws.awsservicetester.service.BatchExtractionService;
+import com.experiment.aws.awsservicetester.service.ExtractionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@RestController
+@RequestMapping("/api/extraction")
+public class ExtractionController {
+
+    private final ExtractionService extractionService;
+    private final BatchExtractionService batchExtractionService;
+    private final ObjectMapper objectMapper;
+    private final long maxWaitSeconds;
+
+    public ExtractionController(ExtractionService fieldExtractionService,
+                                BatchExtractionService batchExtractionService,
+                                ObjectMapper objectMapper,
+                                @Value("${api.long-poll.max-wait-seconds:60}") long maxWaitSeconds) {
+        this.extractionService = fieldExtractionService;
+        this.batchExtractionService = batchExtractionService;
+        this.objectMapper = objectMapper;
+        this.maxWaitSeconds = maxWaitSeconds;
+    }
+    
+    @PostMapping("/start")
+    public ResponseEntity<Map<String, String>> startExtraction(
+            @RequestParam String bucket,
+            @RequestParam String key,
+            @RequestParam String fields,
+            @RequestParam(defaultValue = "single") String mode,
+            @RequestParam(defaultValue = "first_non_empty") String merge,
+            @RequestParam(defaultValue = "false") boolean bypassCache,
+            @RequestParam(required = false) String callbackUrl,
+            @RequestParam(required = false) Long deadlineSeconds
+    ) {
+        try {
+            String jobId = extractionService.startExtractionJob(bucket, key, fields, ExtractionOptions.of(mode, merge),
+                    bypassCache, callbackUrl, deadlineSeconds);
+            if (fields == null || fields.trim().isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Field must not be empty or null"));
+            }
+            return ResponseEntity.ok(Map.of(
+                    "jobId", jobId,
+                    "message", "Extraction job started. Use the jobId to poll for results."
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/results")
+    public ResponseEntity<?> getExtractionResult(@RequestParam String jobId) {
+        ExtractionJobResult result = extractionService.getExtractionResult(jobId);
+        if ("NOT_FOUND".equals(result.status)) {
+            return ResponseEntity.status(404).body(Map.of("error", result.error));
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/cancel")
+    public ResponseEntity<?> cancelExtraction(@RequestParam String jobId) {
+        ExtractionJobResult result = extractionService.cancelExtractionJob(jobId);
+        if ("NOT_FOUND".equals(result.status)) {
+            return ResponseEntity.status(404).body(Map.of("error", result.error));
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Long-poll variant of getExtractionResult: holds the request open (without blocking a servlet thread)
+     * until the job completes or {@code wait} seconds elapse, then returns the current result.
+     */
+    @GetMapping(value = "/results", params = "wait")
+    public DeferredResult<ResponseEntity<?>> waitForExtractionResult(
+            @RequestParam String jobId,
+            @RequestParam long wait
+    ) {
+        long waitMillis = Math.max(1, Math.min(wait, maxWaitSeconds)) * 1000;
+        DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>(waitMillis);
+        deferred.onTimeout(() -> deferred.setResult(getExtractionResult(jobId)));
+        extractionService.awaitCompletion(jobId).thenAccept(result -> deferred.setResult(getExtractionResult(jobId)));
+        return deferred;
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(extractionService.getCacheStats());
+    }
+
+    @GetMapping("/fast-path/stats")
+    public ResponseEntity<Map<String, Object>> getFastPathStats() {
+        return ResponseEntity.ok(extractionService.getFastPathStats());
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, String>> startBatchExtraction(
+            @RequestParam String bucket,
+            @RequestParam(required = false) List<String> keys,
+            @RequestParam(required = false) String prefix,
+            @RequestParam String fields,
+            @RequestParam(defaultValue = "single") String mode,
+            @RequestParam(defaultValue = "first_non_empty") String merge,
+            @RequestParam(defaultValue = "false") boolean bypassCache
+    ) {
+        if (fields.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Field must not be empty or null"));
+        }
+        if ((keys == null || keys.isEmpty()) && (prefix == null || prefix.isBlank())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Either keys or prefix must be provided"));
+        }
+        try {
+            String batchId = batchExtractionService.startBatch(bucket, keys, prefix, fields,
+                    ExtractionOptions.of(mode, merge), bypassCache);
+            return ResponseEntity.ok(Map.of(
+                    "batchId", batchId,
+                    "message", "Batch extraction started. Use the batchId to poll for progress and results."
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/batch/status")
+    public ResponseEntity<?> getBatchStatus(@RequestParam String batchId) {
+        BatchExtractionResult result = batchExtractionService.getBatchStatus(batchId);
+        if ("NOT_FOUND".equals(result.status)) {
+            return ResponseEntity.status(404).body(Map.of("error", result.error));
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/batch/cancel")
+    public ResponseEntity<?> cancelBatch(@RequestParam String batchId) {
+        BatchExtractionResult result = batchExtractionService.cancelBatch(batchId);
+        if ("NOT_FOUND".equals(result.status)) {
+            return ResponseEntity.status(404).body(Map.of("error", result.error));
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Streams one JSON object per document (NDJSON) once the batch has completed (or was cancelled,
+     * in which case only the documents that finished are included).
+     * While the batch is still running, returns 202 with the current progress instead.
+     */
+    @GetMapping("/batch/results")
+    public ResponseEntity<?> getBatchResults(@RequestParam String batchId) {
+        BatchExtractionResult result = batchExtractionService.getBatchStatus(batchId);
+        if ("NOT_FOUND".equals(result.status)) {
+            return ResponseEntity.status(404).body(Map.of("error", result.error));
+        }
+        if ("IN_PROGRESS".equals(result.status)) {
+            return ResponseEntity.accepted().body(result);
+        }
+        if ("FAILED".equals(result.status)) {
+            return ResponseEntity.status(500).body(result);
+        }
+        StreamingResponseBody body = out -> {
+            for (BatchItemResult item : batchExtractionService.getBatchItems(batchId)) {
+                out.write(objectMapper.writeValueAsBytes(item));
+                out.write('\n');
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 }
\ No newline at end of file
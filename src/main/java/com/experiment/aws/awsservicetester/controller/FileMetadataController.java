@@ -1,72 +1,171 @@
-package com.experiment.aws.awsservicetester.controller;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MaxUploadSizeExceededException;
-import org.springframework.web.multipart.MultipartFile;
-
-import com.experiment.aws.awsservicetester.models.FileMetadataResponse;
-import com.experiment.aws.awsservicetester.service.FileMetadataService;
-
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Map;
-
-@RestController
-@RequestMapping("/api/metadata/files")
-public class FileMetadataController {
-	
-	private static final Logger log = LoggerFactory.getLogger(FileMetadataController.class);
-    private final FileMetadataService fileMetadataService;
-
-    public FileMetadataController(FileMetadataService fileMetadataService) {
-        this.fileMetadataService = fileMetadataService;
-    }
-
-    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<FileMetadataResponse> uploadFile(@RequestParam("file") MultipartFile file) {
-        try {
-            if (file.isEmpty()) {
-                return ResponseEntity.badRequest().body(null);
-            }
-            
-            log.info("Received file upload: {}, size: {}", file.getOriginalFilename(), file.getSize());
-            
-            Map<Integer, Map<String, Object>> metadata = fileMetadataService.extractMetadata(file);
-            
-            // Build response using the model class
-            FileMetadataResponse response = FileMetadataResponse.builder()
-                .filename(file.getOriginalFilename())
-                .contentType(file.getContentType())
-                .totalSize(file.getSize())
-                .pageCount(metadata.size())
-                .pages(metadata)
-                .processedAt(ZonedDateTime.now(ZoneOffset.UTC)
-                        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")))
-                .build();
-            
-            return ResponseEntity.ok(response);
-        } catch (UnsupportedOperationException e) {
-            log.warn("Unsupported file type", e);
-            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(null);
-        } catch (Exception e) {
-            log.error("Error processing file", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
-        }
-    }
-    
-    @ExceptionHandler(MaxUploadSizeExceededException.class)
-    public ResponseEntity<?> handleMaxSizeException(MaxUploadSizeExceededException e) {
-        log.warn("File size limit exceeded", e);
-        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
-                .body(Map.of(
-                    "error", "File size limit exceeded",
-                    "message", "Maximum allowed file size is defined in application properties"
-                ));
-    }
-}
+package com.experiment.aws.awsservicetester.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.experiment.aws.awsservicetester.config.AsyncTimeoutConfig;
+import com.experiment.aws.awsservicetester.models.BatchMetadataItem;
+import com.experiment.aws.awsservicetester.models.FileMetadataResponse;
+import com.experiment.aws.awsservicetester.models.PageRange;
+import com.experiment.aws.awsservicetester.service.BatchMetadataService;
+import com.experiment.aws.awsservicetester.service.FileMetadataService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@RestController
+@RequestMapping("/api/metadata/files")
+public class FileMetadataController {
+	
+	private static final Logger log = LoggerFactory.getLogger(FileMetadataController.class);
+    private final FileMetadataService fileMetadataService;
+    private final BatchMetadataService batchMetadataService;
+    private final ObjectMapper objectMapper;
+    // Batches stream for as long as their files take, so they get their own async timeout
+    private final Duration batchTimeout;
+
+    public FileMetadataController(FileMetadataService fileMetadataService, BatchMetadataService batchMetadataService,
+            ObjectMapper objectMapper, @Value("${metadata.batch.timeout:30m}") Duration batchTimeout) {
+        this.fileMetadataService = fileMetadataService;
+        this.batchMetadataService = batchMetadataService;
+        this.objectMapper = objectMapper;
+        this.batchTimeout = batchTimeout;
+    }
+
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<FileMetadataResponse> uploadFile(@RequestParam("file") MultipartFile file) {
+        try {
+            if (file.isEmpty()) {
+                return ResponseEntity.badRequest().body(null);
+            }
+            
+            log.info("Received file upload: {}, size: {}", file.getOriginalFilename(), file.getSize());
+            
+            List<PageRange> metadata = fileMetadataService.extractMetadata(file);
+            
+            // Build response using the model class
+            FileMetadataResponse response = FileMetadataResponse.builder()
+                .filename(file.getOriginalFilename())
+                .contentType(file.getContentType())
+                .totalSize(file.getSize())
+                .pageCount(PageRange.pageCount(metadata))
+                .pages(metadata)
+                .processedAt(ZonedDateTime.now(ZoneOffset.UTC)
+                        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")))
+                .build();
+            
+            return ResponseEntity.ok(response);
+        } catch (UnsupportedOperationException e) {
+            log.warn("Unsupported file type", e);
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(null);
+        } catch (Exception e) {
+            log.error("Error processing file", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+    
+    @GetMapping("/s3")
+    public ResponseEntity<FileMetadataResponse> getS3ObjectMetadata(@RequestParam String bucket, @RequestParam String key) {
+        try {
+            log.info("Reading metadata of s3://{}/{}", bucket, key);
+            
+            FileMetadataResponse response = fileMetadataService.extractMetadata(bucket, key);
+            response.setProcessedAt(ZonedDateTime.now(ZoneOffset.UTC)
+                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+            
+            return ResponseEntity.ok(response);
+        } catch (S3Exception e) {
+            if (e.statusCode() == HttpStatus.NOT_FOUND.value()) {
+                return ResponseEntity.notFound().build();
+            }
+            log.error("Error reading S3 object", e);
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(null);
+        } catch (UnsupportedOperationException e) {
+            log.warn("Unsupported file type", e);
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body(null);
+        } catch (Exception e) {
+            log.error("Error processing S3 object", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+    
+    /**
+     * Reads many files in one request: every {@code files} part, with zip parts expanded entry by entry.
+     * Streams one JSON object per file (NDJSON) as each one finishes, in completion order.
+     * The response ends after {@code metadata.batch.timeout}; files still queued or being read are abandoned.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> uploadBatch(@RequestParam("files") List<MultipartFile> files,
+            HttpServletRequest request) {
+        log.info("Received metadata batch of {} file(s)", files.size());
+        AsyncTimeoutConfig.setTimeout(request, batchTimeout);
+        StreamingResponseBody body = out -> batchMetadataService.processUploads(files, ndjsonWriter(out));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Same as the multipart batch, for a zip archive sent as the raw request body. The archive is read
+     * as it arrives; nothing is written to disk.
+     */
+    @PostMapping(value = "/batch", consumes = {"application/zip", "application/x-zip-compressed"})
+    public ResponseEntity<StreamingResponseBody> uploadZipBatch(HttpServletRequest request) {
+        log.info("Received metadata batch as zip stream ({} bytes)", request.getContentLengthLong());
+        AsyncTimeoutConfig.setTimeout(request, batchTimeout);
+        StreamingResponseBody body = out -> batchMetadataService.processZip(request.getInputStream(), "request body",
+                ndjsonWriter(out));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // Writes and flushes one line per result, so clients see each file as soon as it is done
+    private Consumer<BatchMetadataItem> ndjsonWriter(OutputStream out) {
+        return item -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(item));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+    
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(fileMetadataService.getCacheStats());
+    }
+    
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<?> handleMaxSizeException(MaxUploadSizeExceededException e) {
+        log.warn("File size limit exceeded", e);
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(Map.of(
+                    "error", "File size limit exceeded",
+                    "message", "Maximum allowed file size is defined in application properties"
+                ));
+    }
+}
@@ -1,63 +1,97 @@
-package com.experiment.aws.awsservicetester.controller;
-
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
-
-import com.experiment.aws.awsservicetester.models.OcrJobResult;
-import com.experiment.aws.awsservicetester.service.OcrService;
-
-@RestController
-@RequestMapping("/api/ocr")
-public class OcrController {
-	
-	private final OcrService ocrService;
-
-    public OcrController(OcrService ocrService) {
-        this.ocrService = ocrService;
-    }
-    
-    @PostMapping("/start")
-    public ResponseEntity<Map<String, String>> startOcrProcess(
-            @RequestParam String bucket,
-            @RequestParam String key
-    ) {
-        try {
-            // Start the OCR job
-            String jobId = ocrService.startOcrProcessing(bucket, key);
-            
-            // Return the job ID for polling
-            Map<String, String> response = new HashMap<>();
-            response.put("jobId", jobId);
-            response.put("message", "OCR processing started. Use the jobId to poll for results.");
-            
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
-        }
-    }
-
-    @GetMapping("/results/{jobId}")
-    public ResponseEntity<?> getOcrResults(
-            @PathVariable String jobId,
-            @RequestParam(required = false) List<Integer> pages
-    ) {
-        try {
-            // Get OCR results with optional page filtering
-            OcrJobResult results = ocrService.getOcrResults(jobId, pages);
-            
-            return ResponseEntity.ok(results);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
-        }
-    }
-}
+package com.experiment.aws.awsservicetester.controller;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.experiment.aws.awsservicetester.models.OcrJobResult;
+import com.experiment.aws.awsservicetester.service.OcrService;
+
+@RestController
+@RequestMapping("/api/ocr")
+public class OcrController {
+	
+	private final OcrService ocrService;
+	private final long maxWaitSeconds;
+
+    public OcrController(OcrService ocrService,
+                         @Value("${api.long-poll.max-wait-seconds:60}") long maxWaitSeconds) {
+        this.ocrService = ocrService;
+        this.maxWaitSeconds = maxWaitSeconds;
+    }
+    
+    @PostMapping("/start")
+    public ResponseEntity<Map<String, String>> startOcrProcess(
+            @RequestParam String bucket,
+            @RequestParam String key,
+            @RequestParam(required = false) String callbackUrl
+    ) {
+        try {
+            // Start the OCR job
+            String jobId = ocrService.startOcrProcessing(bucket, key, callbackUrl);
+            
+            // Return the job ID for polling
+            Map<String, String> response = new HashMap<>();
+            response.put("jobId", jobId);
+            response.put("message", "OCR processing started. Use the jobId to poll for results.");
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/results/{jobId}")
+    public ResponseEntity<?> getOcrResults(
+            @PathVariable String jobId,
+            @RequestParam(required = false) List<Integer> pages
+    ) {
+        try {
+            // Get OCR results with optional page filtering
+            OcrJobResult results = ocrService.getOcrResults(jobId, pages);
+            
+            return ResponseEntity.ok(results);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Long-poll variant of getOcrResults: holds the request open (without blocking a servlet thread)
+     * until the Textract job finishes or {@code wait} seconds elapse, then returns the current status.
+     * Waiting clients share the service's single poller per job instead of each calling Textract.
+     */
+    @GetMapping(value = "/results/{jobId}", params = "wait")
+    public DeferredResult<ResponseEntity<?>> waitForOcrResults(
+            @PathVariable String jobId,
+            @RequestParam(required = false) List<Integer> pages,
+            @RequestParam long wait
+    ) {
+        long waitMillis = Math.max(1, Math.min(wait, maxWaitSeconds)) * 1000;
+        DeferredResult<ResponseEntity<?>> deferred = new DeferredResult<>(waitMillis);
+        CompletableFuture<OcrJobResult> watch = ocrService.watchJob(jobId);
+        deferred.onTimeout(() -> deferred.setResult(ResponseEntity.ok(new OcrJobResult("IN_PROGRESS", null))));
+        // Release the watch when the request ends early (timeout, client gone) so polling can stop
+        deferred.onCompletion(() -> watch.cancel(false));
+        watch.whenComplete((result, error) -> {
+            if (error != null) {
+                deferred.setResult(ResponseEntity.badRequest().body(Collections.singletonMap("error", error.getMessage())));
+            } else {
+                deferred.setResult(ResponseEntity.ok(OcrService.selectPages(result, pages)));
+            }
+        });
+        return deferred;
+    }
+}
@@ -0,0 +1,36 @@
+package com.experiment.aws.awsservicetester.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.experiment.aws.awsservicetester.service.StartupWarmup;
+
+@RestController
+@RequestMapping("/api/warmup")
+public class WarmupController {
+
+    private final StartupWarmup startupWarmup;
+    private final ApplicationAvailability availability;
+
+    public WarmupController(StartupWarmup startupWarmup, ApplicationAvailability availability) {
+        this.startupWarmup = startupWarmup;
+        this.availability = availability;
+    }
+
+    /**
+     * Readiness state and the durations of the startup warm-up; empty until warm-up has run.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getWarmup() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("readiness", availability.getReadinessState());
+        body.putAll(startupWarmup.report());
+        return ResponseEntity.ok(body);
+    }
+}
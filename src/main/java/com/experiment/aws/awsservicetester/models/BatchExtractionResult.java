@@ -0,0 +1,19 @@
+package com.experiment.aws.awsservicetester.models;
+
+public class BatchExtractionResult {
+	public String batchId;
+    public String status; // e.g. "IN_PROGRESS", "COMPLETED", "FAILED", "CANCELLED"
+    public int total; // Number of documents in the batch (0 until the prefix listing finishes)
+    public int succeeded;
+    public int failed; // Includes documents cancelled while running
+    public String error; // Error message, if any
+
+    public BatchExtractionResult(String batchId, String status, int total, int succeeded, int failed, String error) {
+        this.batchId = batchId;
+        this.status = status;
+        this.total = total;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.error = error;
+    }
+}
@@ -0,0 +1,17 @@
+package com.experiment.aws.awsservicetester.models;
+
+import java.util.Map;
+
+public class BatchItemResult {
+	public String key; // S3 object key of the document
+    public String status; // "SUCCEEDED", "FAILED" or "CANCELLED"
+    public Map<String, String> fields; // The extracted fields, if available
+    public String error; // Error message, if any
+
+    public BatchItemResult(String key, String status, Map<String, String> fields, String error) {
+        this.key = key;
+        this.status = status;
+        this.fields = fields;
+        this.error = error;
+    }
+}
@@ -0,0 +1,24 @@
+package com.experiment.aws.awsservicetester.models;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchMetadataItem {
+	public String filename; // Upload file name, or the entry path inside a zip
+    public String status; // "SUCCEEDED", "UNSUPPORTED" or "FAILED"
+    public long size; // Bytes
+    public Integer pageCount; // Set when SUCCEEDED
+    public List<PageRange> pages; // Set when SUCCEEDED
+    public String error; // Error message, if any
+
+    public BatchMetadataItem(String filename, String status, long size, List<PageRange> pages, String error) {
+        this.filename = filename;
+        this.status = status;
+        this.size = size;
+        this.pageCount = pages != null ? PageRange.pageCount(pages) : null;
+        this.pages = pages;
+        this.error = error;
+    }
+}
@@ -1,21 +1,24 @@
-package com.experiment.aws.awsservicetester.models;
-
-import java.util.Map;
-
-public class ExtractionJobResult {
-	public String status; // e.g. "IN_PROGRESS", "SUCCEEDED", "FAILED"
-    public Map<String, String> fields; // The extracted fields, if available
-    public String error; // Error message, if any
-
-    public ExtractionJobResult(String status, Map<String, String> fields) {
-        this.status = status;
-        this.fields = fields;
-        this.error = null;
-    }
-
-    public ExtractionJobResult(String status, Map<String, String> fields, String error) {
-        this.status = status;
-        this.fields = fields;
-        this.error = error;
-    }
-}
+package com.experiment.aws.awsservicetester.models;
+
+import java.util.List;
+import java.util.Map;
+
+public class ExtractionJobResult {
+	public String status; // e.g. "IN_PROGRESS", "SUCCEEDED", "FAILED", "CANCELLED", "DEADLINE_EXCEEDED"
+    public Map<String, String> fields; // The extracted fields, if available
+    public String error; // Error message, if any
+    public Map<String, Object> promptStats; // Token estimates before/after OCR compaction, if Bedrock was prompted
+    public List<String> warnings; // Caveats of a SUCCEEDED job, e.g. OCR only partially succeeded
+
+    public ExtractionJobResult(String status, Map<String, String> fields) {
+        this.status = status;
+        this.fields = fields;
+        this.error = null;
+    }
+
+    public ExtractionJobResult(String status, Map<String, String> fields, String error) {
+        this.status = status;
+        this.fields = fields;
+        this.error = error;
+    }
+}
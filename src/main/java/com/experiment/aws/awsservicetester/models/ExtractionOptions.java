@@ -0,0 +1,36 @@
+package com.experiment.aws.awsservicetester.models;
+
+public class ExtractionOptions {
+
+	/**
+	 * SINGLE sends the whole OCR text in one prompt; WINDOWED splits it into
+	 * token-budgeted windows along page boundaries and extracts from each window in parallel.
+	 */
+	public enum Mode { SINGLE, WINDOWED }
+
+	/**
+	 * How per-window field values are merged in WINDOWED mode.
+	 */
+	public enum MergePolicy { FIRST_NON_EMPTY, HIGHEST_CONFIDENCE }
+
+    public Mode mode;
+    public MergePolicy mergePolicy;
+
+    public ExtractionOptions(Mode mode, MergePolicy mergePolicy) {
+        this.mode = mode;
+        this.mergePolicy = mergePolicy;
+    }
+
+    public static ExtractionOptions defaults() {
+        return new ExtractionOptions(Mode.SINGLE, MergePolicy.FIRST_NON_EMPTY);
+    }
+
+    /**
+     * Parses the request parameter values (case-insensitive); throws IllegalArgumentException on unknown values.
+     */
+    public static ExtractionOptions of(String mode, String mergePolicy) {
+        return new ExtractionOptions(
+                Mode.valueOf(mode.trim().toUpperCase()),
+                MergePolicy.valueOf(mergePolicy.trim().toUpperCase()));
+    }
+}
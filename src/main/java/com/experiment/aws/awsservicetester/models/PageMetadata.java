@@ -0,0 +1,38 @@
+package com.experiment.aws.awsservicetester.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Metadata of one page (or of every page in a {@link PageRange}). Immutable, so equal pages can share
+ * one instance and consecutive equal pages collapse into a single range.
+ * Optional attributes are left out of the JSON when they are not set (0, null or false).
+ */
+public record PageMetadata(
+        String type, // "pdf", "tiff", "jpeg", ...
+        int width,
+        int height,
+        long size, // Approximate bytes per page for multi-page files
+        int dpi,
+        int rotation,
+        @JsonInclude(JsonInclude.Include.NON_DEFAULT) int cropWidth, // PDF only, when the CropBox differs from the MediaBox
+        @JsonInclude(JsonInclude.Include.NON_DEFAULT) int cropHeight,
+        @JsonInclude(JsonInclude.Include.NON_DEFAULT) int bitsPerPixel,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String colorType,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String compression,
+        @JsonInclude(JsonInclude.Include.NON_DEFAULT) boolean hasMetadata,
+        @JsonInclude(JsonInclude.Include.NON_NULL) String error) {
+
+    public static PageMetadata pdf(int width, int height, long size, int rotation, int cropWidth, int cropHeight) {
+        return new PageMetadata("pdf", width, height, size, 72, rotation, cropWidth, cropHeight, 0, null, null, false, null);
+    }
+
+    public static PageMetadata image(String type, int width, int height, long size, int dpi, int rotation,
+            int bitsPerPixel, String colorType, String compression, boolean hasMetadata) {
+        return new PageMetadata(type, width, height, size, dpi, rotation, 0, 0, bitsPerPixel, colorType, compression,
+                hasMetadata, null);
+    }
+
+    public static PageMetadata failed(String type, long size, String error) {
+        return new PageMetadata(type, 0, 0, size, 0, 0, 0, 0, 0, null, null, false, error);
+    }
+}
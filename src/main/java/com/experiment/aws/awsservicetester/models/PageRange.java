@@ -0,0 +1,39 @@
+package com.experiment.aws.awsservicetester.models;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+/**
+ * Consecutive pages {@code from}..{@code to} (1-based, inclusive) that share the same metadata,
+ * serialized flat: {@code {"from": 1, "to": 4999, "type": "pdf", "width": 612, "height": 792, ...}}.
+ */
+public record PageRange(int from, int to, @JsonUnwrapped PageMetadata metadata) {
+
+    /**
+     * Number of pages covered by a list of ranges in page order.
+     */
+    public static int pageCount(List<PageRange> ranges) {
+        return ranges.isEmpty() ? 0 : ranges.get(ranges.size() - 1).to();
+    }
+
+    /**
+     * Metadata of one page, or null if no range covers it.
+     */
+    public static PageMetadata forPage(List<PageRange> ranges, int page) {
+        int low = 0;
+        int high = ranges.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            PageRange range = ranges.get(mid);
+            if (page < range.from()) {
+                high = mid - 1;
+            } else if (page > range.to()) {
+                low = mid + 1;
+            } else {
+                return range.metadata();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,201 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import com.experiment.aws.awsservicetester.models.BatchExtractionResult;
+import com.experiment.aws.awsservicetester.models.BatchItemResult;
+import com.experiment.aws.awsservicetester.models.ExtractionOptions;
+
+@Service
+public class BatchExtractionService {
+
+	private static final Logger log = LoggerFactory.getLogger(BatchExtractionService.class);
+
+    private final ExtractionService extractionService;
+    private final S3Service s3Service;
+
+    // In-memory store for batches
+    private final Map<String, BatchJob> batchStore = new ConcurrentHashMap<>();
+    // Resolves the key list (possibly a long S3 listing) before handing items to the workers
+    private final ExecutorService coordinator = Executors.newCachedThreadPool();
+    // Bounded pool: caps how many documents are in OCR/Bedrock at once across all batches
+    private final ExecutorService workers;
+
+    public BatchExtractionService(ExtractionService extractionService, S3Service s3Service, MeterRegistry metrics,
+            @Value("${extraction.batch.max-concurrency:8}") int maxConcurrency) {
+        this.extractionService = extractionService;
+        this.s3Service = s3Service;
+        this.workers = Executors.newFixedThreadPool(maxConcurrency);
+        new ExecutorServiceMetrics(workers, "extraction-batch", Tags.empty()).bindTo(metrics);
+        Gauge.builder("extraction.batches.stored", batchStore, Map::size)
+                .description("Extraction batches held in the in-memory batch store").register(metrics);
+    }
+
+    /**
+     * Starts a batch extraction over an explicit list of keys and/or every object under a prefix.
+     * Returns the batchId immediately; documents are processed in the background with bounded fan-out.
+     */
+    public String startBatch(String bucket, List<String> keys, String prefix, String fields, ExtractionOptions options,
+            boolean bypassCache) {
+        String batchId = UUID.randomUUID().toString();
+        BatchJob job = new BatchJob(batchId);
+        batchStore.put(batchId, job);
+        coordinator.submit(() -> scheduleItems(job, bucket, keys, prefix, fields, options, bypassCache));
+        return batchId;
+    }
+
+    /**
+     * Returns the aggregate progress of a batch.
+     * If the batch is not found, returns a NOT_FOUND status with an error message.
+     */
+    public BatchExtractionResult getBatchStatus(String batchId) {
+        BatchJob job = batchStore.get(batchId);
+        if (job == null) {
+            return new BatchExtractionResult(batchId, "NOT_FOUND", 0, 0, 0, "Batch ID not found");
+        }
+        return job.snapshot();
+    }
+
+    /**
+     * Returns the per-document results recorded so far, in completion order.
+     */
+    public List<BatchItemResult> getBatchItems(String batchId) {
+        BatchJob job = batchStore.get(batchId);
+        return job == null ? List.of() : new ArrayList<>(job.items);
+    }
+
+    /**
+     * Cancels a batch: documents still queued are dropped and running ones are interrupted.
+     * Documents that already finished keep their results. Returns the batch progress after the call.
+     */
+    public BatchExtractionResult cancelBatch(String batchId) {
+        BatchJob job = batchStore.get(batchId);
+        if (job == null) {
+            return getBatchStatus(batchId);
+        }
+        job.cancel();
+        return job.snapshot();
+    }
+
+    /**
+     * Resolves the final key list (explicit keys first, then the prefix listing, duplicates removed)
+     * and queues one extraction task per document on the worker pool.
+     */
+    private void scheduleItems(BatchJob job, String bucket, List<String> keys, String prefix, String fields,
+            ExtractionOptions options, boolean bypassCache) {
+        try {
+            Set<String> allKeys = new LinkedHashSet<>();
+            if (keys != null) {
+                allKeys.addAll(keys);
+            }
+            if (prefix != null && !prefix.isBlank()) {
+                allKeys.addAll(s3Service.listKeys(bucket, prefix));
+            }
+            if (job.isCancelled()) {
+                return;
+            }
+            log.info("Batch {}: scheduling {} document(s)", job.batchId, allKeys.size());
+
+            job.total = allKeys.size();
+            if (allKeys.isEmpty()) {
+                job.status = "COMPLETED";
+                return;
+            }
+            for (String key : allKeys) {
+                if (job.isCancelled()) {
+                    return;
+                }
+                job.tasks.add(workers.submit(() -> runItem(job, bucket, key, fields, options, bypassCache)));
+            }
+            // A cancel that raced with scheduling may have missed the last tasks
+            if (job.isCancelled()) {
+                job.cancel();
+            }
+        } catch (Exception e) {
+            log.error("Batch {} failed while resolving keys", job.batchId, e);
+            job.error = e.getMessage();
+            job.status = "FAILED";
+        }
+    }
+
+    private void runItem(BatchJob job, String bucket, String key, String fields, ExtractionOptions options,
+            boolean bypassCache) {
+        BatchItemResult item;
+        try {
+            Map<String, String> extracted = bypassCache
+                    ? extractionService.extractFields(bucket, key, fields, options)
+                    : extractionService.extractFieldsCached(bucket, key, fields, options);
+            item = new BatchItemResult(key, "SUCCEEDED", extracted, null);
+        } catch (CancellationException e) {
+            item = new BatchItemResult(key, "CANCELLED", null, e.getMessage());
+        } catch (Exception e) {
+            item = new BatchItemResult(key, "FAILED", null, e.getMessage());
+        }
+        job.record(item);
+    }
+
+    /**
+     * Mutable per-batch state; exposed to callers only through {@link BatchExtractionResult} snapshots.
+     */
+    private static class BatchJob {
+        final String batchId;
+        final Queue<BatchItemResult> items = new ConcurrentLinkedQueue<>();
+        final Queue<Future<?>> tasks = new ConcurrentLinkedQueue<>();
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        volatile int total;
+        volatile String status = "IN_PROGRESS";
+        volatile String error;
+
+        BatchJob(String batchId) {
+            this.batchId = batchId;
+        }
+
+        void record(BatchItemResult item) {
+            items.add(item);
+            if ("SUCCEEDED".equals(item.status)) {
+                succeeded.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+            if (completed.incrementAndGet() >= total && !isCancelled()) {
+                status = "COMPLETED";
+            }
+        }
+
+        boolean isCancelled() {
+            return "CANCELLED".equals(status);
+        }
+
+        void cancel() {
+            if (!"COMPLETED".equals(status) && !"FAILED".equals(status)) {
+                status = "CANCELLED";
+                for (Future<?> task : tasks) {
+                    task.cancel(true);
+                }
+            }
+        }
+
+        BatchExtractionResult snapshot() {
+            return new BatchExtractionResult(batchId, status, total, succeeded.get(), failed.get(), error);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import com.experiment.aws.awsservicetester.models.BatchMetadataItem;
+import com.experiment.aws.awsservicetester.models.PageRange;
+
+/**
+ * Reads metadata of many files at once: multi-file uploads and zip archives (uploaded as a part or as the
+ * raw request body). Zip entries are read from the stream into memory, never extracted to disk, and every
+ * file is parsed on a fixed pool sized to the CPU count, since PDF/TIFF parsing is CPU-bound.
+ * At most {@code maxInFlight} files are buffered or being parsed at a time, which bounds memory to roughly
+ * {@code maxInFlight * maxEntryBytes}. Each file gets its own result as soon as it finishes; a file that
+ * fails does not affect the others.
+ */
+@Service
+public class BatchMetadataService {
+
+	private static final Logger log = LoggerFactory.getLogger(BatchMetadataService.class);
+
+    private final FileMetadataService fileMetadataService;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+    private final int maxEntryBytes;
+
+    public BatchMetadataService(FileMetadataService fileMetadataService, MeterRegistry metrics,
+            @Value("${metadata.batch.threads:0}") int threads,
+            @Value("${metadata.batch.max-in-flight:0}") int maxInFlight,
+            @Value("${metadata.batch.max-entry-bytes:67108864}") int maxEntryBytes) {
+        this.fileMetadataService = fileMetadataService;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "metadata-batch-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : 2 * poolSize;
+        this.maxEntryBytes = Math.min(maxEntryBytes, Integer.MAX_VALUE - 16); // largest array we can allocate
+        new ExecutorServiceMetrics(workers, "metadata-batch", Tags.empty()).bindTo(metrics);
+    }
+
+    /**
+     * Processes uploaded files; parts that are zip archives are expanded entry by entry.
+     * Blocks until every file has a result. {@code sink} receives results in completion order,
+     * one at a time, from the worker threads.
+     * @return number of results produced
+     */
+    public int processUploads(List<MultipartFile> files, Consumer<BatchMetadataItem> sink) {
+        Batch batch = new Batch(sink);
+        try {
+            for (MultipartFile file : files) {
+                if (batch.aborted) {
+                    break;
+                }
+                String name = file.getOriginalFilename();
+                if (isZip(name, file.getContentType())) {
+                    try (InputStream in = file.getInputStream()) {
+                        expandZip(batch, in, name);
+                    } catch (IOException e) {
+                        batch.emit(new BatchMetadataItem(name, "FAILED", file.getSize(), null, e.getMessage()));
+                    }
+                } else {
+                    batch.acquire();
+                    batch.submit(name, file.getSize(), () -> fileMetadataService.extractMetadata(file));
+                }
+            }
+        } catch (InterruptedException e) {
+            batch.cancel();
+            Thread.currentThread().interrupt();
+        }
+        return batch.await();
+    }
+
+    /**
+     * Processes every file entry of a zip stream, e.g. the raw request body. Same contract as
+     * {@link #processUploads}.
+     */
+    public int processZip(InputStream zip, String archiveName, Consumer<BatchMetadataItem> sink) {
+        Batch batch = new Batch(sink);
+        try {
+            expandZip(batch, zip, archiveName);
+        } catch (InterruptedException e) {
+            batch.cancel();
+            Thread.currentThread().interrupt();
+        }
+        return batch.await();
+    }
+
+    private void expandZip(Batch batch, InputStream in, String archiveName) throws InterruptedException {
+        int entries = 0;
+        try {
+            // not closed here: the caller owns the underlying stream
+            ZipInputStream zip = new ZipInputStream(in);
+            ZipEntry entry;
+            while (!batch.aborted && (entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String name = entry.getName();
+                entries++;
+                // take the permit before buffering, so memory stays bounded while the workers are busy
+                batch.acquire();
+                byte[] content;
+                try {
+                    content = zip.readNBytes(maxEntryBytes + 1);
+                } catch (IOException e) {
+                    batch.release();
+                    throw e;
+                }
+                if (content.length > maxEntryBytes) {
+                    batch.release();
+                    // getNextEntry skips the rest of this entry
+                    batch.emit(new BatchMetadataItem(name, "FAILED", entry.getSize(), null,
+                            "Entry is larger than " + maxEntryBytes + " bytes"));
+                    continue;
+                }
+                batch.submit(name, content.length, () -> fileMetadataService.extractMetadata(content, content.length, name));
+            }
+            log.info("Read {} entries from zip {}", entries, archiveName);
+        } catch (IOException e) {
+            // entries already read keep their results; the archive itself gets an error line
+            log.warn("Could not read zip {} after {} entries", archiveName, entries, e);
+            batch.emit(new BatchMetadataItem(archiveName, "FAILED", 0, null, "Could not read zip: " + e.getMessage()));
+        }
+    }
+
+    private static boolean isZip(String name, String contentType) {
+        return (name != null && name.toLowerCase(Locale.ROOT).endsWith(".zip"))
+                || "application/zip".equals(contentType) || "application/x-zip-compressed".equals(contentType);
+    }
+
+    /**
+     * One request's files: the in-flight permits, the tasks to wait for and the serialized result sink.
+     */
+    private class Batch {
+        final Semaphore permits = new Semaphore(maxInFlight);
+        final List<Future<?>> tasks = new ArrayList<>();
+        final Consumer<BatchMetadataItem> sink;
+        int emitted;
+        // Set when the sink fails, e.g. because the client went away
+        volatile boolean aborted;
+
+        Batch(Consumer<BatchMetadataItem> sink) {
+            this.sink = sink;
+        }
+
+        void acquire() throws InterruptedException {
+            permits.acquire();
+        }
+
+        void release() {
+            permits.release();
+        }
+
+        // Runs the work on the pool; the caller must hold a permit, which the task gives back
+        void submit(String name, long size, Callable<List<PageRange>> work) {
+            tasks.add(workers.submit(() -> {
+                try {
+                    if (!aborted) {
+                        emit(run(name, size, work));
+                    }
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        synchronized void emit(BatchMetadataItem item) {
+            if (aborted) {
+                return;
+            }
+            try {
+                sink.accept(item);
+                emitted++;
+            } catch (RuntimeException e) {
+                log.warn("Stopping metadata batch: could not deliver result for {}", item.filename, e);
+                aborted = true;
+            }
+        }
+
+        void cancel() {
+            aborted = true;
+            tasks.forEach(task -> task.cancel(true));
+        }
+
+        int await() {
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    cancel();
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException | CancellationException e) {
+                    // results are reported per file; nothing to add here
+                }
+            }
+            synchronized (this) {
+                return emitted;
+            }
+        }
+    }
+
+    private static BatchMetadataItem run(String name, long size, Callable<List<PageRange>> work) {
+        try {
+            return new BatchMetadataItem(name, "SUCCEEDED", size, work.call(), null);
+        } catch (UnsupportedOperationException e) {
+            return new BatchMetadataItem(name, "UNSUPPORTED", size, null, e.getMessage());
+        } catch (Exception e) {
+            log.warn("Metadata extraction failed for {}", name, e);
+            return new BatchMetadataItem(name, "FAILED", size, null, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponseHandler;
+
+/**
+ * Non-blocking InvokeModel layer on top of {@link BedrockRuntimeAsyncClient}. Per model it:
+ * - caps the number of in-flight calls; extra calls wait in a queue instead of holding threads,
+ * - retries throttling and 5xx errors with full-jitter exponential backoff,
+ * - bounds each call (queueing, all attempts and backoff included) by a timeout,
+ * - trips a circuit breaker after consecutive failures and fails fast while it is open.
+ * Cancelling a returned future cancels the queued or in-flight attempt. Streaming calls share the
+ * same lanes, so they count against the in-flight limit and the breaker too.
+ */
+@Component
+public class BedrockInvoker {
+
+	private static final Logger log = LoggerFactory.getLogger(BedrockInvoker.class);
+
+    private final BedrockRuntimeAsyncClient client;
+    private final int maxInFlightPerModel;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Duration defaultTimeout;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private final Map<String, ModelLane> lanes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("bedrock-retry-", 0).factory());
+
+    public BedrockInvoker(BedrockRuntimeAsyncClient client,
+            @Value("${bedrock.invoke.max-in-flight-per-model:16}") int maxInFlightPerModel,
+            @Value("${bedrock.invoke.max-attempts:4}") int maxAttempts,
+            @Value("${bedrock.invoke.initial-backoff-millis:200}") long initialBackoffMillis,
+            @Value("${bedrock.invoke.max-backoff-millis:5000}") long maxBackoffMillis,
+            @Value("${bedrock.invoke.timeout-seconds:60}") long timeoutSeconds,
+            @Value("${bedrock.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${bedrock.circuit.open-seconds:30}") long openSeconds) {
+        this.client = client;
+        this.maxInFlightPerModel = Math.max(1, maxInFlightPerModel);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.defaultTimeout = Duration.ofSeconds(timeoutSeconds);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = TimeUnit.SECONDS.toMillis(openSeconds);
+    }
+
+    /**
+     * Invokes {@code modelId} with a JSON request body and completes with the raw response body.
+     * A null timeout uses {@code bedrock.invoke.timeout-seconds}; it covers all attempts, so retries
+     * never extend a caller's deadline.
+     */
+    public CompletableFuture<String> invoke(String modelId, String requestBody, Duration timeout) {
+        return submit(modelId, timeout, true, remaining -> {
+            InvokeModelRequest request = InvokeModelRequest.builder()
+                    .modelId(modelId)
+                    .contentType("application/json")
+                    .accept("application/json")
+                    .body(SdkBytes.fromUtf8String(requestBody))
+                    .overrideConfiguration(o -> o.apiCallTimeout(remaining))
+                    .build();
+            CompletableFuture<InvokeModelResponse> inFlight = client.invokeModel(request);
+            CompletableFuture<String> body = inFlight.thenApply(response -> response.body().asUtf8String());
+            body.whenComplete((r, e) -> {
+                if (body.isCancelled()) {
+                    inFlight.cancel(true);
+                }
+            });
+            return body;
+        });
+    }
+
+    /**
+     * InvokeModelWithResponseStream under the same lane, breaker and timeout as {@link #invoke}; the
+     * future completes when the stream ends. A failed stream is not retried, since part of the answer
+     * may already have reached {@code handler}.
+     */
+    public CompletableFuture<Void> invokeStream(String modelId, String requestBody, Duration timeout,
+            InvokeModelWithResponseStreamResponseHandler handler) {
+        return submit(modelId, timeout, false, remaining -> client.invokeModelWithResponseStream(
+                InvokeModelWithResponseStreamRequest.builder()
+                        .modelId(modelId)
+                        .contentType("application/json")
+                        .accept("application/json")
+                        .body(SdkBytes.fromUtf8String(requestBody))
+                        .overrideConfiguration(o -> o.apiCallTimeout(remaining))
+                        .build(),
+                handler));
+    }
+
+    private <T> CompletableFuture<T> submit(String modelId, Duration timeout, boolean retryable,
+            Function<Duration, CompletableFuture<T>> start) {
+        ModelLane lane = lanes.computeIfAbsent(modelId, ModelLane::new);
+        Call<T> call = new Call<>(lane, start, retryable, timeout != null ? timeout : defaultTimeout);
+        if (!lane.allowRequest(call)) {
+            call.result.completeExceptionally(new CircuitOpenException(modelId));
+            return call.result;
+        }
+        lane.enqueue(call);
+        return call.result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> byModel = new LinkedHashMap<>();
+        lanes.forEach((modelId, lane) -> byModel.put(modelId, lane.stats()));
+        return byModel;
+    }
+
+    private <T> void attempt(Call<T> call) {
+        if (call.result.isDone()) {
+            // cancelled while waiting for a retry
+            call.lane.abandonProbe(call);
+            call.lane.release();
+            return;
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(call.deadlineNanos - System.nanoTime());
+        if (remainingMillis <= 0) {
+            call.lane.abandonProbe(call);
+            call.lane.release();
+            call.result.completeExceptionally(ApiCallTimeoutException.create(call.timeout.toMillis()));
+            return;
+        }
+        CompletableFuture<T> inFlight;
+        try {
+            inFlight = call.start.apply(Duration.ofMillis(remainingMillis));
+        } catch (RuntimeException e) {
+            inFlight = CompletableFuture.failedFuture(e);
+        }
+        call.current = inFlight;
+        if (call.result.isCancelled()) {
+            inFlight.cancel(true);
+        }
+        inFlight.whenComplete((response, error) -> {
+            if (error == null) {
+                call.lane.release();
+                call.lane.recordSuccess();
+                call.result.complete(response);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (call.retryable && isRetryable(cause) && call.attempts < maxAttempts && !call.result.isDone()
+                    && call.deadlineNanos - System.nanoTime() > TimeUnit.MILLISECONDS.toNanos(delayCeiling(call.attempts))) {
+                // keep the in-flight slot while backing off so a throttled model is not hit harder
+                long delay = backoffMillis(call.attempts);
+                call.lane.retries.incrementAndGet();
+                log.debug("Bedrock call to {} failed ({}), retry {} in {} ms", call.lane.modelId,
+                        cause.getMessage(), call.attempts, delay);
+                call.attempts++;
+                retryScheduler.schedule(() -> attempt(call), delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+            call.lane.release();
+            if (cause instanceof CancellationException) {
+                call.lane.abandonProbe(call);
+            } else if (countsAsFailure(cause)) {
+                call.lane.recordFailure();
+            } else {
+                // the model answered, just not with success: it is healthy
+                call.lane.recordSuccess();
+            }
+            call.result.completeExceptionally(cause);
+        });
+    }
+
+    // Full jitter: uniform in [0, min(max, initial * 2^attempt)]
+    private long backoffMillis(int attempt) {
+        return ThreadLocalRandom.current().nextLong(delayCeiling(attempt) + 1);
+    }
+
+    private long delayCeiling(int attempt) {
+        return Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 20));
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof SdkServiceException se) {
+            return se.isThrottlingException() || se.statusCode() == 429 || se.statusCode() >= 500;
+        }
+        return error instanceof ApiCallAttemptTimeoutException
+                || (error instanceof SdkClientException && !(error instanceof ApiCallTimeoutException));
+    }
+
+    // Bad requests (validation, access denied) say nothing about the model's health
+    private static boolean countsAsFailure(Throwable error) {
+        if (error instanceof SdkServiceException se) {
+            return se.isThrottlingException() || se.statusCode() == 429 || se.statusCode() >= 500;
+        }
+        return true;
+    }
+
+    /**
+     * Raised without calling Bedrock while a model's circuit breaker is open.
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException(String modelId) {
+            super("Bedrock model " + modelId + " is temporarily unavailable (circuit open)");
+        }
+    }
+
+    private static class Call<T> {
+        final ModelLane lane;
+        // Starts one attempt, given the time left until the deadline
+        final Function<Duration, CompletableFuture<T>> start;
+        final boolean retryable;
+        final Duration timeout;
+        final long deadlineNanos;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        volatile CompletableFuture<?> current;
+        int attempts = 1;
+        // Guarded by the lane: whether this call is the half-open probe, and its deadline task while queued
+        boolean probe;
+        ScheduledFuture<?> queueTimeout;
+
+        Call(ModelLane lane, Function<Duration, CompletableFuture<T>> start, boolean retryable, Duration timeout) {
+            this.lane = lane;
+            this.start = start;
+            this.retryable = retryable;
+            this.timeout = timeout;
+            this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+            result.whenComplete((r, e) -> {
+                CompletableFuture<?> inFlight = current;
+                if (result.isCancelled() && inFlight != null) {
+                    inFlight.cancel(true);
+                }
+                if (result.isCancelled()) {
+                    lane.dequeue(this);
+                }
+            });
+        }
+    }
+
+    /**
+     * Per-model state: in-flight limit with a FIFO of waiting calls, plus the circuit breaker.
+     */
+    private class ModelLane {
+        final String modelId;
+        final ArrayDeque<Call<?>> waiting = new ArrayDeque<>();
+        int inFlight;
+        // Circuit breaker: CLOSED while openUntil == 0; after openUntil passes a single probe is let through
+        int consecutiveFailures;
+        long openUntil;
+        boolean probing;
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+
+        ModelLane(String modelId) {
+            this.modelId = modelId;
+        }
+
+        synchronized boolean allowRequest(Call<?> call) {
+            if (openUntil == 0) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= openUntil && !probing) {
+                probing = true; // half-open
+                call.probe = true;
+                return true;
+            }
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        void enqueue(Call<?> call) {
+            synchronized (this) {
+                if (inFlight >= maxInFlightPerModel) {
+                    waiting.add(call);
+                    // the deadline also covers the wait for a slot
+                    call.queueTimeout = retryScheduler.schedule(() -> expire(call),
+                            call.deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    return;
+                }
+                inFlight++;
+            }
+            attempt(call);
+        }
+
+        /**
+         * Hands the caller's slot to the first waiting call that is still live. Calls that were cancelled or
+         * ran out of time while queued are dropped here in a loop, so a backlog of them never recurses.
+         */
+        void release() {
+            Call<?> next;
+            List<Call<?>> expired = new ArrayList<>();
+            synchronized (this) {
+                while (true) {
+                    next = waiting.poll();
+                    if (next == null) {
+                        inFlight--;
+                        break;
+                    }
+                    next.queueTimeout.cancel(false);
+                    if (next.result.isDone() || next.deadlineNanos - System.nanoTime() <= 0) {
+                        abandonProbe(next);
+                        expired.add(next);
+                        continue;
+                    }
+                    break;
+                }
+            }
+            for (Call<?> call : expired) {
+                call.result.completeExceptionally(ApiCallTimeoutException.create(call.timeout.toMillis()));
+            }
+            if (next != null) {
+                attempt(next);
+            }
+        }
+
+        // Scheduled at the call's deadline while it is queued
+        private void expire(Call<?> call) {
+            synchronized (this) {
+                if (!waiting.remove(call)) {
+                    return;
+                }
+                abandonProbe(call);
+            }
+            call.result.completeExceptionally(ApiCallTimeoutException.create(call.timeout.toMillis()));
+        }
+
+        // A call cancelled while queued gives up its place; its timeout task is no longer needed
+        synchronized void dequeue(Call<?> call) {
+            if (waiting.remove(call)) {
+                call.queueTimeout.cancel(false);
+                abandonProbe(call);
+            }
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            openUntil = 0;
+            probing = false;
+        }
+
+        synchronized void recordFailure() {
+            failures.incrementAndGet();
+            consecutiveFailures++;
+            if (probing || (openUntil == 0 && consecutiveFailures >= failureThreshold)) {
+                log.warn("Opening Bedrock circuit for {} after {} consecutive failures", modelId, consecutiveFailures);
+                openUntil = System.currentTimeMillis() + openMillis;
+                probing = false;
+            }
+        }
+
+        // A cancelled or expired half-open probe lets the next request probe instead
+        synchronized void abandonProbe(Call<?> call) {
+            if (call.probe) {
+                call.probe = false;
+                probing = false;
+            }
+        }
+
+        synchronized Map<String, Object> stats() {
+            String state = openUntil == 0 ? "CLOSED"
+                    : (System.currentTimeMillis() >= openUntil || probing) ? "HALF_OPEN" : "OPEN";
+            return Map.of(
+                    "inFlight", inFlight,
+                    "queued", waiting.size(),
+                    "circuit", state,
+                    "retries", retries.get(),
+                    "failures", failures.get(),
+                    "rejected", rejected.get());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches Bedrock answers for prompts whose output is deterministic enough to reuse
+ * (sentiment labels, repeated playground prompts). Keys are a SHA-256 hash of the model id,
+ * the normalized prompt and the generation parameters, so large prompts are not kept in memory.
+ * Eviction is LRU weighted by the approximate heap size of each entry, bounded by {@code maxBytes},
+ * and entries expire after the TTL.
+ */
+@Component
+public class BedrockResponseCache {
+
+    // Rough per-entry overhead (map node, entry record, hash string header) on top of the char data
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final long maxBytes;
+    private final Duration ttl;
+
+    // Access-ordered LinkedHashMap gives LRU order; guarded by its own monitor
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BedrockResponseCache(@Value("${bedrock.cache.max-bytes:16777216}") long maxBytes,
+            @Value("${bedrock.cache.ttl-minutes:60}") long ttlMinutes) {
+        this.maxBytes = maxBytes;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+    }
+
+    /**
+     * Builds the cache key for a prompt. Line endings and runs of spaces/tabs are normalized and the
+     * prompt is trimmed, so cosmetic whitespace differences share an entry.
+     */
+    public static String key(String modelId, String prompt, String params) {
+        String normalized = prompt.replace("\r\n", "\n").replaceAll("[ \\t]+", " ").trim();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(params.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the cached answer, or null on a miss or expired entry.
+     */
+    public String get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                currentBytes -= entry.weight;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, String value) {
+        long weight = ENTRY_OVERHEAD_BYTES + 2L * (key.length() + value.length());
+        if (weight > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(value, weight, System.currentTimeMillis() + ttl.toMillis()));
+            if (previous != null) {
+                currentBytes -= previous.weight;
+            }
+            currentBytes += weight;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (currentBytes > maxBytes && eldest.hasNext()) {
+                currentBytes -= eldest.next().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        int size;
+        long bytes;
+        synchronized (entries) {
+            size = entries.size();
+            bytes = currentBytes;
+        }
+        return Map.of(
+                "size", size,
+                "bytes", bytes,
+                "maxBytes", maxBytes,
+                "hits", hits.get(),
+                "misses", misses.get(),
+                "evictions", evictions.get());
+    }
+
+    private record Entry(String value, long weight, long expiresAt) {
+    }
+}
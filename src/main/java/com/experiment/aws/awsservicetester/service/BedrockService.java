@@ -1,110 +1,558 @@
-package com.experiment.aws.awsservicetester.service;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
-import org.springframework.stereotype.Service;
-
-import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
-import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
-import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
-
-
-@Service
-public class BedrockService {
-	
-	private final BedrockRuntimeClient bedrockRuntimeClient;
-    private static final String CLAUDE_SONNET_MODEL_ID = "us.anthropic.claude-3-7-sonnet-20250219-v1:0";
-    
-    public BedrockService(BedrockRuntimeClient bedrockRuntimeClient) {
-        this.bedrockRuntimeClient = bedrockRuntimeClient;
-    } 
-
-    public String getModelResponse(String prompt) {
-        String modelResponse = invokeBedrockModel(prompt);
-        String contentText = extractContentText(modelResponse);
-        return contentText != null ? contentText : "No content found";
-    }
-
-    public String analyzeSentiment(String text) {
-        String prompt = "Analyze the sentiment of this text and reply with only one word: positive, negative, or neutral.\nText: " + text;
-        String modelResponse = invokeBedrockModel(prompt);
-        String contentText = extractContentText(modelResponse);
-        return contentText != null ? contentText : "unknown";
-    }
-    
-    private String extractContentText(String modelResponse) {
-        try {
-            JSONObject obj = new JSONObject(modelResponse);
-            JSONArray contentArr = obj.getJSONArray("content");
-            if (contentArr.length() > 0) {
-                return contentArr.getJSONObject(0).getString("text").trim();
-            }
-        } catch (Exception e) {
-            return null;
-        }
-        return null;
-    }
-    
-    /*
-     * This method sends a prompt to the Anthropic Claude 3 Sonnet model hosted on AWS Bedrock, 
-     * and returns the model's AI-generated response as a String.
-     *
-     * Step-by-step breakdown:
-     *
-     * 1. Prepare the request payload:
-     *    - Claude 3 Sonnet expects the prompt message in a specific JSON format. 
-     *      The structure includes:
-     *        - "anthropic_version": The Claude API version string required by Bedrock ("bedrock-2023-05-31").
-     *        - "max_tokens": The maximum length for the model's response (in tokens). 
-     *        - "messages": An array of chat message objects, each with:
-     *            - "role": Should be "user" for your prompt.
-     *            - "content": The actual prompt text.
-     *    - The prompt text is inserted into the JSON using String formatting.
-     *    - Any double quotes in the prompt are escaped to prevent malformed JSON.
-     *
-     * 2. Build the Bedrock model invocation request:
-     *    - Use InvokeModelRequest.builder() to create the request object.
-     *    - Specify the modelId for Claude 3 Sonnet (hardcoded as CLAUDE_SONNET_MODEL_ID).
-     *    - Set contentType to "application/json" to indicate the request body is JSON.
-     *    - Set accept to "application/json" to request a JSON response from Bedrock.
-     *    - Convert the JSON request body String to SdkBytes (required by AWS SDK).
-     *    - Build the final request object.
-     *
-     * 3. Send the request to AWS Bedrock:
-     *    - Use the BedrockRuntimeClient (already configured with credentials and region) to call invokeModel().
-     *    - Pass the constructed request object.
-     *    - AWS Bedrock processes the request and responds with the model's output.
-     *
-     * 4. Extract and return the response:
-     *    - The response from Bedrock comes as raw bytes.
-     *    - Convert the response body to a UTF-8 String (so it's human-readable).
-     *    - Return this String, which contains the model's answer.
-     */
-    private String invokeBedrockModel(String prompt) {
-        // Claude 3 expects the prompt wrapped in a structured JSON format
-        // For chat models, the structure is typically: {"messages":[{"role":"user","content":"..."}]}
-    	String requestBody = """
-    			{
-    			  "anthropic_version": "bedrock-2023-05-31",
-    			  "max_tokens": 1024,
-    			  "messages": [
-    			    {
-    			      "role": "user",
-    			      "content": "%s"
-    			    }
-    			  ]
-    			}
-    			""".formatted(prompt.replace("\n", "\\n").replace("\"", "\\\""));
-
-        InvokeModelRequest request = InvokeModelRequest.builder()
-                .modelId(CLAUDE_SONNET_MODEL_ID)
-                .contentType("application/json")
-                .accept("application/json")
-                .body(SdkBytes.fromUtf8String(requestBody))
-                .build();
-
-        InvokeModelResponse response = bedrockRuntimeClient.invokeModel(request);
-        return response.body().asUtf8String();
-    }
-}
+package com.experiment.aws.awsservicetester.service;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponseHandler;
+
+
+@Service
+public class BedrockService {
+	
+	private final BedrockInvoker bedrockInvoker;
+	private final ModelRouter modelRouter;
+	private final BedrockResponseCache responseCache;
+	private final MeterRegistry metrics;
+	private final boolean cacheSentiment;
+	private final boolean promptCacheEnabled;
+	private final Duration streamTimeout;
+
+	// Anthropic prompt-cache usage reported in response "usage" blocks
+	private final AtomicLong promptCacheReadTokens = new AtomicLong();
+	private final AtomicLong promptCacheWriteTokens = new AtomicLong();
+	private final AtomicLong uncachedInputTokens = new AtomicLong();
+	private final AtomicLong promptCacheHits = new AtomicLong();
+	private final AtomicLong structuredRequests = new AtomicLong();
+    // Output budget per item of a batched sentiment call ({"id": n, "sentiment": "..."} plus separators)
+    private static final int BATCH_TOKENS_PER_ITEM = 16;
+    private static final int MAX_BATCH_OUTPUT_TOKENS = 4096;
+    
+    public BedrockService(BedrockInvoker bedrockInvoker, ModelRouter modelRouter,
+            BedrockResponseCache responseCache, MeterRegistry metrics,
+            @Value("${bedrock.cache.sentiment-enabled:true}") boolean cacheSentiment,
+            @Value("${bedrock.prompt-cache.enabled:true}") boolean promptCacheEnabled,
+            @Value("${bedrock.stream.timeout-seconds:300}") long streamTimeoutSeconds) {
+        this.bedrockInvoker = bedrockInvoker;
+        this.modelRouter = modelRouter;
+        this.responseCache = responseCache;
+        this.metrics = metrics;
+        this.cacheSentiment = cacheSentiment;
+        this.promptCacheEnabled = promptCacheEnabled;
+        this.streamTimeout = Duration.ofSeconds(streamTimeoutSeconds);
+    } 
+
+    /**
+     * Longest a streamed answer may run ({@code bedrock.stream.timeout-seconds}); the playground's SSE emitter
+     * stays open for the same time.
+     */
+    public Duration getStreamTimeout() {
+        return streamTimeout;
+    }
+
+    /**
+     * Primary extraction model; part of the extraction cache key. Only answers from this model are cached:
+     * callers pass an {@code answeredBy} callback and skip caching when a fallback answered.
+     */
+    public String getModelId() {
+        return modelRouter.route(ModelRouter.Operation.EXTRACTION).primaryModel();
+    }
+
+    public String getModelResponse(String prompt) {
+        return getModelResponse(prompt, false);
+    }
+
+    /**
+     * Opt-in cached variant for prompts that are sent repeatedly (e.g. playground tests).
+     * Only real answers from the primary model are cached; a missing content block or a fallback answer
+     * is never stored under the primary's key.
+     */
+    public String getModelResponse(String prompt, boolean useCache) {
+        return await(getModelResponseAsync(prompt, useCache));
+    }
+
+    /**
+     * Non-blocking form of {@link #getModelResponse(String, boolean)}.
+     */
+    public CompletableFuture<String> getModelResponseAsync(String prompt, boolean useCache) {
+        ModelRouter.Route route = modelRouter.route(ModelRouter.Operation.PLAYGROUND);
+        if (!useCache) {
+            return mapResult(invokeBedrockModelAsync(ModelRouter.Operation.PLAYGROUND, prompt, route.maxTokens(), null, null),
+                    this::contentOrDefault);
+        }
+        String cacheKey = BedrockResponseCache.key(route.primaryModel(), prompt, "max_tokens=" + route.maxTokens());
+        String cached = responseCache.get(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        AtomicReference<String> answeredBy = new AtomicReference<>();
+        return mapResult(invokeBedrockModelAsync(ModelRouter.Operation.PLAYGROUND, prompt, route.maxTokens(), null,
+                answeredBy::set), modelResponse -> {
+            String contentText = extractContentText(modelResponse);
+            if (contentText == null) {
+                return "No content found";
+            }
+            if (route.primaryModel().equals(answeredBy.get())) {
+                responseCache.put(cacheKey, contentText);
+            }
+            return contentText;
+        });
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return responseCache.stats();
+    }
+
+    public Map<String, Object> getInvocationStats() {
+        return bedrockInvoker.stats();
+    }
+
+    public Map<String, Object> getRoutingStats() {
+        return modelRouter.stats();
+    }
+
+    /**
+     * Totals of the prompt-cache usage Bedrock reported for structured (cacheable) requests.
+     */
+    public Map<String, Object> getPromptCacheStats() {
+        long read = promptCacheReadTokens.get();
+        long uncached = uncachedInputTokens.get();
+        long write = promptCacheWriteTokens.get();
+        long total = read + uncached + write;
+        return Map.of(
+                "enabled", promptCacheEnabled,
+                "requests", structuredRequests.get(),
+                "requestsWithCacheHit", promptCacheHits.get(),
+                "cacheReadInputTokens", read,
+                "cacheWriteInputTokens", write,
+                "uncachedInputTokens", uncached,
+                "cachedInputRatio", total == 0 ? 0.0 : (double) read / total);
+    }
+
+    /**
+     * Extraction call with the extraction route's max_tokens. The timeout bounds the whole call,
+     * so a job's deadline also bounds an in-flight Bedrock invocation. A null timeout uses the invoker default.
+     * {@code answeredBy}, if not null, is given the model that answered (the primary or its fallback)
+     * before the answer is returned.
+     */
+    public String getExtractionResponse(StructuredPrompt prompt, Duration timeout, Consumer<String> answeredBy) {
+        int maxTokens = modelRouter.route(ModelRouter.Operation.EXTRACTION).maxTokens();
+        return await(getExtractionResponseAsync(prompt, maxTokens, timeout, answeredBy));
+    }
+
+    /**
+     * Non-blocking extraction call with an explicit output cap, for callers that expect short answers
+     * (e.g. per-window extraction). The future completes on an SDK thread, so callers can fan out several
+     * prompts without holding a thread per call. Cancelling the future cancels the Bedrock request.
+     */
+    public CompletableFuture<String> getExtractionResponseAsync(StructuredPrompt prompt, int maxTokens, Duration timeout,
+            Consumer<String> answeredBy) {
+        structuredRequests.incrementAndGet();
+        String requestBody = buildStructuredRequestBody(prompt, maxTokens);
+        return mapResult(send(ModelRouter.Operation.EXTRACTION, requestBody, timeout, answeredBy), modelResponse -> {
+            recordPromptCacheUsage(modelResponse);
+            return contentOrDefault(modelResponse);
+        });
+    }
+
+    private String contentOrDefault(String modelResponse) {
+        String contentText = extractContentText(modelResponse);
+        return contentText != null ? contentText : "No content found";
+    }
+
+    /**
+     * Streams the model's answer using InvokeModelWithResponseStream on the async client.
+     * Each text delta is passed to {@code onDelta} as soon as Bedrock emits it; the returned future
+     * completes when the stream ends (or fails). Cancelling the future aborts the stream.
+     * No caller thread is blocked while tokens arrive. The stream goes through the {@link BedrockInvoker}
+     * (in-flight limit, circuit breaker) with {@link #getStreamTimeout()} as its timeout instead of the
+     * non-streaming one, and its duration feeds the router and metrics like any call.
+     */
+    public CompletableFuture<Void> streamModelResponse(String prompt, Consumer<String> onDelta) {
+        ModelRouter.Route route = modelRouter.route(ModelRouter.Operation.PLAYGROUND);
+        String requestBody = buildRequestBody(prompt, route.maxTokens());
+
+        InvokeModelWithResponseStreamResponseHandler handler = InvokeModelWithResponseStreamResponseHandler.builder()
+                .subscriber(InvokeModelWithResponseStreamResponseHandler.Visitor.builder()
+                        .onChunk(chunk -> {
+                            String delta = extractStreamDelta(chunk.bytes().asUtf8String());
+                            if (delta != null) {
+                                onDelta.accept(delta);
+                            }
+                        })
+                        .build())
+                .build();
+
+        return routed(ModelRouter.Operation.PLAYGROUND,
+                modelId -> bedrockInvoker.invokeStream(modelId, requestBody, streamTimeout, handler));
+    }
+
+    /**
+     * Anthropic streaming chunks are JSON events; only "content_block_delta" events carry text.
+     */
+    private String extractStreamDelta(String chunkJson) {
+        try {
+            JSONObject event = new JSONObject(chunkJson);
+            if ("content_block_delta".equals(event.optString("type"))) {
+                JSONObject delta = event.optJSONObject("delta");
+                return delta != null ? delta.optString("text", null) : null;
+            }
+        } catch (Exception e) {
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Sentiment answers are a single word, so they are cached by default
+     * ({@code bedrock.cache.sentiment-enabled}); duplicate review texts never reach Bedrock twice.
+     * Answers from the fallback model are not cached.
+     */
+    public String analyzeSentiment(String text) {
+        String prompt = "Analyze the sentiment of this text and reply with only one word: positive, negative, or neutral.\nText: " + text;
+        String cacheKey = cacheSentiment ? sentimentCacheKey(text) : null;
+        if (cacheKey != null) {
+            String cached = responseCache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        int maxTokens = modelRouter.route(ModelRouter.Operation.SENTIMENT).maxTokens();
+        AtomicReference<String> answeredBy = new AtomicReference<>();
+        String modelResponse = invokeBedrockModel(ModelRouter.Operation.SENTIMENT, prompt, maxTokens, answeredBy::set);
+        String sentiment = normalizeSentiment(extractContentText(modelResponse));
+        if (sentiment == null) {
+            return "unknown";
+        }
+        if (cacheKey != null && isPrimary(ModelRouter.Operation.SENTIMENT, answeredBy.get())) {
+            responseCache.put(cacheKey, sentiment);
+        }
+        return sentiment;
+    }
+
+    // Single and batched answers share the cache, so both are reduced to the bare lowercase label ("Positive." -> "positive")
+    private static String normalizeSentiment(String answer) {
+        if (answer == null) {
+            return null;
+        }
+        String sentiment = answer.trim().toLowerCase().replaceAll("^[^a-z]+|[^a-z]+$", "");
+        return sentiment.isEmpty() ? null : sentiment;
+    }
+
+    // Shared by single and batched calls so either one can answer from the other's results
+    private String sentimentCacheKey(String text) {
+        return BedrockResponseCache.key(modelRouter.route(ModelRouter.Operation.SENTIMENT).primaryModel(), text, "sentiment");
+    }
+
+    // Response cache keys name the primary model, so only its answers may be stored under them
+    private boolean isPrimary(ModelRouter.Operation operation, String modelId) {
+        return modelRouter.route(operation).primaryModel().equals(modelId);
+    }
+
+    /**
+     * Classifies several texts with a single model call: the texts are sent as a numbered list and
+     * the model answers with a JSON array of {"id", "sentiment"} objects. Results are returned in
+     * input order. Any item the model skipped or mangled is retried on its own via
+     * {@link #analyzeSentiment(String)}, so one bad answer never fails the whole batch.
+     * Texts already in the response cache are answered locally and left out of the prompt.
+     */
+    public List<String> analyzeSentimentBatch(List<String> texts) {
+        List<String> results = new ArrayList<>(texts.size());
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String cached = cacheSentiment ? responseCache.get(sentimentCacheKey(texts.get(i))) : null;
+            results.add(cached);
+            if (cached == null) {
+                missing.add(i);
+            }
+        }
+        if (missing.size() == 1) {
+            int only = missing.get(0);
+            results.set(only, analyzeSentiment(texts.get(only)));
+        } else if (!missing.isEmpty()) {
+            List<String> toClassify = new ArrayList<>(missing.size());
+            missing.forEach(i -> toClassify.add(texts.get(i)));
+            List<String> classified = classifySentimentBatch(toClassify);
+            for (int j = 0; j < missing.size(); j++) {
+                results.set(missing.get(j), classified.get(j));
+            }
+        }
+        return results;
+    }
+
+    private List<String> classifySentimentBatch(List<String> texts) {
+        StringBuilder prompt = new StringBuilder()
+                .append("Classify the sentiment of each numbered text below as positive, negative, or neutral.\n")
+                .append("Reply with only a JSON array containing one object per text, in the form ")
+                .append("[{\"id\": 1, \"sentiment\": \"positive\"}]. Do not add any other words.\n");
+        for (int i = 0; i < texts.size(); i++) {
+            // one line per item keeps the numbering unambiguous
+            prompt.append(i + 1).append(". ").append(texts.get(i).replaceAll("\\s+", " ").trim()).append("\n");
+        }
+        int maxTokens = Math.min(MAX_BATCH_OUTPUT_TOKENS, 32 + texts.size() * BATCH_TOKENS_PER_ITEM);
+        AtomicReference<String> answeredBy = new AtomicReference<>();
+        String contentText = extractContentText(
+                invokeBedrockModel(ModelRouter.Operation.SENTIMENT, prompt.toString(), maxTokens, answeredBy::set));
+        Map<Integer, String> byId = parseBatchSentiments(contentText);
+        boolean cacheAnswers = cacheSentiment && isPrimary(ModelRouter.Operation.SENTIMENT, answeredBy.get());
+
+        List<String> results = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            String sentiment = byId.get(i + 1);
+            if (sentiment == null) {
+                sentiment = analyzeSentiment(texts.get(i));
+            } else if (cacheAnswers) {
+                responseCache.put(sentimentCacheKey(texts.get(i)), sentiment);
+            }
+            results.add(sentiment);
+        }
+        return results;
+    }
+
+    private Map<Integer, String> parseBatchSentiments(String contentText) {
+        Map<Integer, String> byId = new HashMap<>();
+        if (contentText == null) {
+            return byId;
+        }
+        int start = contentText.indexOf('[');
+        int end = contentText.lastIndexOf(']');
+        if (start < 0 || end <= start) {
+            return byId;
+        }
+        try {
+            JSONArray items = new JSONArray(contentText.substring(start, end + 1));
+            for (int i = 0; i < items.length(); i++) {
+                JSONObject item = items.optJSONObject(i);
+                if (item == null || !item.has("id")) {
+                    continue;
+                }
+                String sentiment = normalizeSentiment(item.optString("sentiment", ""));
+                if (sentiment != null) {
+                    byId.put(item.optInt("id"), sentiment);
+                }
+            }
+        } catch (Exception e) {
+            // unparseable answer: every item falls back to a single call
+        }
+        return byId;
+    }
+    
+    // package-private so StartupWarmup can run it on a sample response
+    String extractContentText(String modelResponse) {
+        try {
+            JSONObject obj = new JSONObject(modelResponse);
+            JSONArray contentArr = obj.getJSONArray("content");
+            if (contentArr.length() > 0) {
+                return contentArr.getJSONObject(0).getString("text").trim();
+            }
+        } catch (Exception e) {
+            return null;
+        }
+        return null;
+    }
+    
+    /*
+     * This method sends a prompt to an Anthropic Claude model hosted on AWS Bedrock, 
+     * and returns the model's AI-generated response as a String.
+     *
+     * Step-by-step breakdown:
+     *
+     * 1. Prepare the request payload:
+     *    - Claude 3 Sonnet expects the prompt message in a specific JSON format. 
+     *      The structure includes:
+     *        - "anthropic_version": The Claude API version string required by Bedrock ("bedrock-2023-05-31").
+     *        - "max_tokens": The maximum length for the model's response (in tokens), supplied by the caller. 
+     *        - "messages": An array of chat message objects, each with:
+     *            - "role": Should be "user" for your prompt.
+     *            - "content": The actual prompt text.
+     *    - The body is built with org.json, which escapes quotes, backslashes and control characters in the prompt.
+     *
+     * 2. Build the Bedrock model invocation request:
+     *    - Use InvokeModelRequest.builder() to create the request object.
+     *    - Specify the modelId chosen by the ModelRouter for this operation (primary, or fallback while the primary is degraded).
+     *    - Set contentType to "application/json" to indicate the request body is JSON.
+     *    - Set accept to "application/json" to request a JSON response from Bedrock.
+     *    - Convert the JSON request body String to SdkBytes (required by AWS SDK).
+     *    - If the caller passed a timeout, it bounds the whole call (retries included) so the call is abandoned in time.
+     *    - Build the final request object.
+     *
+     * 3. Send the request to AWS Bedrock:
+     *    - Hand the request to the BedrockInvoker, which calls invokeModel() on the async client while
+     *      enforcing the per-model in-flight limit, throttling retries and the circuit breaker.
+     *    - AWS Bedrock processes the request and responds with the model's output.
+     *
+     * 4. Extract and return the response:
+     *    - The response from Bedrock comes as raw bytes.
+     *    - Convert the response body to a UTF-8 String (so it's human-readable).
+     *    - Return this String, which contains the model's answer.
+     */
+    private String invokeBedrockModel(ModelRouter.Operation operation, String prompt, int maxTokens,
+            Consumer<String> answeredBy) {
+        return await(invokeBedrockModelAsync(operation, prompt, maxTokens, null, answeredBy));
+    }
+
+    private CompletableFuture<String> invokeBedrockModelAsync(ModelRouter.Operation operation, String prompt,
+            int maxTokens, Duration timeout, Consumer<String> answeredBy) {
+        return send(operation, buildRequestBody(prompt, maxTokens), timeout, answeredBy);
+    }
+
+    // answeredBy (optional) learns the routed model before the response is handed on
+    private CompletableFuture<String> send(ModelRouter.Operation operation, String requestBody, Duration timeout,
+            Consumer<String> answeredBy) {
+        return routed(operation, modelId -> {
+            CompletableFuture<String> call = bedrockInvoker.invoke(modelId, requestBody, timeout);
+            return answeredBy == null ? call : mapResult(call, response -> {
+                answeredBy.accept(modelId);
+                return response;
+            });
+        });
+    }
+
+    // Runs the invocation on the model the router selects, then feeds its latency and outcome back
+    private <T> CompletableFuture<T> routed(ModelRouter.Operation operation, Function<String, CompletableFuture<T>> invocation) {
+        String modelId = modelRouter.select(operation);
+        long start = System.nanoTime();
+        CompletableFuture<T> call = invocation.apply(modelId);
+        // latency feeds the router's p95 / error-rate fallback decision
+        call.whenComplete((response, error) -> {
+            long latency = System.nanoTime() - start;
+            if (!call.isCancelled()) {
+                modelRouter.record(modelId, latency, error == null);
+            }
+            // includes queueing for an in-flight slot and retries; aws.client.requests has the raw attempts
+            Timer.builder("bedrock.invocations").description("Bedrock model calls as seen by callers")
+                    .tags("operation", operation.name(), "model", modelId, "outcome", outcome(call, error))
+                    .register(metrics).record(latency, TimeUnit.NANOSECONDS);
+        });
+        return call;
+    }
+
+    private static String outcome(CompletableFuture<?> call, Throwable error) {
+        if (error == null) {
+            return "success";
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (call.isCancelled() || cause instanceof CancellationException) {
+            return "cancelled";
+        }
+        if (cause instanceof BedrockInvoker.CircuitOpenException) {
+            return "circuit_open";
+        }
+        if (cause instanceof ApiCallTimeoutException) {
+            return "timeout";
+        }
+        if (cause instanceof AwsServiceException se && se.awsErrorDetails() != null
+                && se.awsErrorDetails().errorCode() != null) {
+            return se.awsErrorDetails().errorCode();
+        }
+        return "client_error";
+    }
+
+    /**
+     * thenApply that also forwards cancellation to the source, so cancelling a derived future still
+     * cancels the Bedrock request.
+     */
+    private static <T> CompletableFuture<T> mapResult(CompletableFuture<String> source, Function<String, T> mapper) {
+        CompletableFuture<T> mapped = source.thenApply(mapper);
+        mapped.whenComplete((r, e) -> {
+            if (mapped.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return mapped;
+    }
+
+    /**
+     * Blocks for a Bedrock future on behalf of the synchronous API. An interrupt (e.g. a cancelled
+     * extraction job) cancels the underlying request; failures are rethrown unwrapped.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for Bedrock");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+        }
+    }
+
+    // Claude 3 expects the prompt wrapped in a structured JSON format
+    // For chat models, the structure is typically: {"messages":[{"role":"user","content":"..."}]}
+    // Built with org.json so any user text (backslashes, tabs, control characters) is escaped correctly
+    private String buildRequestBody(String prompt, int maxTokens) {
+        return new JSONObject()
+                .put("anthropic_version", "bedrock-2023-05-31")
+                .put("max_tokens", maxTokens)
+                .put("messages", new JSONArray().put(new JSONObject().put("role", "user").put("content", prompt)))
+                .toString();
+    }
+
+    /**
+     * Messages-API body with separate content blocks for prompt caching: the instructions go in
+     * the system block and the document is the first user block, both tagged with an ephemeral
+     * cache_control breakpoint; the question follows uncached. Bedrock reuses the cached prefix
+     * when the same instructions + document arrive again within the cache lifetime (about five minutes).
+     * Prefixes shorter than the model's minimum (1024 tokens for Sonnet) are processed normally.
+     */
+    private String buildStructuredRequestBody(StructuredPrompt prompt, int maxTokens) {
+        JSONArray system = new JSONArray().put(textBlock(prompt.instructions(), true));
+        JSONArray content = new JSONArray()
+                .put(textBlock(prompt.document(), true))
+                .put(textBlock(prompt.question(), false));
+        return new JSONObject()
+                .put("anthropic_version", "bedrock-2023-05-31")
+                .put("max_tokens", maxTokens)
+                .put("system", system)
+                .put("messages", new JSONArray().put(new JSONObject().put("role", "user").put("content", content)))
+                .toString();
+    }
+
+    private JSONObject textBlock(String text, boolean cacheable) {
+        JSONObject block = new JSONObject().put("type", "text").put("text", text);
+        if (cacheable && promptCacheEnabled) {
+            block.put("cache_control", new JSONObject().put("type", "ephemeral"));
+        }
+        return block;
+    }
+
+    private void recordPromptCacheUsage(String modelResponse) {
+        try {
+            JSONObject usage = new JSONObject(modelResponse).optJSONObject("usage");
+            if (usage == null) {
+                return;
+            }
+            long read = usage.optLong("cache_read_input_tokens", 0);
+            promptCacheReadTokens.addAndGet(read);
+            promptCacheWriteTokens.addAndGet(usage.optLong("cache_creation_input_tokens", 0));
+            uncachedInputTokens.addAndGet(usage.optLong("input_tokens", 0));
+            if (read > 0) {
+                promptCacheHits.incrementAndGet();
+            }
+        } catch (Exception e) {
+            // usage is informational only
+        }
+    }
+}
\ No newline at end of file
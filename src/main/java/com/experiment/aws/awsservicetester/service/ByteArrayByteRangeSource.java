@@ -0,0 +1,34 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.EOFException;
+
+/**
+ * {@link ByteRangeSource} over bytes already in memory, e.g. an entry read from a zip stream.
+ */
+final class ByteArrayByteRangeSource implements ByteRangeSource {
+
+    private final byte[] content;
+    private final int contentLength;
+
+    ByteArrayByteRangeSource(byte[] content, int contentLength) {
+        this.content = content;
+        this.contentLength = contentLength;
+    }
+
+    @Override
+    public long length() {
+        return contentLength;
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer, int offset, int length) throws EOFException {
+        if (position < 0 || position + length > contentLength) {
+            throw new EOFException("Unexpected end of data at offset " + Math.max(position, contentLength));
+        }
+        System.arraycopy(content, (int) position, buffer, offset, length);
+    }
+
+    @Override
+    public void close() {
+    }
+}
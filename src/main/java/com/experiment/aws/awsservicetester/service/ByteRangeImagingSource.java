@@ -0,0 +1,72 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.imaging.ImageFormat;
+import org.apache.commons.imaging.ImageParser;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.common.bytesource.ByteSource;
+
+/**
+ * Commons Imaging {@link ByteSource} over a {@link ByteRangeSource}. Parsers read blocks straight from the
+ * source, where the InputStream overloads of {@link Imaging} would copy everything they read onto the heap.
+ */
+final class ByteRangeImagingSource extends ByteSource {
+
+    private final ByteRangeSource source;
+
+    ByteRangeImagingSource(ByteRangeSource source, String fileName) {
+        super(fileName);
+        this.source = source;
+    }
+
+    /**
+     * The parser for the source's format, chosen from its magic bytes like {@link Imaging} does.
+     */
+    ImageParser<?> parser() throws ImageReadException, IOException {
+        ImageFormat format = Imaging.guessFormat(this);
+        for (ImageParser<?> parser : ImageParser.getAllImageParsers()) {
+            if (parser.canAcceptType(format)) {
+                return parser;
+            }
+        }
+        throw new ImageReadException("Can't parse this format.");
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new ByteRangeReader(source);
+    }
+
+    @Override
+    public byte[] getBlock(long start, int length) throws IOException {
+        if (start < 0 || length < 0 || start + length > source.length()) {
+            throw new IOException("Could not read block (block start: " + start + ", block length: " + length
+                    + ", data length: " + source.length() + ").");
+        }
+        byte[] block = new byte[length];
+        source.readFully(start, block, 0, length);
+        return block;
+    }
+
+    @Override
+    public byte[] getAll() throws IOException {
+        long length = source.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Source too large to read at once: " + length + " bytes");
+        }
+        return getBlock(0, (int) length);
+    }
+
+    @Override
+    public long getLength() throws IOException {
+        return source.length();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Byte range source: '" + getFileName() + "'";
+    }
+}
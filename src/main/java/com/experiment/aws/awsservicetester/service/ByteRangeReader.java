@@ -0,0 +1,154 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+/**
+ * Seekable stream over a {@link ByteRangeSource}, usable both as an InputStream (Tika, Imaging) and as a
+ * PDFBox {@link RandomAccessRead}. Reads go through a small buffer; each reader has its own position, so
+ * several readers may share one thread-safe source. Closing a reader does not close the source.
+ */
+final class ByteRangeReader extends InputStream implements RandomAccessRead {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ByteRangeSource source;
+    private final long length;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private long bufferStart;
+    private int bufferLength;
+    private long position;
+    private boolean closed;
+
+    ByteRangeReader(ByteRangeSource source) throws IOException {
+        this.source = source;
+        this.length = source.length();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+        fill();
+        return buffer[(int) (position++ - bufferStart)] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return -1;
+        }
+        int count = (int) Math.min(len, length - position);
+        if (count > BUFFER_SIZE) {
+            // large reads bypass the buffer
+            source.readFully(position, b, off, count);
+        } else {
+            int done = 0;
+            while (done < count) {
+                fill();
+                int chunk = (int) Math.min(count - done, bufferStart + bufferLength - position);
+                System.arraycopy(buffer, (int) (position - bufferStart), b, off + done, chunk);
+                position += chunk;
+                done += chunk;
+            }
+            return count;
+        }
+        position += count;
+        return count;
+    }
+
+    // Makes sure the buffer holds the byte at the current position. The buffer is aligned to its size,
+    // so the short rewinds parsers do (PDFBox peeks and unreads single bytes) stay inside it.
+    private void fill() throws IOException {
+        if (position >= bufferStart && position < bufferStart + bufferLength) {
+            return;
+        }
+        bufferStart = position - position % BUFFER_SIZE;
+        bufferLength = (int) Math.min(BUFFER_SIZE, length - bufferStart);
+        source.readFully(bufferStart, buffer, 0, bufferLength);
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void seek(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IOException("Invalid position " + newPosition);
+        }
+        position = newPosition;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        int b = read();
+        if (b != -1) {
+            position--;
+        }
+        return b;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(position - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int count) throws IOException {
+        if (count > length - position) {
+            throw new EOFException("Premature end of data at offset " + position);
+        }
+        byte[] data = new byte[count];
+        int done = 0;
+        while (done < count) {
+            done += read(data, done, count - done);
+        }
+        return data;
+    }
+
+    @Override
+    public boolean isEOF() {
+        return position >= length;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length - position));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
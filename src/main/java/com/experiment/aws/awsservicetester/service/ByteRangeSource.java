@@ -0,0 +1,17 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Random-access, read-only view of a file's bytes, so header parsers can read just the ranges they need.
+ */
+interface ByteRangeSource extends Closeable {
+
+    long length() throws IOException;
+
+    /**
+     * Reads exactly {@code length} bytes starting at {@code position}; fails if the data ends first.
+     */
+    void readFully(long position, byte[] buffer, int offset, int length) throws IOException;
+}
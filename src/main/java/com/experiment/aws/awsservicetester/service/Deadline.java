@@ -0,0 +1,41 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.time.Duration;
+
+/**
+ * Absolute point in time by which a job must finish. Threaded through the extraction pipeline so
+ * every blocking step (OCR wait, Bedrock call) can cap its own timeout to the time the job has left.
+ */
+final class Deadline {
+
+    static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private final long atMillis;
+
+    private Deadline(long atMillis) {
+        this.atMillis = atMillis;
+    }
+
+    static Deadline after(Duration duration) {
+        return new Deadline(System.currentTimeMillis() + duration.toMillis());
+    }
+
+    boolean isNone() {
+        return atMillis == Long.MAX_VALUE;
+    }
+
+    long remainingMillis() {
+        return isNone() ? Long.MAX_VALUE : Math.max(0, atMillis - System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the smaller of {@code timeout} and the remaining time; null stays null for NONE.
+     */
+    Duration cap(Duration timeout) {
+        if (isNone()) {
+            return timeout;
+        }
+        Duration remaining = Duration.ofMillis(Math.max(1, remainingMillis()));
+        return timeout == null || remaining.compareTo(timeout) < 0 ? remaining : timeout;
+    }
+}
@@ -0,0 +1,178 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.experiment.aws.awsservicetester.models.ExtractionOptions;
+
+/**
+ * Caches extracted field maps per (document version, field set, model, options).
+ * The document version is the S3 ETag, so re-uploading a file naturally misses.
+ * Entries are evicted LRU once {@code maxEntries} is reached and expire after the TTL.
+ * Concurrent misses for the same key are collapsed: only the first caller runs the loader,
+ * the others wait for its result (and take over the load if that caller is cancelled).
+ */
+@Component
+public class ExtractionResultCache {
+
+    private final int maxEntries;
+    private final Duration ttl;
+
+    // Access-ordered LinkedHashMap gives LRU eviction; guarded by its own monitor
+    private final LinkedHashMap<Key, Entry> entries;
+    private final Map<Key, CompletableFuture<Map<String, String>>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ExtractionResultCache(@Value("${extraction.cache.max-entries:10000}") int maxEntries,
+            @Value("${extraction.cache.ttl-minutes:60}") long ttlMinutes) {
+        this.maxEntries = maxEntries;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > ExtractionResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached fields for this key, or null on a miss or expired entry.
+     */
+    public Map<String, String> getIfPresent(Key key) {
+        return lookup(key, true);
+    }
+
+    // Counts a hit or miss only when asked, so one request is counted once however often it looks
+    private Map<String, String> lookup(Key key, boolean count) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                if (count) {
+                    hits.incrementAndGet();
+                }
+                return entry.fields;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        if (count) {
+            misses.incrementAndGet();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the cached value or computes it with {@code loader}, collapsing concurrent identical requests
+     * onto a single load. Failures are not cached.
+     */
+    public Map<String, String> getOrCompute(Key key, Supplier<Map<String, String>> loader) {
+        return getOrCompute(key, loader, () -> true, true);
+    }
+
+    /**
+     * {@link #getOrCompute(Key, Supplier)} whose load is only stored if {@code cacheable} still holds once it
+     * finished (e.g. the answer came from the model named in the key); otherwise it is only handed to the
+     * callers that shared the load.
+     */
+    public Map<String, String> getOrCompute(Key key, Supplier<Map<String, String>> loader, BooleanSupplier cacheable) {
+        return getOrCompute(key, loader, cacheable, true);
+    }
+
+    /**
+     * {@link #getOrCompute} for a caller whose {@link #getIfPresent} already missed; the miss is not counted again.
+     */
+    public Map<String, String> getOrComputeAfterMiss(Key key, Supplier<Map<String, String>> loader,
+            BooleanSupplier cacheable) {
+        return getOrCompute(key, loader, cacheable, false);
+    }
+
+    private Map<String, String> getOrCompute(Key key, Supplier<Map<String, String>> loader, BooleanSupplier cacheable,
+            boolean count) {
+        while (true) {
+            Map<String, String> cached = lookup(key, count);
+            // retries after a cancelled shared load belong to the same request
+            count = false;
+            if (cached != null) {
+                return cached;
+            }
+            CompletableFuture<Map<String, String>> pending = new CompletableFuture<>();
+            CompletableFuture<Map<String, String>> existing = inFlight.putIfAbsent(key, pending);
+            if (existing != null) {
+                try {
+                    return existing.get();
+                } catch (CancellationException e) {
+                    // The caller running the load was cancelled; retry, possibly running the load ourselves
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while waiting for a shared extraction");
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+                }
+            }
+            try {
+                Map<String, String> fields = Collections.unmodifiableMap(new LinkedHashMap<>(loader.get()));
+                if (cacheable.getAsBoolean()) {
+                    synchronized (entries) {
+                        entries.put(key, new Entry(fields, System.currentTimeMillis() + ttl.toMillis()));
+                    }
+                }
+                pending.complete(fields);
+                return fields;
+            } catch (RuntimeException e) {
+                pending.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, pending);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Map.of(
+                "size", size,
+                "maxEntries", maxEntries,
+                "inFlight", inFlight.size(),
+                "hits", hits.get(),
+                "misses", misses.get());
+    }
+
+    private record Entry(Map<String, String> fields, long expiresAt) {
+    }
+
+    /**
+     * Cache key. Field lists are normalized (trimmed, lower-cased, de-duplicated, sorted)
+     * so "name, dob" and "DOB,name" share an entry.
+     */
+    public record Key(String bucket, String key, String eTag, String fields, String modelId, String options) {
+
+        public static Key of(String bucket, String key, String eTag, String fields, String modelId,
+                ExtractionOptions options) {
+            SortedSet<String> normalized = new TreeSet<>();
+            for (String field : fields.split(",")) {
+                if (!field.isBlank()) {
+                    normalized.add(field.trim().toLowerCase());
+                }
+            }
+            return new Key(bucket, key, eTag, String.join(",", normalized), modelId,
+                    options.mode + "/" + options.mergePolicy);
+        }
+    }
+}
@@ -1,169 +1,692 @@
-package com.experiment.aws.awsservicetester.service;
-
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-import org.springframework.stereotype.Service;
-import org.json.JSONObject;
-
-import com.experiment.aws.awsservicetester.models.ExtractionJobResult;
-import com.experiment.aws.awsservicetester.models.OcrJobResult;
-
-@Service
-public class ExtractionService {
-
-    private final OcrService ocrService;
-    private final BedrockService bedrockService;
-    
-    // In-memory store for jobs
-    private final Map<String, ExtractionJobResult> jobStore = new ConcurrentHashMap<>();
-    private final ExecutorService executor = Executors.newCachedThreadPool();
-
-    public ExtractionService(OcrService ocrService, BedrockService bedrockService) {
-        this.ocrService = ocrService;
-        this.bedrockService = bedrockService;
-    }
-    
-    /**
-     * Starts an asynchronous extraction job for a given S3 document and specified fields.
-     * Generates a unique jobId, marks the job as IN_PROGRESS, and launches extraction in a background thread.
-     * Returns the jobId for polling status/results.
-     */
-    public String startExtractionJob(String bucket, String key, String fields) {
-        String jobId = UUID.randomUUID().toString();
-        jobStore.put(jobId, new ExtractionJobResult("IN_PROGRESS", null));
-        executor.submit(() -> runExtraction(jobId, bucket, key, fields));
-        return jobId;
-    }
-    
-    /**
-     * Returns the status and result of an extraction job by jobId.
-     * If the job is not found, returns a NOT_FOUND status with an error message.
-     */
-    public ExtractionJobResult getExtractionResult(String jobId) {
-        ExtractionJobResult result = jobStore.get(jobId);
-        if (result == null) {
-            return new ExtractionJobResult("NOT_FOUND", null, "Job ID not found");
-        }
-        return result;
-    }
-
-    /**
-     * The core extraction logic that runs asynchronously:
-     * 1. Starts OCR on the S3 document.
-     * 2. Polls for OCR completion.
-     * 3. Aggregates OCR text from all pages.
-     * 4. Builds a prompt for Bedrock LLM to extract fields.
-     * 5. Parses and stores the extracted fields in the job store.
-     * Handles and records failures if any step fails.
-     */
-    private void runExtraction(String jobId, String bucket, String key, String fields) {
-        try {
-            // 1. Start OCR
-            String ocrJobId = ocrService.startOcrProcessing(bucket, key);
-
-            // 2. Poll for OCR result (blocking)
-            OcrJobResult ocrResult = pollForOcrResult(ocrJobId);
-
-            if (!"SUCCEEDED".equals(ocrResult.status)) {
-                jobStore.put(jobId, new ExtractionJobResult("FAILED", null, "OCR failed: " + ocrResult.status));
-                return;
-            }
-
-            // 3. Aggregate text
-            StringBuilder fullText = new StringBuilder();
-            if (ocrResult.results != null) {
-                for (var page : ocrResult.results) {
-                    fullText.append(page.text).append("\n");
-                }
-            }
-
-            // 4. Build prompt & Bedrock extraction
-            String prompt = buildExtractionPrompt(fullText.toString(), fields);
-            String bedrockResponse = bedrockService.getModelResponse(prompt);
-
-            // 5. Parse extracted fields
-            Map<String, String> extractedFields = parseBedrockFields(bedrockResponse);
-
-            jobStore.put(jobId, new ExtractionJobResult("SUCCEEDED", extractedFields));
-        } catch (Exception e) {
-            jobStore.put(jobId, new ExtractionJobResult("FAILED", null, e.getMessage()));
-        }
-    }
-
-    /**
-     * Repeatedly polls the OCR job status until it completes (SUCCEEDED/FAILED) or times out.
-     * Throws an exception if the job does not finish in the given attempts.
-     */
-    private OcrJobResult pollForOcrResult(String jobId) {
-        int maxAttempts = 30;
-        int waitMillis = 1000;
-        for (int i = 0; i < maxAttempts; i++) {
-            OcrJobResult result = ocrService.getOcrResults(jobId, null);
-            if ("SUCCEEDED".equals(result.status) || "FAILED".equals(result.status)) {
-                return result;
-            }
-            try { Thread.sleep(waitMillis); } catch (InterruptedException ignored) {}
-        }
-        throw new RuntimeException("OCR job timed out");
-    }
-
-    /**
-     * Constructs a prompt string for the LLM to extract the specified fields from OCR text.
-     * Defaults to extracting name, date_of_birth, address if fields are not provided.
-     */
-    private String buildExtractionPrompt(String ocrText, String fields) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("Extract the following fields from this document's OCR text. ")
-              .append("Reply in JSON format with the fields as keys. ")
-              .append("Fields: ")
-              .append(fields)
-              .append("\n---\nOCR Text:\n")
-              .append(ocrText);
-        return prompt.toString();
-    }
-
-    /**
-     * Parses the Bedrock model's response, attempting to extract fields as a Map.
-     * Tries JSON parsing first, falls back to simple key-value line parsing if needed.
-     */
-    private Map<String, String> parseBedrockFields(String response) {
-        try {
-            JSONObject json = new JSONObject(response);
-            Map<String, String> fields = new HashMap<>();
-            for (String key : json.keySet()) {
-                String cleanKey = cleanValue(key);
-                String cleanValueStr = cleanValue(json.getString(key));
-                fields.put(cleanKey, cleanValueStr);
-            }
-            return fields;
-        } catch (Exception e) {
-            Map<String, String> fields = new HashMap<>();
-            String[] lines = response.split("\\r?\\n");
-            for (String line : lines) {
-                int idx = line.indexOf(':');
-                if (idx > 0) {
-                    String key = cleanValue(line.substring(0, idx).trim());
-                    String value = cleanValue(line.substring(idx + 1).trim());
-                    fields.put(key, value);
-                }
-            }
-            return fields;
-        }
-    }
-    
-    /**
-     * Cleans field keys and values by trimming whitespace, quotes, commas, and escaped quotes.
-     */
-    private String cleanValue(String value) {
-        // Remove leading/trailing spaces, quotes, commas, and escaped quotes
-        value = value.trim();
-        // Remove leading/trailing quotes and commas (including escaped quotes)
-        value = value.replaceAll("^[\"']+", "");
-        value = value.replaceAll("[\"',]+$", "");
-        value = value.replaceAll("\\\\\"", ""); // Remove escaped quotes
-        return value.trim();
-    }
+package com.experiment.aws.awsservicetester.service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.json.JSONObject;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import com.experiment.aws.awsservicetester.models.ExtractionJobResult;
+import com.experiment.aws.awsservicetester.models.ExtractionOptions;
+import com.experiment.aws.awsservicetester.models.OcrJobResult;
+import com.experiment.aws.awsservicetester.models.PageResult;
+
+@Service
+public class ExtractionService {
+
+	private static final Logger log = LoggerFactory.getLogger(ExtractionService.class);
+
+    private static final long OCR_TIMEOUT_SECONDS = 30;
+
+    // Fixed instruction preambles. They never vary per request so Bedrock can serve them from its prompt cache;
+    // the OCR text follows as the cacheable document and the field list comes last.
+    private static final String EXTRACTION_INSTRUCTIONS =
+            "Extract the fields listed at the end of the user message from the document's OCR text. "
+            + "Reply in JSON format with the fields as keys.";
+    private static final String WINDOW_INSTRUCTIONS_BASE =
+            "Extract the fields listed at the end of the user message from the document's OCR text. "
+            + "The text may be only one part of a longer document. "
+            + "Use an empty string for fields that do not appear in this part. ";
+    private static final String WINDOW_INSTRUCTIONS = WINDOW_INSTRUCTIONS_BASE
+            + "Reply in JSON format with the fields as keys.";
+    private static final String WINDOW_INSTRUCTIONS_WITH_CONFIDENCE = WINDOW_INSTRUCTIONS_BASE
+            + "Reply in JSON format with the fields as keys, each mapped to an object "
+            + "{\"value\": <string>, \"confidence\": <number between 0 and 1>}.";
+
+    private final OcrService ocrService;
+    private final BedrockService bedrockService;
+    private final S3Service s3Service;
+    private final ExtractionResultCache resultCache;
+    private final WebhookNotifier webhookNotifier;
+    private final FieldExtractorRegistry fieldExtractors;
+    private final OcrTextCompactor compactor;
+    private final MeterRegistry metrics;
+    
+    // In-memory store for jobs
+    private final Map<String, ExtractionJobResult> jobStore = new ConcurrentHashMap<>();
+    // Completion signal for jobs still running; used by long-poll requests and webhooks
+    private final Map<String, CompletableFuture<ExtractionJobResult>> jobCompletions = new ConcurrentHashMap<>();
+    // OCR runs currently in flight, keyed by bucket/key, so duplicate documents share one Textract job
+    private final Map<String, CompletableFuture<OcrJobResult>> inFlightOcr = new ConcurrentHashMap<>();
+    // Jobs that can still be cancelled: the background task and its deadline timer
+    private final Map<String, RunningJob> runningJobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService deadlineScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("extraction-deadline-", 0).factory());
+
+    // WINDOWED mode: input token budget per window and output cap per window call
+    private final int windowMaxInputTokens;
+    private final int windowMaxOutputTokens;
+    // Applied when a job is started without an explicit deadline; 0 means no deadline
+    private final long defaultDeadlineSeconds;
+
+    public ExtractionService(OcrService ocrService, BedrockService bedrockService,
+            S3Service s3Service, ExtractionResultCache resultCache, WebhookNotifier webhookNotifier,
+            FieldExtractorRegistry fieldExtractors, OcrTextCompactor compactor, MeterRegistry metrics,
+            @Value("${extraction.window.max-input-tokens:6000}") int windowMaxInputTokens,
+            @Value("${extraction.window.max-output-tokens:512}") int windowMaxOutputTokens,
+            @Value("${extraction.default-deadline-seconds:0}") long defaultDeadlineSeconds) {
+        this.ocrService = ocrService;
+        this.bedrockService = bedrockService;
+        this.s3Service = s3Service;
+        this.resultCache = resultCache;
+        this.webhookNotifier = webhookNotifier;
+        this.fieldExtractors = fieldExtractors;
+        this.compactor = compactor;
+        this.metrics = metrics;
+        this.windowMaxInputTokens = windowMaxInputTokens;
+        this.windowMaxOutputTokens = windowMaxOutputTokens;
+        this.defaultDeadlineSeconds = defaultDeadlineSeconds;
+        Gauge.builder("extraction.jobs.stored", jobStore, Map::size)
+                .description("Extraction jobs held in the in-memory job store").register(metrics);
+        Gauge.builder("extraction.jobs.running", runningJobs, Map::size)
+                .description("Extraction jobs still running").register(metrics);
+        Gauge.builder("extraction.ocr.in.flight", inFlightOcr, Map::size)
+                .description("Documents with an OCR run in flight").register(metrics);
+        new ExecutorServiceMetrics(executor, "extraction", Tags.empty()).bindTo(metrics);
+    }
+    
+    /**
+     * Starts an asynchronous extraction job for a given S3 document and specified fields.
+     * Generates a unique jobId, marks the job as IN_PROGRESS, and launches extraction in a background thread.
+     * Unless {@code bypassCache} is set, a cached result for the same document version (ETag), field set
+     * and model completes the job immediately as SUCCEEDED without starting any background work.
+     * If a {@code callbackUrl} is given, the final job result is POSTed to it when the job completes.
+     * A job still running after {@code deadlineSeconds} (or the configured default) is stopped and
+     * recorded as DEADLINE_EXCEEDED.
+     * Returns the jobId for polling status/results.
+     */
+    public String startExtractionJob(String bucket, String key, String fields, ExtractionOptions options,
+            boolean bypassCache, String callbackUrl, Long deadlineSeconds) {
+        if (callbackUrl != null) {
+            webhookNotifier.validate(callbackUrl);
+        }
+        long effectiveDeadlineSeconds = deadlineSeconds != null ? deadlineSeconds : defaultDeadlineSeconds;
+        if (effectiveDeadlineSeconds < 0) {
+            throw new IllegalArgumentException("deadlineSeconds must not be negative");
+        }
+        String jobId = UUID.randomUUID().toString();
+        ExtractionResultCache.Key cacheKey = bypassCache ? null : cacheKeyFor(bucket, key, fields, options);
+        Map<String, String> cached = cacheKey != null ? resultCache.getIfPresent(cacheKey) : null;
+        if (cached != null) {
+            jobStore.put(jobId, new ExtractionJobResult("SUCCEEDED", cached));
+        } else {
+            Deadline deadline = effectiveDeadlineSeconds > 0
+                    ? Deadline.after(Duration.ofSeconds(effectiveDeadlineSeconds)) : Deadline.NONE;
+            RunningJob running = new RunningJob();
+            jobStore.put(jobId, new ExtractionJobResult("IN_PROGRESS", null));
+            jobCompletions.put(jobId, new CompletableFuture<>());
+            runningJobs.put(jobId, running);
+            if (!deadline.isNone()) {
+                running.deadlineTimer = deadlineScheduler.schedule(
+                        () -> abortJob(jobId, "DEADLINE_EXCEEDED",
+                                "Job did not finish within " + effectiveDeadlineSeconds + " seconds"),
+                        deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+            }
+            running.setTask(executor.submit(() -> runExtraction(jobId, bucket, key, fields, options, cacheKey, deadline)));
+        }
+        if (callbackUrl != null) {
+            awaitCompletion(jobId).thenAccept(result ->
+                    webhookNotifier.notify(callbackUrl, Map.of("jobId", jobId, "type", "extraction", "result", result)));
+        }
+        return jobId;
+    }
+
+    /**
+     * Cancels a running job: records CANCELLED and interrupts its background work (OCR wait,
+     * Bedrock calls, queued window calls). Jobs that already finished keep their result.
+     * Returns the job's status after the call.
+     */
+    public ExtractionJobResult cancelExtractionJob(String jobId) {
+        abortJob(jobId, "CANCELLED", "Job was cancelled");
+        return getExtractionResult(jobId);
+    }
+    
+    /**
+     * Returns the status and result of an extraction job by jobId.
+     * If the job is not found, returns a NOT_FOUND status with an error message.
+     */
+    public ExtractionJobResult getExtractionResult(String jobId) {
+        ExtractionJobResult result = jobStore.get(jobId);
+        if (result == null) {
+            return new ExtractionJobResult("NOT_FOUND", null, "Job ID not found");
+        }
+        return result;
+    }
+
+    /**
+     * Returns a future that completes with the job's final result. Already finished (or unknown)
+     * jobs complete immediately with their current result.
+     */
+    public CompletableFuture<ExtractionJobResult> awaitCompletion(String jobId) {
+        CompletableFuture<ExtractionJobResult> completion = jobCompletions.get(jobId);
+        if (completion != null) {
+            return completion;
+        }
+        return CompletableFuture.completedFuture(getExtractionResult(jobId));
+    }
+
+    /**
+     * Records a terminal job result and wakes up anyone waiting on the job.
+     * Only the first terminal result counts: a job that was cancelled or hit its deadline
+     * is not overwritten by the (interrupted) background task finishing afterwards.
+     * Returns the job's running state if this call completed it, otherwise null.
+     */
+    private RunningJob completeJob(String jobId, ExtractionJobResult result) {
+        CompletableFuture<ExtractionJobResult> completion = jobCompletions.remove(jobId);
+        if (completion == null) {
+            return null;
+        }
+        jobStore.put(jobId, result);
+        RunningJob running = runningJobs.remove(jobId);
+        if (running != null && running.deadlineTimer != null) {
+            running.deadlineTimer.cancel(false);
+        }
+        completion.complete(result);
+        return running;
+    }
+
+    private void abortJob(String jobId, String status, String message) {
+        RunningJob running = completeJob(jobId, new ExtractionJobResult(status, null, message));
+        if (running != null) {
+            running.cancel();
+        }
+    }
+
+    /**
+     * Hit/miss counters and occupancy of the extraction result cache.
+     */
+    public Map<String, Object> getCacheStats() {
+        return resultCache.stats();
+    }
+
+    public Map<String, Object> getFastPathStats() {
+        return fieldExtractors.stats();
+    }
+
+    /**
+     * The core extraction logic that runs asynchronously.
+     * Delegates to {@link #extractFields} (through the result cache unless bypassed, so identical
+     * concurrent jobs share one run) and records the outcome in the job store.
+     */
+    private void runExtraction(String jobId, String bucket, String key, String fields, ExtractionOptions options,
+            ExtractionResultCache.Key cacheKey, Deadline deadline) {
+        OcrTextCompactor.Report report = new OcrTextCompactor.Report();
+        List<String> warnings = new ArrayList<>();
+        Set<String> models = ConcurrentHashMap.newKeySet();
+        long start = System.nanoTime();
+        try {
+            // startExtractionJob already counted the cache miss
+            Map<String, String> extractedFields = cacheKey != null
+                    ? resultCache.getOrComputeAfterMiss(cacheKey,
+                            () -> extractFields(bucket, key, fields, options, deadline, report, warnings, models),
+                            answeredByPrimary(models))
+                    : extractFields(bucket, key, fields, options, deadline, report, warnings, models);
+            ExtractionJobResult result = new ExtractionJobResult("SUCCEEDED", extractedFields);
+            if (report.originalTokens > 0) {
+                // only set when this job actually prompted Bedrock (not for cache hits or fast-path-only jobs)
+                result.promptStats = report.toMap();
+            }
+            if (!warnings.isEmpty()) {
+                result.warnings = warnings;
+            }
+            completeJob(jobId, result);
+        } catch (Exception e) {
+            completeJob(jobId, new ExtractionJobResult("FAILED", null, e.getMessage()));
+        }
+        // the stored status, so jobs that were cancelled or hit their deadline count as such
+        Timer.builder("extraction.jobs").description("Extraction jobs from start of the background run to the final result")
+                .tags("status", getExtractionResult(jobId).status).register(metrics)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Blocking extraction that goes through the result cache; used for batch items.
+     */
+    Map<String, String> extractFieldsCached(String bucket, String key, String fields, ExtractionOptions options) {
+        Set<String> models = ConcurrentHashMap.newKeySet();
+        return resultCache.getOrCompute(cacheKeyFor(bucket, key, fields, options),
+                () -> extractFields(bucket, key, fields, options, Deadline.NONE, new OcrTextCompactor.Report(),
+                        new ArrayList<>(), models),
+                answeredByPrimary(models));
+    }
+
+    // Results are keyed on the primary model; one that a fallback model (partly) answered is not stored
+    private BooleanSupplier answeredByPrimary(Set<String> models) {
+        return () -> models.stream().allMatch(bedrockService.getModelId()::equals);
+    }
+
+    private ExtractionResultCache.Key cacheKeyFor(String bucket, String key, String fields, ExtractionOptions options) {
+        return ExtractionResultCache.Key.of(bucket, key, s3Service.getETag(bucket, key), fields,
+                bedrockService.getModelId(), options);
+    }
+
+    /**
+     * Extracts the requested fields from a single S3 document, blocking until done:
+     * 1. Runs OCR on the S3 document (shared with concurrent requests for the same document).
+     * 2. Resolves pattern-matchable fields (dates, amounts, IDs, ...) locally; if all resolve, Bedrock is skipped.
+     * 3. Compacts the OCR text (drops noise lines and repeated boilerplate) and records the token saving.
+     * 4. Aggregates OCR text from all pages, within the input token budget.
+     * 5. Builds a prompt for Bedrock LLM to extract the remaining fields (or one prompt per window in WINDOWED mode).
+     * 6. Parses the response and merges it with the locally resolved fields.
+     * Used by both single-document jobs and batch extraction.
+     */
+    Map<String, String> extractFields(String bucket, String key, String fields, ExtractionOptions options) {
+        return extractFields(bucket, key, fields, options, Deadline.NONE, new OcrTextCompactor.Report(),
+                new ArrayList<>(), ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * A PARTIAL_SUCCESS OCR run (Textract could not read some pages) still goes on to extraction with the pages
+     * it did read; the caveat is logged and added to {@code warnings}. Every model that answered a prompt is
+     * added to {@code models}.
+     */
+    private Map<String, String> extractFields(String bucket, String key, String fields, ExtractionOptions options,
+            Deadline deadline, OcrTextCompactor.Report report, List<String> warnings, Set<String> models) {
+        // 1. Run OCR (blocking)
+        long stageStart = System.nanoTime();
+        OcrJobResult ocrResult = runOcr(bucket, key, deadline);
+        recordStage("ocr", stageStart);
+
+        if ("PARTIAL_SUCCESS".equals(ocrResult.status)) {
+            log.warn("OCR of s3://{}/{} only partially succeeded; extracting from the pages Textract returned",
+                    bucket, key);
+            warnings.add("OCR status PARTIAL_SUCCESS: some pages could not be read, fields may be missing");
+        } else if (!"SUCCEEDED".equals(ocrResult.status)) {
+            throw new IllegalStateException("OCR failed: " + ocrResult.status);
+        }
+
+        List<PageResult> pages = ocrResult.results != null ? ocrResult.results : List.of();
+
+        // 2. Deterministic fast path
+        List<String> requested = new ArrayList<>();
+        for (String field : fields.split(",")) {
+            if (!field.isBlank()) {
+                requested.add(field.trim());
+            }
+        }
+        stageStart = System.nanoTime();
+        Map<String, String> resolvedLocally = fieldExtractors.resolve(requested, pages);
+        recordStage("fast_path", stageStart);
+        if (!requested.isEmpty() && resolvedLocally.size() == requested.size()) {
+            fieldExtractors.recordLlmSkipped();
+            return resolvedLocally;
+        }
+        String remainingFields = resolvedLocally.isEmpty() ? fields : requested.stream()
+                .filter(f -> !resolvedLocally.containsKey(f))
+                .collect(Collectors.joining(", "));
+
+        // 3. Compact OCR text (low-confidence lines, page numbers, repeated headers/footers)
+        stageStart = System.nanoTime();
+        List<PageResult> promptPages = compactor.compact(pages, report);
+        recordStage("compaction", stageStart);
+
+        Map<String, String> extracted = options.mode == ExtractionOptions.Mode.WINDOWED
+                ? extractWindowed(promptPages, remainingFields, options.mergePolicy, deadline, models)
+                : extractSingle(promptPages, remainingFields, deadline, report, models);
+        extracted.putAll(resolvedLocally);
+        return extracted;
+    }
+
+    private Map<String, String> extractSingle(List<PageResult> pages, String fields, Deadline deadline,
+            OcrTextCompactor.Report report, Set<String> models) {
+        // 4. Aggregate text within the input token budget
+        long stageStart = System.nanoTime();
+        String fullText = compactor.joinWithinBudget(pages, report);
+
+        // 5. Build prompt & Bedrock extraction
+        StructuredPrompt prompt = buildExtractionPrompt(fullText, fields);
+        recordStage("prompt", stageStart);
+        stageStart = System.nanoTime();
+        String bedrockResponse = bedrockService.getExtractionResponse(prompt, deadline.cap(null), models::add);
+        recordStage("bedrock", stageStart);
+
+        // 6. Parse extracted fields
+        stageStart = System.nanoTime();
+        Map<String, String> extracted = parseBedrockFields(bedrockResponse);
+        recordStage("parse", stageStart);
+        return extracted;
+    }
+
+    /**
+     * Per-stage timings of an extraction ({@code extraction.stage}): ocr (start, Textract processing and
+     * polling), fast_path, compaction, prompt (text assembly / windowing), bedrock (model calls) and parse.
+     */
+    private void recordStage(String stage, long startNanos) {
+        recordStageNanos(stage, System.nanoTime() - startNanos);
+    }
+
+    private void recordStageNanos(String stage, long nanos) {
+        Timer.builder("extraction.stage").description("Time spent in each extraction stage").tags("stage", stage)
+                .register(metrics).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Map-reduce extraction for long documents:
+     * 1. Splits the OCR text into windows that fit the input token budget, along page boundaries.
+     * 2. Sends one extraction prompt per window to Bedrock in parallel.
+     * 3. Merges the per-window field maps using the requested merge policy.
+     * Latency is bounded by the slowest window rather than the size of the whole document.
+     */
+    private Map<String, String> extractWindowed(List<PageResult> pages, String fields, ExtractionOptions.MergePolicy mergePolicy,
+            Deadline deadline, Set<String> models) {
+        long stageStart = System.nanoTime();
+        List<String> windows = buildWindows(pages, windowMaxInputTokens);
+        boolean withConfidence = mergePolicy == ExtractionOptions.MergePolicy.HIGHEST_CONFIDENCE;
+        List<StructuredPrompt> prompts = new ArrayList<>();
+        for (int i = 0; i < windows.size(); i++) {
+            prompts.add(buildWindowPrompt(windows.get(i), fields, i + 1, windows.size(), withConfidence));
+        }
+        recordStage("prompt", stageStart);
+
+        stageStart = System.nanoTime();
+        List<Future<String>> calls = new ArrayList<>();
+        for (StructuredPrompt prompt : prompts) {
+            // async calls: windows wait in the invoker's per-model queue rather than on threads
+            calls.add(bedrockService.getExtractionResponseAsync(prompt, windowMaxOutputTokens, deadline.cap(null),
+                    models::add));
+        }
+
+        // Merge in document order so FIRST_NON_EMPTY prefers earlier pages
+        Map<String, String> merged = new LinkedHashMap<>();
+        Map<String, Double> bestConfidence = new HashMap<>();
+        long parseNanos = 0;
+        try {
+            for (Future<String> call : calls) {
+                String response = awaitWindow(call);
+                long parseStart = System.nanoTime();
+                mergeWindow(response, merged, bestConfidence, withConfidence);
+                parseNanos += System.nanoTime() - parseStart;
+            }
+            // windows are parsed while later ones are still running; split that time out of the Bedrock stage
+            recordStageNanos("bedrock", System.nanoTime() - stageStart - parseNanos);
+            recordStageNanos("parse", parseNanos);
+        } finally {
+            // On failure or cancellation, stop windows that are still queued or running
+            for (Future<String> call : calls) {
+                call.cancel(true);
+            }
+        }
+        return merged;
+    }
+
+    private String awaitWindow(Future<String> call) {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for Bedrock");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Folds one window's field values into the merged map according to the merge policy.
+     */
+    void mergeWindow(String response, Map<String, String> merged, Map<String, Double> bestConfidence,
+            boolean withConfidence) {
+        for (Map.Entry<String, ScoredValue> entry : parseScoredFields(response).entrySet()) {
+            String field = entry.getKey();
+            ScoredValue candidate = entry.getValue();
+            if (isEmptyValue(candidate.value())) {
+                merged.putIfAbsent(field, "");
+                continue;
+            }
+            boolean take = withConfidence
+                    ? candidate.confidence() > bestConfidence.getOrDefault(field, -1.0)
+                    : isEmptyValue(merged.get(field));
+            if (take) {
+                merged.put(field, candidate.value());
+                bestConfidence.put(field, candidate.confidence());
+            }
+        }
+    }
+
+    /**
+     * Groups pages into windows whose estimated token count stays within the budget.
+     * A page that alone exceeds the budget is split on line boundaries.
+     */
+    List<String> buildWindows(List<PageResult> pages, int maxTokens) {
+        List<String> windows = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int currentTokens = 0;
+        for (PageResult page : pages) {
+            String text = page.text != null ? page.text : "";
+            int pageTokens = TokenEstimator.estimate(text);
+            if (currentTokens > 0 && currentTokens + pageTokens > maxTokens) {
+                windows.add(current.toString());
+                current.setLength(0);
+                currentTokens = 0;
+            }
+            if (pageTokens > maxTokens) {
+                for (String line : text.split("\n")) {
+                    int lineTokens = TokenEstimator.estimate(line) + 1;
+                    if (currentTokens > 0 && currentTokens + lineTokens > maxTokens) {
+                        windows.add(current.toString());
+                        current.setLength(0);
+                        currentTokens = 0;
+                    }
+                    current.append(line).append("\n");
+                    currentTokens += lineTokens;
+                }
+                continue;
+            }
+            current.append(text).append("\n");
+            currentTokens += pageTokens;
+        }
+        if (currentTokens > 0) {
+            windows.add(current.toString());
+        }
+        return windows;
+    }
+
+    /**
+     * Prompt for one window. Missing fields must come back empty so the merge can tell
+     * "not in this part" apart from a real value; with confidence, each field is an object.
+     */
+    private StructuredPrompt buildWindowPrompt(String windowText, String fields, int window, int windowCount,
+            boolean withConfidence) {
+        String instructions = withConfidence ? WINDOW_INSTRUCTIONS_WITH_CONFIDENCE : WINDOW_INSTRUCTIONS;
+        String document = "This is part " + window + " of " + windowCount + " of the document.\nOCR Text:\n" + windowText;
+        return new StructuredPrompt(instructions, document, "Fields: " + fields);
+    }
+
+    /**
+     * Parses a window response into values with confidence. Plain string values (or a
+     * non-JSON reply) fall back to {@link #parseBedrockFields} with zero confidence.
+     */
+    private Map<String, ScoredValue> parseScoredFields(String response) {
+        Map<String, ScoredValue> scored = new LinkedHashMap<>();
+        try {
+            JSONObject json = new JSONObject(response);
+            for (String key : json.keySet()) {
+                JSONObject entry = json.optJSONObject(key);
+                if (entry != null) {
+                    scored.put(cleanValue(key), new ScoredValue(
+                            cleanValue(entry.optString("value", "")), entry.optDouble("confidence", 0.0)));
+                } else {
+                    scored.put(cleanValue(key), new ScoredValue(cleanValue(json.optString(key, "")), 0.0));
+                }
+            }
+        } catch (Exception e) {
+            parseBedrockFields(response).forEach((k, v) -> scored.put(k, new ScoredValue(v, 0.0)));
+        }
+        return scored;
+    }
+
+    private boolean isEmptyValue(String value) {
+        return value == null || value.isBlank()
+                || value.equalsIgnoreCase("null") || value.equalsIgnoreCase("n/a");
+    }
+
+    private record ScoredValue(String value, double confidence) {
+    }
+
+    /**
+     * Starts Textract on the document and polls until it completes.
+     * Concurrent requests for the same bucket/key share a single Textract job instead of
+     * each starting their own; the in-flight entry is dropped once the job finishes.
+     */
+    private OcrJobResult runOcr(String bucket, String key, Deadline deadline) {
+        String documentKey = bucket + "/" + key;
+        while (true) {
+            CompletableFuture<OcrJobResult> pending = new CompletableFuture<>();
+            CompletableFuture<OcrJobResult> existing = inFlightOcr.putIfAbsent(documentKey, pending);
+            if (existing != null) {
+                try {
+                    return existing.get();
+                } catch (CancellationException e) {
+                    // The job that owned this OCR run was cancelled; try again, possibly as the new owner
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while waiting for OCR");
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+                }
+            }
+            try {
+                String ocrJobId = ocrService.startOcrProcessing(bucket, key);
+                OcrJobResult result = pollForOcrResult(ocrJobId, deadline);
+                pending.complete(result);
+                return result;
+            } catch (RuntimeException e) {
+                pending.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlightOcr.remove(documentKey, pending);
+            }
+        }
+    }
+
+    /**
+     * Waits for the OCR job on the shared Textract poller until it completes (SUCCEEDED/FAILED) or times out.
+     * The wait is capped by the job's deadline; when this job stops waiting (timeout, cancellation)
+     * it releases its watch so the poller can stop if nobody else needs the result.
+     * Throws an exception if the job does not finish within the timeout.
+     */
+    private OcrJobResult pollForOcrResult(String jobId, Deadline deadline) {
+        CompletableFuture<OcrJobResult> watch = ocrService.watchJob(jobId);
+        try {
+            Duration timeout = deadline.cap(Duration.ofSeconds(OCR_TIMEOUT_SECONDS));
+            return watch.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("OCR job timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for OCR");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("OCR polling failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            watch.cancel(false);
+        }
+    }
+
+    /**
+     * Constructs the prompt for the LLM to extract the specified fields from OCR text, split into cacheable parts.
+     * Defaults to extracting name, date_of_birth, address if fields are not provided.
+     */
+    private StructuredPrompt buildExtractionPrompt(String ocrText, String fields) {
+        return new StructuredPrompt(EXTRACTION_INSTRUCTIONS, "OCR Text:\n" + ocrText, "Fields: " + fields);
+    }
+
+    /**
+     * Parses the Bedrock model's response, attempting to extract fields as a Map.
+     * Tries JSON parsing first, falls back to simple key-value line parsing if needed.
+     */
+    private Map<String, String> parseBedrockFields(String response) {
+        try {
+            JSONObject json = new JSONObject(response);
+            Map<String, String> fields = new HashMap<>();
+            for (String key : json.keySet()) {
+                String cleanKey = cleanValue(key);
+                String cleanValueStr = cleanValue(json.getString(key));
+                fields.put(cleanKey, cleanValueStr);
+            }
+            return fields;
+        } catch (Exception e) {
+            Map<String, String> fields = new HashMap<>();
+            String[] lines = response.split("\\r?\\n");
+            for (String line : lines) {
+                int idx = line.indexOf(':');
+                if (idx > 0) {
+                    String key = cleanValue(line.substring(0, idx).trim());
+                    String value = cleanValue(line.substring(idx + 1).trim());
+                    fields.put(key, value);
+                }
+            }
+            return fields;
+        }
+    }
+    
+    /**
+     * Runs a model response through both field parsers, so StartupWarmup can get them compiled before traffic.
+     * @return number of fields parsed
+     */
+    int parseFieldsForWarmup(String response) {
+        return parseBedrockFields(response).size() + parseScoredFields(response).size();
+    }
+
+    /**
+     * Cleans field keys and values by trimming whitespace, quotes, commas, and escaped quotes.
+     */
+    private String cleanValue(String value) {
+        // Remove leading/trailing spaces, quotes, commas, and escaped quotes
+        value = value.trim();
+        // Remove leading/trailing quotes and commas (including escaped quotes)
+        value = value.replaceAll("^[\"']+", "");
+        value = value.replaceAll("[\"',]+$", "");
+        value = value.replaceAll("\\\\\"", ""); // Remove escaped quotes
+        return value.trim();
+    }
+
+    /**
+     * Cancellation handle for a job that is still running. The task is attached after submission,
+     * so a cancel that races with startup is applied as soon as the task is known.
+     */
+    private static class RunningJob {
+        private Future<?> task;
+        private boolean cancelled;
+        volatile ScheduledFuture<?> deadlineTimer;
+
+        synchronized void setTask(Future<?> task) {
+            this.task = task;
+            if (cancelled) {
+                task.cancel(true);
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (task != null) {
+                task.cancel(true);
+            }
+            if (deadlineTimer != null) {
+                deadlineTimer.cancel(false);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.experiment.aws.awsservicetester.models.LineInfo;
+
+/**
+ * Deterministic extractor for fields that can be read straight off the OCR lines (dates, amounts,
+ * IDs, emails, ...). Implementations registered as beans are picked up by {@link FieldExtractorRegistry}
+ * and tried before the document is sent to Bedrock.
+ */
+public interface FieldExtractor {
+
+    /**
+     * Whether this extractor knows how to find the given field; {@code field} is lower-cased.
+     */
+    boolean supports(String field);
+
+    /**
+     * Looks for the field's value in the OCR lines. Returns empty when nothing (or nothing unambiguous) was found.
+     */
+    Optional<Candidate> extract(String field, List<LineInfo> lines);
+
+    /**
+     * A value found locally, with a confidence between 0 and 1.
+     */
+    record Candidate(String value, double confidence) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.experiment.aws.awsservicetester.models.LineInfo;
+import com.experiment.aws.awsservicetester.models.PageResult;
+
+/**
+ * Fast path in front of Bedrock: runs the registered {@link FieldExtractor}s over the OCR lines and
+ * returns the fields they resolve with at least {@code minConfidence}. Everything else is left to the LLM.
+ */
+@Component
+public class FieldExtractorRegistry {
+
+    private final List<FieldExtractor> extractors;
+    private final boolean enabled;
+    private final double minConfidence;
+
+    private final AtomicLong fieldsRequested = new AtomicLong();
+    private final AtomicLong fieldsResolved = new AtomicLong();
+    private final AtomicLong llmCallsSkipped = new AtomicLong();
+
+    public FieldExtractorRegistry(List<FieldExtractor> extractors,
+            @Value("${extraction.fast-path.enabled:true}") boolean enabled,
+            @Value("${extraction.fast-path.min-confidence:0.9}") double minConfidence) {
+        this.extractors = extractors;
+        this.enabled = enabled;
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * Resolves what it can of {@code fields} from the pages' OCR lines. Keys are the field names as requested.
+     */
+    public Map<String, String> resolve(List<String> fields, List<PageResult> pages) {
+        Map<String, String> resolved = new LinkedHashMap<>();
+        fieldsRequested.addAndGet(fields.size());
+        if (!enabled || fields.isEmpty()) {
+            return resolved;
+        }
+        List<LineInfo> lines = new ArrayList<>();
+        for (PageResult page : pages) {
+            if (page.lines != null) {
+                lines.addAll(page.lines);
+            }
+        }
+        for (String field : fields) {
+            String normalized = field.toLowerCase();
+            for (FieldExtractor extractor : extractors) {
+                if (!extractor.supports(normalized)) {
+                    continue;
+                }
+                Optional<FieldExtractor.Candidate> candidate = extractor.extract(normalized, lines);
+                if (candidate.isPresent() && candidate.get().confidence() >= minConfidence) {
+                    resolved.put(field, candidate.get().value());
+                }
+                break;
+            }
+        }
+        fieldsResolved.addAndGet(resolved.size());
+        return resolved;
+    }
+
+    public void recordLlmSkipped() {
+        llmCallsSkipped.incrementAndGet();
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+                "enabled", enabled,
+                "extractors", extractors.size(),
+                "fieldsRequested", fieldsRequested.get(),
+                "fieldsResolvedLocally", fieldsResolved.get(),
+                "llmCallsSkipped", llmCallsSkipped.get());
+    }
+}
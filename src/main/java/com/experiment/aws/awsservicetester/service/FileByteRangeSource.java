@@ -0,0 +1,41 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link ByteRangeSource} over a local file, using positional channel reads.
+ */
+final class FileByteRangeSource implements ByteRangeSource {
+
+    private final FileChannel channel;
+
+    FileByteRangeSource(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    @Override
+    public long length() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(buffer, offset, length);
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position + target.position() - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at offset " + (position + target.position() - offset));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
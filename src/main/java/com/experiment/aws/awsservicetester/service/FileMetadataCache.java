@@ -0,0 +1,110 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.experiment.aws.awsservicetester.models.PageRange;
+
+/**
+ * Caches per-page file metadata by content hash (SHA-256 of the file bytes), so re-uploads of the same
+ * file skip MIME detection and parsing. Content-addressed entries never go stale, so there is no TTL;
+ * eviction is LRU weighted by the approximate heap size of each result, bounded by {@code maxBytes}.
+ */
+@Component
+public class FileMetadataCache {
+
+    // Rough heap cost of an entry (map node, hash string) and of each page range with its metadata record
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    private static final int RANGE_BYTES = 160;
+
+    private final boolean enabled;
+    private final long maxBytes;
+
+    // Access-ordered LinkedHashMap gives LRU order; guarded by its own monitor
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public FileMetadataCache(@Value("${metadata.cache.enabled:true}") boolean enabled,
+            @Value("${metadata.cache.max-bytes:33554432}") long maxBytes) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the cached page metadata for this content hash, or null on a miss.
+     */
+    public List<PageRange> get(String contentHash) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(contentHash);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.pages;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a read-only copy of the page metadata and returns it. Ranges and their metadata are immutable,
+     * so only the list itself is copied.
+     */
+    public List<PageRange> put(String contentHash, List<PageRange> pages) {
+        List<PageRange> readOnly = List.copyOf(pages);
+        long weight = ENTRY_OVERHEAD_BYTES + (long) RANGE_BYTES * readOnly.size();
+        if (!enabled || weight > maxBytes) {
+            return readOnly;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(contentHash, new Entry(readOnly, weight));
+            if (previous != null) {
+                currentBytes -= previous.weight;
+            }
+            currentBytes += weight;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (currentBytes > maxBytes && eldest.hasNext()) {
+                currentBytes -= eldest.next().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return readOnly;
+    }
+
+    public Map<String, Object> stats() {
+        int size;
+        long bytes;
+        synchronized (entries) {
+            size = entries.size();
+            bytes = currentBytes;
+        }
+        return Map.of(
+                "enabled", enabled,
+                "size", size,
+                "bytes", bytes,
+                "maxBytes", maxBytes,
+                "hits", hits.get(),
+                "misses", misses.get(),
+                "evictions", evictions.get());
+    }
+
+    private record Entry(List<PageRange> pages, long weight) {
+    }
+}
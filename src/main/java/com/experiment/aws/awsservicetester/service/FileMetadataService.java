@@ -1,371 +1,447 @@
-package com.experiment.aws.awsservicetester.service;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.apache.commons.imaging.ImageInfo;
-import org.apache.commons.imaging.ImageReadException;
-import org.apache.commons.imaging.Imaging;
-import org.apache.commons.imaging.common.ImageMetadata;
-import org.apache.commons.imaging.formats.tiff.TiffField;
-import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
-import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
-import org.apache.pdfbox.cos.COSDictionary;
-import org.apache.pdfbox.cos.COSName;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.tika.detect.DefaultDetector;
-import org.apache.tika.detect.Detector;
-import org.apache.tika.metadata.Metadata;
-import org.apache.tika.mime.MediaType;
-import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.*;
-
-@Service
-public class FileMetadataService {
-
-	private static final Logger log = LoggerFactory.getLogger(FileMetadataService.class);
-    private final Detector detector = new DefaultDetector();
-
-    /**
-     * Extract metadata from various file types
-     * @param file The uploaded file
-     * @return Map of page number to metadata for each page
-     */
-    public Map<Integer, Map<String, Object>> extractMetadata(MultipartFile file) throws Exception {
-        Map<Integer, Map<String, Object>> pageMetadata = new LinkedHashMap<>();
-        
-        // Get the file bytes once to avoid multiple stream operations
-        byte[] fileBytes = file.getBytes();
-        
-        // Use Tika for more accurate content type detection
-        String detectedMimeType = detectMimeType(fileBytes);
-        String fileName = file.getOriginalFilename();
-        
-        log.info("Processing file: {}, detected MIME type: {}", fileName, detectedMimeType);
-        
-        if (detectedMimeType.equals("application/pdf")) {
-            extractPdfMetadata(fileBytes, pageMetadata, file.getSize());
-        } else if (detectedMimeType.startsWith("image/tiff")) {
-            extractTiffMetadata(fileBytes, pageMetadata, file.getSize());
-        } else if (detectedMimeType.startsWith("image/")) {
-            extractImageMetadata(fileBytes, pageMetadata, file.getSize(), detectedMimeType);
-        } else {
-            throw new UnsupportedOperationException("Unsupported file type: " + detectedMimeType);
-        }
-        
-        return pageMetadata;
-    }
-
-    /**
-     * Detect MIME type using Apache Tika
-     */
-    private String detectMimeType(byte[] fileBytes) throws IOException {
-        try (InputStream is = new BufferedInputStream(new ByteArrayInputStream(fileBytes))) {
-            Metadata metadata = new Metadata();
-            MediaType mediaType = detector.detect(is, metadata);
-            return mediaType.toString();
-        }
-    }
-
-    /**
-     * Extract PDF metadata using PDFBox
-     */
-    private void extractPdfMetadata(byte[] fileBytes, Map<Integer, Map<String, Object>> pageMetadata, long fileSize) throws IOException {
-        try (PDDocument document = PDDocument.load(fileBytes)) {
-            int pageCount = document.getNumberOfPages();
-            
-            for (int i = 0; i < pageCount; i++) {
-                PDPage page = document.getPage(i);
-                PDRectangle mediaBox = page.getMediaBox();
-                
-                Map<String, Object> meta = new HashMap<>();
-                meta.put("width", (int) mediaBox.getWidth());
-                meta.put("height", (int) mediaBox.getHeight());
-                meta.put("type", "pdf");
-                meta.put("size", fileSize / pageCount); // Approximate size per page
-                meta.put("dpi", 72); // Default PDF resolution
-                
-             // Method 1: Direct rotation property
-                int primaryRotation = page.getRotation();
-                
-                // Method 2: Calculate rotation from page's transformation matrix
-                int calculatedRotation = 0;
-                try {
-                    // Some PDFs encode rotation in the CTM (Current Transformation Matrix)
-                    PDPageContentStream contentStream = new PDPageContentStream(document, page, 
-                            PDPageContentStream.AppendMode.APPEND, true, true);
-                    contentStream.close();
-                    
-                    // Get the page dictionary
-                    COSDictionary pageDict = page.getCOSObject();
-                    
-                    // Check if there are additional rotation hints in the dictionary
-                    if (pageDict.containsKey(COSName.ROTATE)) {
-                        int dictRotation = pageDict.getInt(COSName.ROTATE);
-                        log.debug("Found rotation hint in page dictionary: {}", dictRotation);
-                        calculatedRotation = dictRotation;
-                    }
-                } catch (Exception e) {
-                    log.debug("Could not determine rotation from transformation matrix: {}", e.getMessage());
-                }
-                
-                // Choose the most reliable rotation value
-                int rotation = primaryRotation;
-                if (rotation == 0 && calculatedRotation != 0) {
-                    rotation = calculatedRotation;
-                }
-                
-                // Normalize to 0, 90, 180, 270
-                rotation = ((rotation % 360) + 360) % 360;
-                
-                // Only allow standard rotations
-                if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
-                    // Round to nearest 90 degrees
-                    rotation = Math.round(rotation / 90.0f) * 90;
-                    if (rotation == 360) rotation = 0;
-                }
-                
-                log.debug("Page {} rotation - Direct: {}, Calculated: {}, Final: {}", 
-                          (i+1), primaryRotation, calculatedRotation, rotation);
-                
-                meta.put("rotation", rotation);
-                
-                pageMetadata.put(i + 1, meta);
-            }
-        }
-    }
-
-    /**
-     * Extract TIFF metadata using Apache Commons Imaging
-     */
-    private void extractTiffMetadata(byte[] fileBytes, Map<Integer, Map<String, Object>> pageMetadata, long fileSize) throws Exception {
-        try {
-            // Get basic image info
-            ImageInfo info = Imaging.getImageInfo(fileBytes);
-            
-            // Try to get TIFF-specific metadata
-            ImageMetadata metadata = null;
-            try {
-                metadata = Imaging.getMetadata(fileBytes);
-            } catch (Exception e) {
-                log.warn("Could not extract metadata from TIFF", e);
-            }
-            
-            TiffImageMetadata tiffMetadata = metadata instanceof TiffImageMetadata ? 
-                                           (TiffImageMetadata) metadata : null;
-            
-            // Determine page count using TiffImageMetadata
-            int pageCount = 1; // Default to 1 page
-            
-            if (tiffMetadata != null) {
-                try {
-                    // Try to get the number of directories from TIFF metadata
-                    List<?> directories = tiffMetadata.getDirectories();
-                    if (directories != null && !directories.isEmpty()) {
-                        pageCount = directories.size();
-                        log.debug("Found {} pages in TIFF from metadata directories", pageCount);
-                    }
-                } catch (Exception e) {
-                    log.warn("Could not determine page count from TIFF metadata directories", e);
-                    
-                    // Try an alternative approach using fields
-                    try {
-                        // Check for TIFF_TAG_PAGE_NUMBER which might have total page count
-                        TiffField pageNumberField = tiffMetadata.findField(TiffTagConstants.TIFF_TAG_PAGE_NUMBER);
-                        if (pageNumberField != null && pageNumberField.getCount() >= 2) {
-                            // Second value in this field is usually total pages
-                            int[] values = pageNumberField.getIntArrayValue();
-                            if (values.length >= 2 && values[1] > 0) {
-                                pageCount = values[1];
-                                log.debug("Found {} pages in TIFF from page number field", pageCount);
-                            }
-                        }
-                    } catch (Exception e2) {
-                        log.warn("Could not determine page count from TIFF page number field", e2);
-                    }
-                }
-            }
-            
-            log.info("Processing TIFF with {} page(s)", pageCount);
-            
-            for (int i = 0; i < pageCount; i++) {
-                Map<String, Object> meta = new HashMap<>();
-                meta.put("width", info.getWidth());
-                meta.put("height", info.getHeight());
-                meta.put("type", "tiff");
-                meta.put("size", fileSize / pageCount); // Approximate size per page
-                meta.put("bitsPerPixel", info.getBitsPerPixel());
-                meta.put("dpi", info.getPhysicalWidthDpi() > 0 ? info.getPhysicalWidthDpi() : 96);
-                meta.put("colorType", info.getColorType().name());
-                
-                // Add page number
-                meta.put("pageNumber", i + 1);
-                meta.put("totalPages", pageCount);
-                
-				// Add rotation detection
-				int rotation = 0; // Default to 0 degrees
-				boolean flipHorizontal = false;
-				boolean flipVertical = false;
-				if (tiffMetadata != null) {
-					try {
-						// Try to get orientation from TIFF metadata
-						TiffField orientationField = tiffMetadata.findField(TiffTagConstants.TIFF_TAG_ORIENTATION);
-						if (orientationField != null) {
-							int orientation = orientationField.getIntValue();
-							// Convert TIFF orientation to degrees
-							// 1 = 0°, 3 = 180°, 6 = 90° CW, 8 = 270° CW
-							switch (orientation) {
-							case 1:
-							case 2:
-								rotation = 0;
-								break;
-							case 3:
-							case 4:
-								rotation = 180;
-								break;
-							case 5:
-							case 6:
-								rotation = 90;
-								break;
-							case 7:
-							case 8:
-								rotation = 270;
-								break;
-							default:
-								rotation = 0;
-								break;
-							}
-						}
-					} catch (Exception e) {
-						log.debug("Could not extract orientation information", e);
-					}
-				}
-				meta.put("rotation", rotation);
-                
-                // If we have TIFF metadata, try to extract compression info
-                if (tiffMetadata != null) {
-                    try {
-                        // Get compression from TIFF tags
-                        TiffField compressionField = tiffMetadata.findField(TiffTagConstants.TIFF_TAG_COMPRESSION);
-                        if (compressionField != null) {
-                            int compressionValue = compressionField.getIntValue();
-                            String compressionName = getTiffCompressionName(compressionValue);
-                            meta.put("compression", compressionName);
-                        } else {
-                            meta.put("compression", "unknown");
-                        }
-                    } catch (Exception e) {
-                        log.debug("Could not extract compression information", e);
-                        meta.put("compression", "unknown");
-                    }
-                }
-                
-                pageMetadata.put(i + 1, meta);
-            }
-        } catch (Exception e) {
-            log.error("Error processing TIFF image", e);
-            
-            // Create at least basic metadata even if processing fails
-            Map<String, Object> meta = new HashMap<>();
-            meta.put("type", "tiff");
-            meta.put("size", fileSize);
-            meta.put("error", "Failed to fully process TIFF: " + e.getMessage());
-            meta.put("pageNumber", 1);
-            meta.put("totalPages", 1);
-            
-            pageMetadata.put(1, meta);
-        }
-    }
-    
-    /**
-     * Convert TIFF compression value to human-readable name
-     */
-    private String getTiffCompressionName(int compressionValue) {
-        switch (compressionValue) {
-            case 1: return "Uncompressed";
-            case 2: return "CCITT 1D";
-            case 3: return "CCITT Group 3";
-            case 4: return "CCITT Group 4";
-            case 5: return "LZW";
-            case 6: return "JPEG (old)";
-            case 7: return "JPEG";
-            case 8: return "Deflate/Adobe";
-            case 9: return "JBIG B&W";
-            case 10: return "JBIG Color";
-            case 99: return "JPEG";
-            case 262: return "Kodak 262";
-            case 32773: return "PackBits";
-            case 32946: return "Deflate/PKZIP";
-            case 34712: return "JPEG 2000";
-            default: return "Unknown (" + compressionValue + ")";
-        }
-    }
-
-    /**
-     * Extract metadata from other image formats using Apache Commons Imaging
-     */
-    private void extractImageMetadata(byte[] fileBytes, Map<Integer, Map<String, Object>> pageMetadata, long fileSize, String mimeType) throws Exception {
-        try {
-            ImageInfo info = Imaging.getImageInfo(fileBytes);
-            
-            Map<String, Object> meta = new HashMap<>();
-            meta.put("width", info.getWidth());
-            meta.put("height", info.getHeight());
-            meta.put("type", mimeType.replace("image/", ""));
-            meta.put("size", fileSize);
-            meta.put("bitsPerPixel", info.getBitsPerPixel());
-            meta.put("dpi", info.getPhysicalWidthDpi() > 0 ? info.getPhysicalWidthDpi() : 96);
-            meta.put("colorType", info.getColorType().name());
-            
-            // Add rotation detection
-            int rotation = 0; // Default to 0 degrees
-            try {
-                ImageMetadata metadata = Imaging.getMetadata(fileBytes);
-                // For JPEG images with EXIF data
-                if (metadata instanceof org.apache.commons.imaging.formats.jpeg.JpegImageMetadata) {
-                    org.apache.commons.imaging.formats.jpeg.JpegImageMetadata jpegMetadata = 
-                        (org.apache.commons.imaging.formats.jpeg.JpegImageMetadata) metadata;
-                    
-                    TiffField orientationField = jpegMetadata.findEXIFValue(TiffTagConstants.TIFF_TAG_ORIENTATION);
-                    if (orientationField != null) {
-                        int orientation = orientationField.getIntValue();
-                        // Convert EXIF orientation to degrees (same as TIFF)
-                        switch (orientation) {
-                            case 1: rotation = 0; break;
-                            case 3: rotation = 180; break;
-                            case 6: rotation = 90; break;
-                            case 8: rotation = 270; break;
-                            default: rotation = 0; break;
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                log.debug("No rotation metadata available", e);
-            }
-            meta.put("rotation", rotation);
-            
-            // Check for embedded metadata
-            try {
-                ImageMetadata metadata = Imaging.getMetadata(fileBytes);
-                if (metadata != null) {
-                    meta.put("hasMetadata", true);
-                }
-            } catch (Exception e) {
-                log.debug("No extended metadata available");
-            }
-            
-            pageMetadata.put(1, meta);
-        } catch (ImageReadException e) {
-            log.error("Error reading image", e);
-            throw new IOException("Failed to process image file", e);
-        }
-    }
-}
+package com.experiment.aws.awsservicetester.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.commons.imaging.ImageInfo;
+import org.apache.commons.imaging.ImageParser;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.Imaging;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.tika.detect.DefaultDetector;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.experiment.aws.awsservicetester.models.FileMetadataResponse;
+import com.experiment.aws.awsservicetester.models.PageMetadata;
+import com.experiment.aws.awsservicetester.models.PageRange;
+
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+@Service
+public class FileMetadataService {
+
+	private static final Logger log = LoggerFactory.getLogger(FileMetadataService.class);
+    // Smallest PDF page range worth opening a separate document for
+    private static final int MIN_PAGES_PER_PARTITION = 250;
+
+    private final Detector detector = new DefaultDetector();
+    private final FileMetadataCache cache;
+    private final S3Service s3Service;
+    private final int s3BlockSize;
+    private final int s3MaxCachedBlocks;
+    // Null when parallel extraction is disabled
+    private final ForkJoinPool metadataPool;
+    private final int parallelism;
+    private final int minParallelPages;
+    private long detectorInitMillis = -1;
+
+    public FileMetadataService(FileMetadataCache cache, S3Service s3Service,
+            @Value("${metadata.parallel.enabled:true}") boolean parallelEnabled,
+            @Value("${metadata.parallel.threads:0}") int threads,
+            @Value("${metadata.parallel.min-pages:1000}") int minParallelPages,
+            @Value("${metadata.s3.block-size:65536}") int s3BlockSize,
+            @Value("${metadata.s3.max-cached-blocks:64}") int s3MaxCachedBlocks) {
+        this.cache = cache;
+        this.s3Service = s3Service;
+        this.s3BlockSize = s3BlockSize;
+        this.s3MaxCachedBlocks = s3MaxCachedBlocks;
+        this.parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.minParallelPages = minParallelPages;
+        this.metadataPool = parallelEnabled && parallelism > 1
+                ? new ForkJoinPool(parallelism, pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("metadata-" + thread.getPoolIndex());
+                    return thread;
+                }, null, false)
+                : null;
+        warmUpDetector();
+    }
+
+    // Tika loads its MIME registry and detector classes on first use; pay that at startup, not on the first request
+    private void warmUpDetector() {
+        long start = System.nanoTime();
+        try {
+            detector.detect(new ByteArrayInputStream(new byte[] {'<', '?', 'x', 'm', 'l'}), new Metadata());
+            detectorInitMillis = (System.nanoTime() - start) / 1_000_000;
+            log.info("Tika detector initialized in {} ms", detectorInitMillis);
+        } catch (IOException e) {
+            log.warn("Tika detector warm-up failed", e);
+        }
+    }
+
+    /**
+     * Extract metadata from various file types
+     * @param file The uploaded file
+     * @return Page metadata in page order, consecutive identical pages collapsed into one range
+     */
+    public List<PageRange> extractMetadata(MultipartFile file) throws Exception {
+        // Work from a file instead of file.getBytes(), so heap use per request does not grow with the upload size
+        Path spooled = Files.createTempFile("metadata-", ".upload");
+        try {
+            if (!cache.isEnabled()) {
+                // transferTo(File) moves the container's spooled upload where it can
+                file.transferTo(spooled.toFile());
+                return extractMetadata(spooled, file.getOriginalFilename());
+            }
+            
+            // Hash the content in the same pass that copies it to disk
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            List<PageRange> cached = cache.get(contentHash);
+            if (cached != null) {
+                log.info("Metadata cache hit for file: {} ({})", file.getOriginalFilename(), contentHash);
+                return cached;
+            }
+            return cache.put(contentHash, extractMetadata(spooled, file.getOriginalFilename()));
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    /**
+     * Extract metadata from a file held in memory (the first {@code length} bytes of {@code content}),
+     * e.g. an entry of a zip stream. Results are cached by content hash like uploads.
+     */
+    public List<PageRange> extractMetadata(byte[] content, int length, String fileName) throws Exception {
+        String contentHash = null;
+        if (cache.isEnabled()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content, 0, length);
+            contentHash = HexFormat.of().formatHex(digest.digest());
+            List<PageRange> cached = cache.get(contentHash);
+            if (cached != null) {
+                log.info("Metadata cache hit for file: {} ({})", fileName, contentHash);
+                return cached;
+            }
+        }
+        try (ByteRangeSource source = new ByteArrayByteRangeSource(content, length)) {
+            List<PageRange> pages = extractMetadata(source, () -> loadPdf(source), fileName);
+            return contentHash != null ? cache.put(contentHash, pages) : pages;
+        }
+    }
+
+    /**
+     * Time the Tika detector took to initialize at construction, or -1 if that failed.
+     */
+    public long getDetectorInitMillis() {
+        return detectorInitMillis;
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Extract metadata from a file on disk. Only the parsers' own working sets are held in memory:
+     * Tika and the image header reader read only header bytes, PDFBox reads the file through random access.
+     * @param path The file to inspect
+     * @param fileName Original file name, for logging
+     * @return Page metadata in page order, consecutive identical pages collapsed into one range
+     */
+    public List<PageRange> extractMetadata(Path path, String fileName) throws Exception {
+        File file = path.toFile();
+        try (ByteRangeSource source = new FileByteRangeSource(path)) {
+            return extractMetadata(source, () -> loadPdf(file), fileName);
+        }
+    }
+
+    /**
+     * Extract metadata from an S3 object without downloading it. Only the byte ranges the parsers ask for
+     * are fetched, in blocks of {@code metadata.s3.block-size}: image headers and IFDs, or a PDF's trailer,
+     * cross-reference data and page tree objects. Results are cached by bucket, key and ETag.
+     * @return Response without processedAt, which the caller sets
+     */
+    public FileMetadataResponse extractMetadata(String bucket, String key) throws Exception {
+        HeadObjectResponse head = s3Service.headObject(bucket, key);
+        String cacheKey = "s3://" + bucket + "/" + key + "#" + head.eTag();
+        List<PageRange> pages = cache.get(cacheKey);
+        if (pages == null) {
+            try (S3ByteRangeSource source = new S3ByteRangeSource(s3Service, bucket, key, head.contentLength(),
+                    head.eTag(), s3BlockSize, s3MaxCachedBlocks)) {
+                pages = cache.put(cacheKey, extractMetadata(source, () -> loadPdf(source), key));
+                log.info("Read metadata of s3://{}/{} ({} bytes) with {} ranged GETs, {} bytes transferred",
+                        bucket, key, head.contentLength(), source.getRequests(), source.getBytesFetched());
+            }
+        }
+        return FileMetadataResponse.builder()
+                .filename(key)
+                .contentType(head.contentType())
+                .totalSize(head.contentLength())
+                .pageCount(PageRange.pageCount(pages))
+                .pages(pages)
+                .build();
+    }
+
+    // Opens a PDF view of the input; called once per parallel page range
+    private interface PdfOpener {
+        PdfView open() throws IOException;
+    }
+
+    // An open document and the resolver its page tree must be walked with
+    private record PdfView(PDDocument document, PdfPageTreeWalker.Resolver resolver) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            document.close();
+        }
+    }
+
+    private List<PageRange> extractMetadata(ByteRangeSource source, PdfOpener pdfOpener, String fileName) throws Exception {
+        long fileSize = source.length();
+        
+        // Use Tika for more accurate content type detection
+        String detectedMimeType = detectMimeType(source);
+        
+        log.debug("Processing file: {}, detected MIME type: {}", fileName, detectedMimeType);
+        
+        if (detectedMimeType.equals("application/pdf")) {
+            return extractPdfMetadata(pdfOpener, fileSize);
+        } else if (detectedMimeType.startsWith("image/tiff")) {
+            return extractTiffMetadata(source, fileSize);
+        } else if (detectedMimeType.startsWith("image/")) {
+            return extractImageMetadata(source, fileSize, detectedMimeType);
+        }
+        throw new UnsupportedOperationException("Unsupported file type: " + detectedMimeType);
+    }
+
+    /**
+     * Detect the MIME type from the leading bytes (see {@link MagicBytes}), falling back to Apache Tika for
+     * formats the fast path does not know. Tika marks the stream and reads only the header bytes it needs,
+     * so the rest of the file is never read here.
+     */
+    private String detectMimeType(ByteRangeSource source) throws IOException {
+        byte[] header = new byte[MagicBytes.HEADER_LENGTH];
+        int length = (int) Math.min(header.length, source.length());
+        source.readFully(0, header, 0, length);
+        String mimeType = MagicBytes.detect(header, length);
+        if (mimeType != null) {
+            return mimeType;
+        }
+        try (InputStream is = new BufferedInputStream(new ByteRangeReader(source))) {
+            Metadata metadata = new Metadata();
+            MediaType mediaType = detector.detect(is, metadata);
+            return mediaType.toString();
+        }
+    }
+
+    /**
+     * Extract PDF metadata using PDFBox. Pages are read straight from the page tree (see {@link PdfPageTreeWalker}),
+     * so no page content streams are opened and the document is left untouched.
+     * Documents with at least {@code metadata.parallel.min-pages} pages are split into page ranges that are read
+     * on the metadata pool, each range through its own PDDocument since PDFBox documents are not thread-safe.
+     */
+    private List<PageRange> extractPdfMetadata(PdfOpener pdfOpener, long fileSize) throws Exception {
+        try (PdfView document = pdfOpener.open()) {
+            int pageCount = Math.max(1, PdfPageTreeWalker.pageCount(document.document(), document.resolver()));
+            int partitions = metadataPool == null || pageCount < minParallelPages ? 1
+                    : Math.min(parallelism, pageCount / MIN_PAGES_PER_PARTITION);
+            if (partitions <= 1) {
+                return readPdfPages(document, 0, pageCount, pageCount, fileSize);
+            }
+            
+            int pagesPerPartition = (pageCount + partitions - 1) / partitions;
+            List<Callable<List<PageRange>>> tasks = new ArrayList<>();
+            for (int from = 0; from < pageCount; from += pagesPerPartition) {
+                int first = from;
+                int last = Math.min(pageCount, from + pagesPerPartition);
+                tasks.add(() -> {
+                    if (first == 0) {
+                        // the first range reuses the document that is already open
+                        return readPdfPages(document, first, last, pageCount, fileSize);
+                    }
+                    try (PdfView view = pdfOpener.open()) {
+                        return readPdfPages(view, first, last, pageCount, fileSize);
+                    }
+                });
+            }
+            
+            PageRangeCollector collector = new PageRangeCollector();
+            for (Future<List<PageRange>> partition : metadataPool.invokeAll(tasks)) {
+                try {
+                    collector.addAll(partition.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+            List<PageRange> merged = collector.toList();
+            if (!coversPages(merged, pageCount)) {
+                // page tree /Count values disagree with the actual pages: fall back to one in-order walk
+                log.warn("PDF page tree counts are inconsistent ({} of {} pages read), re-reading sequentially",
+                        PageRange.pageCount(merged), pageCount);
+                return readPdfPages(document, 0, Integer.MAX_VALUE, pageCount, fileSize);
+            }
+            log.debug("Read {} PDF pages in {} partitions", pageCount, tasks.size());
+            return merged;
+        }
+    }
+
+    // True if the ranges cover pages 1..pageCount without gaps or overlaps
+    private static boolean coversPages(List<PageRange> ranges, int pageCount) {
+        int next = 1;
+        for (PageRange range : ranges) {
+            if (range.from() != next) {
+                return false;
+            }
+            next = range.to() + 1;
+        }
+        return next == pageCount + 1;
+    }
+
+    // Random-access read of the file; PDFBox scratch buffers go to temp files instead of the heap
+    private static PdfView loadPdf(File file) throws IOException {
+        return new PdfView(PDDocument.load(file, MemoryUsageSetting.setupTempFileOnly()), PdfPageTreeWalker.LOADED);
+    }
+
+    // Only the trailer and xref are parsed up front, page tree objects are resolved as the walk reaches them.
+    // Files the lazy parser cannot open (e.g. a broken xref that needs the full lenient parse) are loaded in full.
+    private static PdfView loadPdf(ByteRangeSource source) throws IOException {
+        ScratchFile lazyScratchFile = new ScratchFile(MemoryUsageSetting.setupTempFileOnly());
+        ByteRangeReader lazyReader = new ByteRangeReader(source);
+        try {
+            LazyPdfParser parser = new LazyPdfParser(lazyReader, lazyScratchFile);
+            parser.parse();
+            return new PdfView(parser.getPDDocument(), parser::resolve);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Lazy PDF parse failed ({}), reading the whole document", e.getMessage());
+            // parse() already closes a document it failed on, which closes its scratch file; this covers
+            // failures before that point. The full parse gets a fresh scratch file and reader.
+            lazyReader.close();
+            lazyScratchFile.close();
+        }
+        ScratchFile scratchFile = new ScratchFile(MemoryUsageSetting.setupTempFileOnly());
+        try {
+            PDFParser parser = new PDFParser(new ByteRangeReader(source), scratchFile);
+            parser.parse();
+            return new PdfView(parser.getPDDocument(), PdfPageTreeWalker.LOADED);
+        } catch (IOException | RuntimeException e) {
+            scratchFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Metadata for the zero-based page range [first, last) of the document.
+     */
+    private List<PageRange> readPdfPages(PdfView document, int first, int last, int pageCount, long fileSize) {
+        PageRangeCollector pages = new PageRangeCollector();
+        for (PdfPageTreeWalker.Page page : PdfPageTreeWalker.pages(document.document(), document.resolver(), first)) {
+            if (page.number() > last) {
+                break;
+            }
+            PDRectangle mediaBox = page.mediaBox();
+            
+            // Visible area, only when it differs from the MediaBox
+            PDRectangle cropBox = page.cropBox();
+            boolean cropped = cropBox.getWidth() != mediaBox.getWidth() || cropBox.getHeight() != mediaBox.getHeight();
+            
+            pages.add(page.number(), PageMetadata.pdf((int) mediaBox.getWidth(), (int) mediaBox.getHeight(),
+                    fileSize / pageCount, // Approximate size per page
+                    page.rotation(),
+                    cropped ? (int) cropBox.getWidth() : 0,
+                    cropped ? (int) cropBox.getHeight() : 0));
+        }
+        return pages.toList();
+    }
+
+    /**
+     * Extract TIFF metadata from the IFD chain, one entry per page with that page's own dimensions,
+     * resolution, compression and orientation. Only directory bytes are read (see {@link ImageHeaderReader});
+     * pages are decoded on the metadata pool for TIFFs with at least {@code metadata.parallel.min-pages} pages.
+     */
+    private List<PageRange> extractTiffMetadata(ByteRangeSource source, long fileSize) throws Exception {
+        try {
+            ImageHeaderReader.Result header = ImageHeaderReader.read(source, metadataPool, minParallelPages);
+            List<ImageHeaderReader.PageInfo> pages = header.pages();
+            int pageCount = pages.size();
+            
+            log.debug("Processing TIFF with {} page(s), {} header bytes read", pageCount, header.bytesRead());
+            
+            PageRangeCollector collector = new PageRangeCollector();
+            for (int i = 0; i < pageCount; i++) {
+                ImageHeaderReader.PageInfo page = pages.get(i);
+                collector.add(i + 1, PageMetadata.image("tiff", page.width(), page.height(),
+                        fileSize / pageCount, // Approximate size per page
+                        page.dpi(), page.rotation(), page.bitsPerPixel(), page.colorType(), page.compression(), false));
+            }
+            return collector.toList();
+        } catch (Exception e) {
+            log.error("Error processing TIFF image", e);
+            
+            // Create at least basic metadata even if processing fails
+            return List.of(new PageRange(1, 1,
+                    PageMetadata.failed("tiff", fileSize, "Failed to fully process TIFF: " + e.getMessage())));
+        }
+    }
+
+    /**
+     * Extract metadata from other image formats. JPEG and PNG are read from their headers in one pass;
+     * anything else (GIF, BMP, ...) goes through Apache Commons Imaging.
+     */
+    private List<PageRange> extractImageMetadata(ByteRangeSource source, long fileSize, String mimeType) throws Exception {
+        String type = mimeType.replace("image/", "");
+        PageMetadata meta;
+        
+        if (mimeType.equals("image/jpeg") || mimeType.equals("image/png")) {
+            try {
+                ImageHeaderReader.Result header = ImageHeaderReader.read(source);
+                ImageHeaderReader.PageInfo page = header.pages().get(0);
+                meta = PageMetadata.image(type, page.width(), page.height(), fileSize, page.dpi(), page.rotation(),
+                        page.bitsPerPixel(), page.colorType(), null, header.hasMetadata());
+            } catch (IOException e) {
+                log.error("Error reading image", e);
+                throw new IOException("Failed to process image file", e);
+            }
+        } else {
+            try {
+                // parsers read blocks from the source directly; the InputStream overloads buffer the whole file
+                ByteRangeImagingSource byteSource = new ByteRangeImagingSource(source, "image");
+                ImageParser<?> parser = byteSource.parser();
+                ImageInfo info = parser.getImageInfo(byteSource);
+                
+                // Check for embedded metadata
+                boolean hasMetadata = false;
+                try {
+                    hasMetadata = parser.getMetadata(byteSource) != null;
+                } catch (Exception e) {
+                    log.debug("No extended metadata available");
+                }
+                meta = PageMetadata.image(type, info.getWidth(), info.getHeight(), fileSize,
+                        info.getPhysicalWidthDpi() > 0 ? info.getPhysicalWidthDpi() : 96, 0,
+                        info.getBitsPerPixel(), info.getColorType().name(), null, hasMetadata);
+            } catch (ImageReadException e) {
+                log.error("Error reading image", e);
+                throw new IOException("Failed to process image file", e);
+            }
+        }
+        
+        return List.of(new PageRange(1, 1, meta));
+    }
+}
@@ -0,0 +1,489 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-pass TIFF, JPEG and PNG metadata reader that only reads headers:
+ * - TIFF: the IFD chain, one page per IFD with its own size, bit depth, compression, resolution and orientation
+ * - JPEG: marker segments up to the frame header (JFIF density, EXIF orientation/resolution)
+ * - PNG: chunks up to the first IDAT (IHDR, pHYs, eXIf)
+ * Pixel data is skipped, never read, and every read counts against {@link #MAX_BYTES_READ},
+ * so the cost is bounded whatever the file size.
+ * The IFD chain itself is a linked list and is walked in order; decoding the pages (which reads the
+ * out-of-line values of each IFD) can be spread over a fork-join pool for TIFFs with many pages.
+ */
+final class ImageHeaderReader {
+
+    // Upper bound on bytes read from one file; headers of even very long multi-page TIFFs stay well below it
+    static final int MAX_BYTES_READ = 4 * 1024 * 1024;
+    private static final int MAX_IFD_ENTRIES = 4096;
+    private static final int DEFAULT_DPI = 96;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    // TIFF tags used per page
+    private static final int TAG_IMAGE_WIDTH = 256;
+    private static final int TAG_IMAGE_LENGTH = 257;
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+    private static final int TAG_COMPRESSION = 259;
+    private static final int TAG_PHOTOMETRIC = 262;
+    private static final int TAG_ORIENTATION = 274;
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+    private static final int TAG_X_RESOLUTION = 282;
+    private static final int TAG_RESOLUTION_UNIT = 296;
+    private static final Set<Integer> WANTED_TAGS = Set.of(TAG_IMAGE_WIDTH, TAG_IMAGE_LENGTH, TAG_BITS_PER_SAMPLE,
+            TAG_COMPRESSION, TAG_PHOTOMETRIC, TAG_ORIENTATION, TAG_SAMPLES_PER_PIXEL, TAG_X_RESOLUTION,
+            TAG_RESOLUTION_UNIT);
+    // Byte size per TIFF field type (index = type id)
+    private static final int[] TYPE_SIZES = {0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8};
+
+    /**
+     * One page (TIFF IFD) or the single image of a JPEG/PNG. {@code compression} is only set for TIFF.
+     */
+    record PageInfo(int width, int height, int bitsPerPixel, int dpi, String colorType, String compression,
+            int rotation) {
+    }
+
+    /**
+     * @param format "tiff", "jpeg" or "png"
+     * @param hasMetadata whether EXIF or text metadata is embedded
+     * @param bytesRead bytes actually read from the source
+     */
+    record Result(String format, List<PageInfo> pages, boolean hasMetadata, long bytesRead) {
+    }
+
+    private final ByteRangeSource source;
+    private final long length;
+    private final ForkJoinPool pool;
+    private final int minParallelPages;
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    private ImageHeaderReader(ByteRangeSource source, ForkJoinPool pool, int minParallelPages) throws IOException {
+        this.source = source;
+        this.length = source.length();
+        this.pool = pool;
+        this.minParallelPages = minParallelPages;
+    }
+
+    /**
+     * Reads the headers of a TIFF, JPEG or PNG; other formats fail with an IOException.
+     */
+    static Result read(ByteRangeSource source) throws IOException {
+        return read(source, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * As {@link #read(ByteRangeSource)}, decoding TIFF pages on {@code pool} once there are at least
+     * {@code minParallelPages} of them. The source must support concurrent reads.
+     */
+    static Result read(ByteRangeSource source, ForkJoinPool pool, int minParallelPages) throws IOException {
+        return new ImageHeaderReader(source, pool, minParallelPages).read();
+    }
+
+    private Result read() throws IOException {
+        byte[] magic = bytes(0, (int) Math.min(8, length));
+        if (startsWith(magic, PNG_SIGNATURE)) {
+            return readPng();
+        }
+        if (magic.length >= 2 && (magic[0] & 0xFF) == 0xFF && (magic[1] & 0xFF) == 0xD8) {
+            return readJpeg();
+        }
+        if (magic.length >= 4 && isTiffHeader(magic)) {
+            return readTiff();
+        }
+        throw new IOException("Not a TIFF, JPEG or PNG header");
+    }
+
+    // ---- TIFF ----
+
+    private Result readTiff() throws IOException {
+        Tiff tiff = new Tiff(0);
+        List<Ifd> ifds = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        long offset = tiff.firstIfdOffset;
+        while (offset != 0 && seen.add(offset)) {
+            Ifd ifd = tiff.readIfd(offset);
+            ifds.add(ifd);
+            offset = ifd.nextOffset;
+        }
+        if (ifds.isEmpty()) {
+            throw new IOException("TIFF has no image directories");
+        }
+        List<PageInfo> pages;
+        if (pool != null && ifds.size() >= minParallelPages) {
+            pages = decodeInParallel(ifds);
+        } else {
+            pages = new ArrayList<>(ifds.size());
+            for (Ifd ifd : ifds) {
+                pages.add(toPage(ifd));
+            }
+        }
+        return new Result("tiff", pages, true, bytesRead.get());
+    }
+
+    // A parallel stream started from inside the pool runs on that pool, not the common one; order is kept
+    private List<PageInfo> decodeInParallel(List<Ifd> ifds) throws IOException {
+        try {
+            return pool.submit(() -> ifds.parallelStream().map(ifd -> {
+                try {
+                    return toPage(ifd);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading TIFF pages", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("Failed to read TIFF pages", e.getCause());
+        }
+    }
+
+    private PageInfo toPage(Ifd ifd) throws IOException {
+        int samples = (int) ifd.scalar(TAG_SAMPLES_PER_PIXEL, 1);
+        long[] bitsPerSample = ifd.values(TAG_BITS_PER_SAMPLE);
+        int bitsPerPixel = bitsPerSample.length == 0 ? samples : (int) sum(bitsPerSample);
+        if (bitsPerSample.length == 1 && samples > 1) {
+            bitsPerPixel *= samples;
+        }
+        double dpi = toDpi(ifd.rational(TAG_X_RESOLUTION), ifd.scalar(TAG_RESOLUTION_UNIT, 2), 2, 3);
+        return new PageInfo((int) ifd.scalar(TAG_IMAGE_WIDTH, 0), (int) ifd.scalar(TAG_IMAGE_LENGTH, 0),
+                bitsPerPixel, dpiOrDefault(dpi), tiffColorType(ifd.scalar(TAG_PHOTOMETRIC, -1), bitsPerPixel),
+                tiffCompressionName((int) ifd.scalar(TAG_COMPRESSION, 1)),
+                orientationToRotation((int) ifd.scalar(TAG_ORIENTATION, 1)));
+    }
+
+    private static String tiffColorType(long photometric, int bitsPerPixel) {
+        return switch ((int) photometric) {
+            case 0, 1 -> bitsPerPixel == 1 ? "BW" : "GRAYSCALE";
+            case 2, 3 -> "RGB";
+            case 5 -> "CMYK";
+            case 6 -> "YCbCr";
+            default -> "UNKNOWN";
+        };
+    }
+
+    /**
+     * Convert TIFF compression value to human-readable name
+     */
+    static String tiffCompressionName(int compressionValue) {
+        switch (compressionValue) {
+            case 1: return "Uncompressed";
+            case 2: return "CCITT 1D";
+            case 3: return "CCITT Group 3";
+            case 4: return "CCITT Group 4";
+            case 5: return "LZW";
+            case 6: return "JPEG (old)";
+            case 7: return "JPEG";
+            case 8: return "Deflate/Adobe";
+            case 9: return "JBIG B&W";
+            case 10: return "JBIG Color";
+            case 99: return "JPEG";
+            case 262: return "Kodak 262";
+            case 32773: return "PackBits";
+            case 32946: return "Deflate/PKZIP";
+            case 34712: return "JPEG 2000";
+            default: return "Unknown (" + compressionValue + ")";
+        }
+    }
+
+    // ---- JPEG ----
+
+    private Result readJpeg() throws IOException {
+        long pos = 2;
+        double dpi = 0;
+        int rotation = 0;
+        boolean hasMetadata = false;
+        while (pos + 4 <= length) {
+            byte[] header = bytes(pos, 4);
+            if ((header[0] & 0xFF) != 0xFF) {
+                throw new IOException("Invalid JPEG marker at offset " + pos);
+            }
+            int marker = header[1] & 0xFF;
+            if (marker == 0xFF) {
+                pos++; // fill byte
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                pos += 2; // markers without a length
+                continue;
+            }
+            if (marker == 0xDA || marker == 0xD9) {
+                break; // start of scan / end of image: no frame header found
+            }
+            int segmentLength = u16(header, 2, false);
+            long data = pos + 4;
+            if (marker == 0xE0 && segmentLength >= 16) {
+                byte[] jfif = bytes(data, 12);
+                if (startsWith(jfif, "JFIF\0".getBytes(StandardCharsets.US_ASCII)) && dpi == 0) {
+                    dpi = toDpi(u16(jfif, 8, false), jfif[7], 1, 2);
+                }
+            } else if (marker == 0xE1 && segmentLength >= 14) {
+                byte[] exifHeader = bytes(data, 6);
+                if (startsWith(exifHeader, "Exif\0\0".getBytes(StandardCharsets.US_ASCII))) {
+                    hasMetadata = true;
+                    Ifd ifd0 = new Tiff(data + 6).readFirstIfd();
+                    if (ifd0 != null) {
+                        rotation = orientationToRotation((int) ifd0.scalar(TAG_ORIENTATION, 1));
+                        if (dpi == 0) {
+                            dpi = toDpi(ifd0.rational(TAG_X_RESOLUTION), ifd0.scalar(TAG_RESOLUTION_UNIT, 2), 2, 3);
+                        }
+                    }
+                }
+            } else if (marker == 0xED) {
+                hasMetadata = true; // Photoshop / IPTC
+            } else if (isStartOfFrame(marker)) {
+                byte[] frame = bytes(data, 6);
+                int precision = frame[0] & 0xFF;
+                int components = frame[5] & 0xFF;
+                String colorType = switch (components) {
+                    case 1 -> "GRAYSCALE";
+                    case 3 -> "YCbCr";
+                    case 4 -> "CMYK";
+                    default -> "UNKNOWN";
+                };
+                PageInfo page = new PageInfo(u16(frame, 3, false), u16(frame, 1, false), precision * components,
+                        dpiOrDefault(dpi), colorType, null, rotation);
+                return new Result("jpeg", List.of(page), hasMetadata, bytesRead.get());
+            }
+            pos += 2 + segmentLength;
+        }
+        throw new IOException("JPEG frame header not found");
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    // ---- PNG ----
+
+    private Result readPng() throws IOException {
+        long pos = PNG_SIGNATURE.length;
+        byte[] ihdr = null;
+        double dpi = 0;
+        int rotation = 0;
+        boolean hasMetadata = false;
+        while (pos + 8 <= length) {
+            byte[] chunk = bytes(pos, 8);
+            long chunkLength = u32(chunk, 0, false);
+            String type = new String(chunk, 4, 4, StandardCharsets.US_ASCII);
+            long data = pos + 8;
+            if (type.equals("IDAT") || type.equals("IEND")) {
+                break;
+            }
+            switch (type) {
+                case "IHDR" -> ihdr = bytes(data, 13);
+                case "pHYs" -> {
+                    byte[] phys = bytes(data, 9);
+                    // unit 1 = pixels per metre
+                    dpi = phys[8] == 1 ? u32(phys, 0, false) * 0.0254 : 0;
+                }
+                case "eXIf" -> {
+                    hasMetadata = true;
+                    Ifd ifd0 = new Tiff(data).readFirstIfd();
+                    if (ifd0 != null) {
+                        rotation = orientationToRotation((int) ifd0.scalar(TAG_ORIENTATION, 1));
+                    }
+                }
+                case "tEXt", "zTXt", "iTXt" -> hasMetadata = true;
+                default -> {
+                }
+            }
+            pos = data + chunkLength + 4; // data + CRC
+        }
+        if (ihdr == null) {
+            throw new IOException("PNG IHDR chunk not found");
+        }
+        int bitDepth = ihdr[8] & 0xFF;
+        int colorTypeId = ihdr[9] & 0xFF;
+        int samples = switch (colorTypeId) {
+            case 2 -> 3;
+            case 4 -> 2;
+            case 6 -> 4;
+            default -> 1;
+        };
+        String colorType = colorTypeId == 0 || colorTypeId == 4 ? "GRAYSCALE" : "RGB";
+        PageInfo page = new PageInfo((int) u32(ihdr, 0, false), (int) u32(ihdr, 4, false), bitDepth * samples,
+                dpiOrDefault(dpi), colorType, null, rotation);
+        return new Result("png", List.of(page), hasMetadata, bytesRead.get());
+    }
+
+    // ---- TIFF structure (also used for EXIF blocks inside JPEG/PNG) ----
+
+    private static boolean isTiffHeader(byte[] b) {
+        return (b[0] == 'I' && b[1] == 'I' && b[2] == 42 && b[3] == 0) || (b[0] == 'M' && b[1] == 'M' && b[2] == 0 && b[3] == 42);
+    }
+
+    /**
+     * A TIFF structure starting at {@code base}; IFD and value offsets are relative to it.
+     */
+    private final class Tiff {
+        final long base;
+        final boolean littleEndian;
+        final long firstIfdOffset;
+
+        Tiff(long base) throws IOException {
+            this.base = base;
+            byte[] header = bytes(base, 8);
+            if (!isTiffHeader(header)) {
+                throw new IOException("Invalid TIFF header at offset " + base);
+            }
+            this.littleEndian = header[0] == 'I';
+            this.firstIfdOffset = u32(header, 4, littleEndian);
+        }
+
+        Ifd readFirstIfd() throws IOException {
+            return firstIfdOffset == 0 ? null : readIfd(firstIfdOffset);
+        }
+
+        Ifd readIfd(long offset) throws IOException {
+            int count = u16(bytes(base + offset, 2), 0, littleEndian);
+            if (count > MAX_IFD_ENTRIES) {
+                throw new IOException("TIFF directory at offset " + offset + " has " + count + " entries");
+            }
+            byte[] entries = bytes(base + offset + 2, count * 12 + 4);
+            Ifd ifd = new Ifd(this, u32(entries, count * 12, littleEndian));
+            for (int i = 0; i < count; i++) {
+                int tag = u16(entries, i * 12, littleEndian);
+                if (WANTED_TAGS.contains(tag)) {
+                    byte[] valueField = new byte[4];
+                    System.arraycopy(entries, i * 12 + 8, valueField, 0, 4);
+                    ifd.entries.put(tag, new Entry(u16(entries, i * 12 + 2, littleEndian),
+                            u32(entries, i * 12 + 4, littleEndian), valueField));
+                }
+            }
+            return ifd;
+        }
+    }
+
+    private record Entry(int type, long count, byte[] valueField) {
+    }
+
+    private final class Ifd {
+        final Tiff tiff;
+        final long nextOffset;
+        final Map<Integer, Entry> entries = new HashMap<>();
+
+        Ifd(Tiff tiff, long nextOffset) {
+            this.tiff = tiff;
+            this.nextOffset = nextOffset;
+        }
+
+        long scalar(int tag, long defaultValue) throws IOException {
+            long[] values = values(tag);
+            return values.length > 0 ? values[0] : defaultValue;
+        }
+
+        // Integer values of a BYTE/SHORT/LONG field (at most 16 are read)
+        long[] values(int tag) throws IOException {
+            Entry entry = entries.get(tag);
+            if (entry == null || entry.type() <= 0 || entry.type() >= TYPE_SIZES.length || entry.count() <= 0) {
+                return new long[0];
+            }
+            int size = TYPE_SIZES[entry.type()];
+            int count = (int) Math.min(entry.count(), 16);
+            byte[] data = size * entry.count() <= 4 ? entry.valueField()
+                    : bytes(tiff.base + u32(entry.valueField(), 0, tiff.littleEndian), size * count);
+            long[] values = new long[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = switch (size) {
+                    case 1 -> data[i] & 0xFF;
+                    case 2 -> u16(data, i * 2, tiff.littleEndian);
+                    default -> u32(data, i * size, tiff.littleEndian);
+                };
+            }
+            return values;
+        }
+
+        // First value of a RATIONAL field, 0 when absent
+        double rational(int tag) throws IOException {
+            Entry entry = entries.get(tag);
+            if (entry == null || entry.type() != 5) {
+                return 0;
+            }
+            byte[] data = bytes(tiff.base + u32(entry.valueField(), 0, tiff.littleEndian), 8);
+            long denominator = u32(data, 4, tiff.littleEndian);
+            return denominator == 0 ? 0 : (double) u32(data, 0, tiff.littleEndian) / denominator;
+        }
+    }
+
+    // ---- helpers ----
+
+    private byte[] bytes(long position, int count) throws IOException {
+        if (position < 0 || count < 0 || position + count > length) {
+            throw new IOException("Header points outside the file (offset " + position + ", length " + count + ")");
+        }
+        if (bytesRead.addAndGet(count) > MAX_BYTES_READ) {
+            throw new IOException("Image header exceeds " + MAX_BYTES_READ + " bytes");
+        }
+        byte[] buffer = new byte[count];
+        source.readFully(position, buffer, 0, count);
+        return buffer;
+    }
+
+    // Resolution to dots per inch; inchUnit/cmUnit are the format's codes for those units
+    private static double toDpi(double resolution, long unit, int inchUnit, int cmUnit) {
+        if (unit == inchUnit) {
+            return resolution;
+        }
+        return unit == cmUnit ? resolution * 2.54 : 0;
+    }
+
+    private static int dpiOrDefault(double dpi) {
+        return dpi > 0 ? (int) Math.round(dpi) : DEFAULT_DPI;
+    }
+
+    // TIFF/EXIF orientation to clockwise rotation; mirrored variants map to the same rotation
+    static int orientationToRotation(int orientation) {
+        return switch (orientation) {
+            case 3, 4 -> 180;
+            case 5, 6 -> 90;
+            case 7, 8 -> 270;
+            default -> 0;
+        };
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long v : values) {
+            total += v;
+        }
+        return total;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u16(byte[] b, int i, boolean littleEndian) {
+        return littleEndian ? (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 : (b[i] & 0xFF) << 8 | (b[i + 1] & 0xFF);
+    }
+
+    private static long u32(byte[] b, int i, boolean littleEndian) {
+        return littleEndian
+                ? (b[i] & 0xFFL) | (b[i + 1] & 0xFFL) << 8 | (b[i + 2] & 0xFFL) << 16 | (b[i + 3] & 0xFFL) << 24
+                : (b[i] & 0xFFL) << 24 | (b[i + 1] & 0xFFL) << 16 | (b[i + 2] & 0xFFL) << 8 | (b[i + 3] & 0xFFL);
+    }
+}
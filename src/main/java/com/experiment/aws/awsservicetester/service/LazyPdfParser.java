@@ -0,0 +1,51 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+
+/**
+ * PDFParser that reads only the header, xref and trailer up front. PDFBox 2.0's own initial parse
+ * resolves every object reachable from the catalog, which means reading the whole file; here indirect
+ * objects stay unresolved until {@link #resolve} is called for them, so a caller that only walks the
+ * page tree touches just those objects. Parsing is strict: damaged files fail here and should be loaded
+ * in full with the regular lenient parser. Intended for read-only metadata; the document must not be saved.
+ */
+final class LazyPdfParser extends PDFParser {
+
+    LazyPdfParser(RandomAccessRead source, ScratchFile scratchFile) throws IOException {
+        super(source, scratchFile);
+        // lenient mode checks every xref offset by seeking to each object, which is a read per object
+        setLenient(false);
+    }
+
+    @Override
+    protected void initialParse() throws IOException {
+        COSDictionary trailer = retrieveTrailer();
+        // resolves the trailer's direct values (Root, Info) but nothing below them
+        if (!(parseTrailerValuesDynamically(trailer) instanceof COSDictionary root)) {
+            throw new IOException("Missing root object specification in trailer");
+        }
+        if (!(resolve(root.getItem(COSName.PAGES)) instanceof COSDictionary)) {
+            throw new IOException("Page tree root must be a dictionary");
+        }
+        document.setDecrypted();
+        initialParseDone = true;
+    }
+
+    /**
+     * Returns the object behind an indirect reference, parsing it on first use; direct objects are returned as is.
+     */
+    COSBase resolve(COSBase base) throws IOException {
+        if (base instanceof COSObject object) {
+            return object.getObject() != null ? object.getObject() : parseObjectDynamically(object, false);
+        }
+        return base;
+    }
+}
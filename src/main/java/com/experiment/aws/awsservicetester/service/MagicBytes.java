@@ -0,0 +1,75 @@
+package com.experiment.aws.awsservicetester.service;
+
+/**
+ * Classifies the formats the metadata endpoints actually receive from their leading bytes, without
+ * going through Tika's detector chain. Returns null for anything else, which callers hand to Tika.
+ * Type names match what Tika reports for the same files. Nothing is allocated per call.
+ */
+final class MagicBytes {
+
+    /** Bytes needed to recognize every format below. */
+    static final int HEADER_LENGTH = 16;
+
+    private static final byte[] PDF = {'%', 'P', 'D', 'F', '-'};
+    private static final byte[] TIFF_LE = {'I', 'I', 42, 0};
+    private static final byte[] TIFF_BE = {'M', 'M', 0, 42};
+    private static final byte[] BIGTIFF_LE = {'I', 'I', 43, 0};
+    private static final byte[] BIGTIFF_BE = {'M', 'M', 0, 43};
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] GIF87 = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89 = {'G', 'I', 'F', '8', '9', 'a'};
+    private static final byte[] RIFF = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP = {'W', 'E', 'B', 'P'};
+    private static final byte[] BMP = {'B', 'M'};
+
+    private MagicBytes() {
+    }
+
+    /**
+     * @param header the first bytes of the file
+     * @param length how many of them are valid (less than {@link #HEADER_LENGTH} for tiny files)
+     */
+    static String detect(byte[] header, int length) {
+        if (matches(header, length, 0, PDF)) {
+            return "application/pdf";
+        }
+        if (matches(header, length, 0, TIFF_LE) || matches(header, length, 0, TIFF_BE)
+                || matches(header, length, 0, BIGTIFF_LE) || matches(header, length, 0, BIGTIFF_BE)) {
+            return "image/tiff";
+        }
+        if (matches(header, length, 0, JPEG)) {
+            return "image/jpeg";
+        }
+        if (matches(header, length, 0, PNG)) {
+            return "image/png";
+        }
+        if (matches(header, length, 0, GIF87) || matches(header, length, 0, GIF89)) {
+            return "image/gif";
+        }
+        if (matches(header, length, 0, RIFF) && matches(header, length, 8, WEBP)) {
+            return "image/webp";
+        }
+        // "BM" alone is too weak: also require a known DIB header size (little-endian, offset 14)
+        if (matches(header, length, 0, BMP) && length >= 16 && header[15] == 0 && isDibHeaderSize(header[14] & 0xFF)) {
+            return "image/bmp";
+        }
+        return null;
+    }
+
+    private static boolean isDibHeaderSize(int size) {
+        return size == 12 || size == 40 || size == 52 || size == 56 || size == 64 || size == 108 || size == 124;
+    }
+
+    private static boolean matches(byte[] header, int length, int offset, byte[] magic) {
+        if (length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[offset + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,238 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks the Bedrock model for each operation (playground, sentiment, extraction) and tracks per-model latency.
+ * Every route has a primary model, an optional fallback model and its own max_tokens. A request goes to the
+ * fallback while the primary is degraded: over the last {@code windowSeconds} it has at least
+ * {@code minSamples} calls and either its p95 latency or its error rate is above the threshold.
+ * Once those samples age out the primary is tried again.
+ * All models must accept the Anthropic messages request format.
+ */
+@Component
+public class ModelRouter {
+
+	private static final Logger log = LoggerFactory.getLogger(ModelRouter.class);
+
+    public enum Operation { PLAYGROUND, SENTIMENT, EXTRACTION }
+
+    public record Route(String primaryModel, String fallbackModel, int maxTokens) {
+        boolean hasFallback() {
+            return fallbackModel != null && !fallbackModel.isBlank() && !fallbackModel.equals(primaryModel);
+        }
+    }
+
+    // Upper bounds (ms) of the latency histogram buckets; the last bucket is open-ended
+    private static final long[] BUCKET_BOUNDS_MILLIS = {100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+    // Recent samples kept per model for p95 / error rate
+    private static final int MAX_RECENT_SAMPLES = 512;
+
+    private final Map<Operation, Route> routes = new EnumMap<>(Operation.class);
+    private final long p95ThresholdMillis;
+    private final double errorRateThreshold;
+    private final int minSamples;
+    private final long windowMillis;
+    private final Map<String, ModelHealth> health = new ConcurrentHashMap<>();
+
+    public ModelRouter(
+            @Value("${bedrock.routing.playground.model:us.anthropic.claude-3-7-sonnet-20250219-v1:0}") String playgroundModel,
+            @Value("${bedrock.routing.playground.fallback-model:}") String playgroundFallback,
+            @Value("${bedrock.routing.playground.max-tokens:1024}") int playgroundMaxTokens,
+            @Value("${bedrock.routing.sentiment.model:us.anthropic.claude-3-5-haiku-20241022-v1:0}") String sentimentModel,
+            @Value("${bedrock.routing.sentiment.fallback-model:us.anthropic.claude-3-7-sonnet-20250219-v1:0}") String sentimentFallback,
+            @Value("${bedrock.routing.sentiment.max-tokens:16}") int sentimentMaxTokens,
+            @Value("${bedrock.routing.extraction.model:us.anthropic.claude-3-7-sonnet-20250219-v1:0}") String extractionModel,
+            @Value("${bedrock.routing.extraction.fallback-model:}") String extractionFallback,
+            @Value("${bedrock.routing.extraction.max-tokens:1024}") int extractionMaxTokens,
+            @Value("${bedrock.routing.fallback.p95-millis:8000}") long p95ThresholdMillis,
+            @Value("${bedrock.routing.fallback.error-rate:0.2}") double errorRateThreshold,
+            @Value("${bedrock.routing.fallback.min-samples:20}") int minSamples,
+            @Value("${bedrock.routing.fallback.window-seconds:60}") long windowSeconds) {
+        routes.put(Operation.PLAYGROUND, new Route(playgroundModel, playgroundFallback, playgroundMaxTokens));
+        routes.put(Operation.SENTIMENT, new Route(sentimentModel, sentimentFallback, sentimentMaxTokens));
+        routes.put(Operation.EXTRACTION, new Route(extractionModel, extractionFallback, extractionMaxTokens));
+        this.p95ThresholdMillis = p95ThresholdMillis;
+        this.errorRateThreshold = errorRateThreshold;
+        this.minSamples = Math.max(1, minSamples);
+        this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+    }
+
+    public Route route(Operation operation) {
+        return routes.get(operation);
+    }
+
+    /**
+     * Model to call for this operation right now: the primary, unless it is degraded and a healthy fallback exists.
+     */
+    public String select(Operation operation) {
+        Route route = routes.get(operation);
+        if (!route.hasFallback() || !healthOf(route.primaryModel()).isDegraded()) {
+            return route.primaryModel();
+        }
+        if (healthOf(route.fallbackModel()).isDegraded()) {
+            // both unhealthy: stay on the primary rather than flapping
+            return route.primaryModel();
+        }
+        return route.fallbackModel();
+    }
+
+    /**
+     * Records one finished call. Cancelled calls should not be recorded; they say nothing about the model.
+     */
+    public void record(String modelId, long latencyNanos, boolean success) {
+        healthOf(modelId).record(TimeUnit.NANOSECONDS.toMillis(latencyNanos), success);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> routeStats = new LinkedHashMap<>();
+        routes.forEach((operation, route) -> {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("model", route.primaryModel());
+            r.put("fallbackModel", route.hasFallback() ? route.fallbackModel() : null);
+            r.put("maxTokens", route.maxTokens());
+            r.put("active", select(operation));
+            routeStats.put(operation.name().toLowerCase(), r);
+        });
+        Map<String, Object> modelStats = new LinkedHashMap<>();
+        health.forEach((modelId, h) -> modelStats.put(modelId, h.stats()));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("routes", routeStats);
+        stats.put("models", modelStats);
+        return stats;
+    }
+
+    private ModelHealth healthOf(String modelId) {
+        return health.computeIfAbsent(modelId, ModelHealth::new);
+    }
+
+    private record Sample(long at, long latencyMillis, boolean success) {
+    }
+
+    /**
+     * Lifetime latency histogram plus a time-bounded window of recent samples. Guarded by its own monitor,
+     * except for the latest window summary and degraded flag: they are recomputed on every {@link #record}
+     * and when the oldest sample ages out, so {@link #isDegraded} (called on every select) reads them without
+     * taking the lock or sorting.
+     */
+    private class ModelHealth {
+        final String modelId;
+        final long[] buckets = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+        long count;
+        long errors;
+        long sumMillis;
+        final ArrayDeque<Sample> recent = new ArrayDeque<>();
+        volatile Window current = Window.EMPTY;
+        volatile boolean degraded;
+
+        ModelHealth(String modelId) {
+            this.modelId = modelId;
+        }
+
+        synchronized void record(long latencyMillis, boolean success) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MILLIS.length && latencyMillis > BUCKET_BOUNDS_MILLIS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+            count++;
+            sumMillis += latencyMillis;
+            if (!success) {
+                errors++;
+            }
+            recent.addLast(new Sample(System.currentTimeMillis(), latencyMillis, success));
+            if (recent.size() > MAX_RECENT_SAMPLES) {
+                recent.removeFirst();
+            }
+            refresh();
+        }
+
+        boolean isDegraded() {
+            if (System.currentTimeMillis() >= current.validUntil()) {
+                synchronized (this) {
+                    refresh();
+                }
+            }
+            return degraded;
+        }
+
+        // Caller must hold the monitor
+        private Window refresh() {
+            Window w = window();
+            current = w;
+            boolean now = w.samples >= minSamples
+                    && (w.p95Millis > p95ThresholdMillis || w.errorRate > errorRateThreshold);
+            if (now != degraded) {
+                log.warn("Bedrock model {} is {} (p95={} ms, errorRate={}, samples={})", modelId,
+                        now ? "degraded, using fallback where configured" : "healthy again", w.p95Millis,
+                        String.format("%.2f", w.errorRate), w.samples);
+                degraded = now;
+            }
+            return w;
+        }
+
+        // Caller must hold the monitor; drops samples older than the window
+        private Window window() {
+            long cutoff = System.currentTimeMillis() - windowMillis;
+            for (Iterator<Sample> it = recent.iterator(); it.hasNext();) {
+                if (it.next().at() >= cutoff) {
+                    break;
+                }
+                it.remove();
+            }
+            if (recent.isEmpty()) {
+                return Window.EMPTY;
+            }
+            long[] latencies = new long[recent.size()];
+            int failed = 0;
+            int i = 0;
+            for (Sample s : recent) {
+                latencies[i++] = s.latencyMillis();
+                if (!s.success()) {
+                    failed++;
+                }
+            }
+            Arrays.sort(latencies);
+            long p95 = latencies[(int) Math.ceil(latencies.length * 0.95) - 1];
+            return new Window(latencies.length, p95, (double) failed / latencies.length,
+                    recent.peekFirst().at() + windowMillis);
+        }
+
+        synchronized Map<String, Object> stats() {
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int b = 0; b < BUCKET_BOUNDS_MILLIS.length; b++) {
+                histogram.put("le_" + BUCKET_BOUNDS_MILLIS[b] + "ms", buckets[b]);
+            }
+            histogram.put("gt_" + BUCKET_BOUNDS_MILLIS[BUCKET_BOUNDS_MILLIS.length - 1] + "ms",
+                    buckets[BUCKET_BOUNDS_MILLIS.length]);
+            Window w = refresh();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", count);
+            stats.put("errors", errors);
+            stats.put("avgMillis", count == 0 ? 0 : sumMillis / count);
+            stats.put("histogram", histogram);
+            stats.put("recentSamples", w.samples);
+            stats.put("recentP95Millis", w.p95Millis);
+            stats.put("recentErrorRate", w.errorRate);
+            stats.put("degraded", degraded);
+            return stats;
+        }
+    }
+
+    // validUntil: when the oldest sample leaves the window and the summary must be recomputed
+    private record Window(int samples, long p95Millis, double errorRate, long validUntil) {
+        static final Window EMPTY = new Window(0, 0, 0, Long.MAX_VALUE);
+    }
+}
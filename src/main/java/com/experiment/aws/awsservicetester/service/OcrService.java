@@ -1,131 +1,301 @@
-package com.experiment.aws.awsservicetester.service;
-
-import org.springframework.stereotype.Service;
-
-import com.experiment.aws.awsservicetester.models.LineInfo;
-import com.experiment.aws.awsservicetester.models.OcrJobResult;
-import com.experiment.aws.awsservicetester.models.PageResult;
-
-import software.amazon.awssdk.services.textract.TextractClient;
-import software.amazon.awssdk.services.textract.model.*;
-import java.util.*;
-
-@Service
-public class OcrService {
-
-	private final TextractClient textractClient;
-
-	public OcrService(TextractClient textractClient) {
-		this.textractClient = textractClient;
-	}
-
-	public String startOcrProcessing(String bucket, String key) {
-		StartDocumentTextDetectionRequest request = StartDocumentTextDetectionRequest.builder().documentLocation(
-				DocumentLocation.builder().s3Object(S3Object.builder().bucket(bucket).name(key).build()).build())
-				.build();
-
-		StartDocumentTextDetectionResponse startResponse = textractClient.startDocumentTextDetection(request);
-		return startResponse.jobId();
-	}
-
-	// Method to check the job status and get results
-	public OcrJobResult getOcrResults(String jobId, List<Integer> pages) {
-		try {
-			GetDocumentTextDetectionRequest getRequest = GetDocumentTextDetectionRequest.builder().jobId(jobId).build();
-
-			GetDocumentTextDetectionResponse response = textractClient.getDocumentTextDetection(getRequest);
-			JobStatus status = response.jobStatus();
-
-			// If job is still in progress, return status only
-			if (status == JobStatus.IN_PROGRESS) {
-				return new OcrJobResult(status.toString(), null);
-			}
-
-			// If job failed, return with error
-			if (status == JobStatus.FAILED) {
-				return new OcrJobResult(status.toString(), null);
-			}
-
-			// If job succeeded, process and return results with line info
-			if (status == JobStatus.SUCCEEDED) {
-				// Maps to store page results and text by page
-				Map<Integer, PageResult> pageResultMap = new HashMap<>();
-				Map<Integer, StringBuilder> pageTextMap = new HashMap<>();
-
-				// Process all pages
-				String nextToken = null;
-
-				while (true) {
-					GetDocumentTextDetectionRequest pageRequest = GetDocumentTextDetectionRequest.builder().jobId(jobId)
-							.nextToken(nextToken).build();
-
-					response = textractClient.getDocumentTextDetection(pageRequest);
-
-					for (Block block : response.blocks()) {
-						if (block.blockType() == BlockType.PAGE) {
-							int pageNum = block.page();
-							// Skip if page filtering is active and this page is not in the list
-							if (pages != null && !pages.isEmpty() && !pages.contains(pageNum)) {
-								continue;
-							}
-
-							// Create page result if not exists
-							if (!pageResultMap.containsKey(pageNum)) {
-								pageResultMap.put(pageNum, new PageResult(pageNum, ""));
-								pageTextMap.put(pageNum, new StringBuilder());
-							}
-						} else if (block.blockType() == BlockType.LINE) {
-							int pageNum = block.page();
-							// Skip if page filtering is active and this page is not in the list
-							if (pages != null && !pages.isEmpty() && !pages.contains(pageNum)) {
-								continue;
-							}
-
-							// Create page result if not exists
-							if (!pageResultMap.containsKey(pageNum)) {
-								pageResultMap.put(pageNum, new PageResult(pageNum, ""));
-								pageTextMap.put(pageNum, new StringBuilder());
-							}
-
-							// Add line to page result (without geometry)
-							PageResult pageResult = pageResultMap.get(pageNum);
-							LineInfo lineInfo = new LineInfo(block.id(), block.text(), block.confidence());
-
-							// Add line text to page text
-							pageTextMap.get(pageNum).append(block.text()).append("\n");
-							pageResult.lines.add(lineInfo);
-						}
-						// We're not processing WORD blocks
-					}
-
-					// Get next token before we break out of the loop
-					nextToken = response.nextToken();
-					if (nextToken == null) {
-						break;
-					}
-				}
-
-				// Set the text for each page result and create the final list
-				List<PageResult> resultList = new ArrayList<>();
-				for (Map.Entry<Integer, PageResult> entry : pageResultMap.entrySet()) {
-					int pageNum = entry.getKey();
-					PageResult result = entry.getValue();
-					// Set the complete text for the page
-					result.text = pageTextMap.get(pageNum).toString();
-					resultList.add(result);
-				}
-
-				// Sort by page number
-				resultList.sort(Comparator.comparingInt(p -> p.page));
-
-				return new OcrJobResult(status.toString(), resultList);
-			}
-
-			// Default case for unexpected status
-			return new OcrJobResult("UNKNOWN", null);
-
-		} catch (Exception e) {
-			return new OcrJobResult("ERROR: " + e.getMessage(), null);
-		}
-	}
-}
+package com.experiment.aws.awsservicetester.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import com.experiment.aws.awsservicetester.models.LineInfo;
+import com.experiment.aws.awsservicetester.models.OcrJobResult;
+import com.experiment.aws.awsservicetester.models.PageResult;
+
+import software.amazon.awssdk.services.textract.TextractClient;
+import software.amazon.awssdk.services.textract.model.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class OcrService {
+
+	private final TextractClient textractClient;
+	private final WebhookNotifier webhookNotifier;
+	private final MeterRegistry metrics;
+
+	// Shared Textract poller: one polling loop per watched job, however many callers are waiting on it
+	private final ScheduledExecutorService poller = Executors.newScheduledThreadPool(4,
+			Thread.ofPlatform().daemon().name("ocr-poller-", 0).factory());
+	private final Map<String, Watch> watchedJobs = new ConcurrentHashMap<>();
+	private final long pollIntervalMillis;
+	private final long maxWatchMillis;
+	private final int maxConsecutiveErrors;
+
+	public OcrService(TextractClient textractClient, WebhookNotifier webhookNotifier, MeterRegistry metrics,
+			@Value("${ocr.poll.interval-millis:1000}") long pollIntervalMillis,
+			@Value("${ocr.watch.max-minutes:30}") long maxWatchMinutes,
+			@Value("${ocr.watch.max-consecutive-errors:5}") int maxConsecutiveErrors) {
+		this.textractClient = textractClient;
+		this.webhookNotifier = webhookNotifier;
+		this.metrics = metrics;
+		this.pollIntervalMillis = pollIntervalMillis;
+		this.maxWatchMillis = TimeUnit.MINUTES.toMillis(maxWatchMinutes);
+		this.maxConsecutiveErrors = Math.max(1, maxConsecutiveErrors);
+		new ExecutorServiceMetrics(poller, "ocr-poller", Tags.empty()).bindTo(metrics);
+		Gauge.builder("ocr.jobs.watched", watchedJobs, Map::size).description("Textract jobs currently being polled")
+				.register(metrics);
+	}
+
+	public String startOcrProcessing(String bucket, String key) {
+		StartDocumentTextDetectionRequest request = StartDocumentTextDetectionRequest.builder().documentLocation(
+				DocumentLocation.builder().s3Object(S3Object.builder().bucket(bucket).name(key).build()).build())
+				.build();
+
+		StartDocumentTextDetectionResponse startResponse = textractClient.startDocumentTextDetection(request);
+		return startResponse.jobId();
+	}
+
+	/**
+	 * Starts OCR and, if a callbackUrl is given, POSTs the final OCR result to it once the job finishes.
+	 */
+	public String startOcrProcessing(String bucket, String key, String callbackUrl) {
+		if (callbackUrl != null) {
+			webhookNotifier.validate(callbackUrl);
+		}
+		String jobId = startOcrProcessing(bucket, key);
+		if (callbackUrl != null) {
+			watchJob(jobId).thenAccept(result ->
+					webhookNotifier.notify(callbackUrl, Map.of("jobId", jobId, "type", "ocr", "result", result)));
+		}
+		return jobId;
+	}
+
+	/**
+	 * Returns a future that completes with the full (unfiltered) OCR result once the Textract job
+	 * reaches SUCCEEDED, PARTIAL_SUCCESS or FAILED. Polling happens on a shared scheduler instead of the caller's
+	 * thread, and all callers watching the same jobId share a single polling loop. A job that is still not
+	 * finished after the maximum watch time, or whose status checks fail {@code ocr.watch.max-consecutive-errors}
+	 * times in a row (e.g. an unknown job id), completes with its last observed status.
+	 * Each caller gets its own handle: cancelling it releases that caller's interest, and polling
+	 * stops as soon as no handle for the job is left.
+	 */
+	public CompletableFuture<OcrJobResult> watchJob(String jobId) {
+		Watch watch = watchedJobs.compute(jobId, (id, existing) -> {
+			Watch w = existing != null ? existing : startWatch(id);
+			w.watchers.incrementAndGet();
+			return w;
+		});
+		CompletableFuture<OcrJobResult> handle = watch.result.copy();
+		handle.whenComplete((result, error) -> {
+			if (handle.isCancelled()) {
+				release(jobId, watch);
+			}
+		});
+		return handle;
+	}
+
+	private Watch startWatch(String jobId) {
+		Watch watch = new Watch(System.currentTimeMillis() + maxWatchMillis);
+		poller.execute(() -> pollWatchedJob(jobId, watch));
+		return watch;
+	}
+
+	private void release(String jobId, Watch watch) {
+		boolean[] abandoned = {false};
+		watchedJobs.computeIfPresent(jobId, (id, w) -> {
+			if (w != watch || w.watchers.decrementAndGet() > 0) {
+				return w;
+			}
+			abandoned[0] = true;
+			return null;
+		});
+		if (abandoned[0]) {
+			// Nobody is waiting any more; the next scheduled poll sees this and stops
+			watch.result.cancel(false);
+		}
+	}
+
+	private void pollWatchedJob(String jobId, Watch watch) {
+		if (watch.result.isDone()) {
+			return;
+		}
+		OcrJobResult result = getOcrResults(jobId, null);
+		Counter.builder("ocr.polls").description("Textract status polls, by the status seen")
+				.tags("status", statusTag(result.status)).register(metrics).increment();
+		// a single failed check (e.g. throttling) is retried on the next poll
+		watch.consecutiveErrors = isError(result.status) ? watch.consecutiveErrors + 1 : 0;
+		if (isFinished(result.status) || watch.consecutiveErrors >= maxConsecutiveErrors
+				|| System.currentTimeMillis() >= watch.giveUpAt) {
+			watchedJobs.remove(jobId, watch);
+			// from starting to watch the job to the poll that saw it finish: Textract queue and processing
+			// time, rounded up to the polling interval
+			Timer.builder("ocr.job.wait").description("Time until a watched Textract job was seen finished")
+					.tags("status", statusTag(result.status)).register(metrics)
+					.record(System.nanoTime() - watch.startNanos, TimeUnit.NANOSECONDS);
+			watch.result.complete(result);
+			return;
+		}
+		poller.schedule(() -> pollWatchedJob(jobId, watch), pollIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private static class Watch {
+		final CompletableFuture<OcrJobResult> result = new CompletableFuture<>();
+		final AtomicInteger watchers = new AtomicInteger();
+		final long giveUpAt;
+		final long startNanos = System.nanoTime();
+		// only touched by the job's polling loop, one poll at a time
+		int consecutiveErrors;
+
+		Watch(long giveUpAt) {
+			this.giveUpAt = giveUpAt;
+		}
+	}
+
+	// Error statuses carry the exception message; keep the tag to a fixed set of values
+	private static String statusTag(String status) {
+		return isError(status) ? "ERROR" : String.valueOf(status);
+	}
+
+	private static boolean isError(String status) {
+		return status != null && status.startsWith("ERROR");
+	}
+
+	public static boolean isFinished(String status) {
+		return "SUCCEEDED".equals(status) || "PARTIAL_SUCCESS".equals(status) || "FAILED".equals(status);
+	}
+
+	/**
+	 * Applies the same optional page filter as {@link #getOcrResults} to an already fetched result.
+	 */
+	public static OcrJobResult selectPages(OcrJobResult result, List<Integer> pages) {
+		if (pages == null || pages.isEmpty() || result.results == null) {
+			return result;
+		}
+		List<PageResult> selected = new ArrayList<>();
+		for (PageResult page : result.results) {
+			if (pages.contains(page.page)) {
+				selected.add(page);
+			}
+		}
+		return new OcrJobResult(result.status, selected);
+	}
+
+	// Method to check the job status and get results
+	public OcrJobResult getOcrResults(String jobId, List<Integer> pages) {
+		long start = System.nanoTime();
+		OcrJobResult result = fetchOcrResults(jobId, pages);
+		Timer.builder("ocr.results")
+				.description("Status check plus, for finished jobs, fetching and assembling all result pages")
+				.tags("status", statusTag(result.status)).register(metrics)
+				.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		return result;
+	}
+
+	private OcrJobResult fetchOcrResults(String jobId, List<Integer> pages) {
+		try {
+			GetDocumentTextDetectionRequest getRequest = GetDocumentTextDetectionRequest.builder().jobId(jobId).build();
+
+			GetDocumentTextDetectionResponse response = textractClient.getDocumentTextDetection(getRequest);
+			JobStatus status = response.jobStatus();
+
+			// If job is still in progress, return status only
+			if (status == JobStatus.IN_PROGRESS) {
+				return new OcrJobResult(status.toString(), null);
+			}
+
+			// If job failed, return with error
+			if (status == JobStatus.FAILED) {
+				return new OcrJobResult(status.toString(), null);
+			}
+
+			// If job succeeded (possibly with some pages missing), process and return results with line info
+			if (status == JobStatus.SUCCEEDED || status == JobStatus.PARTIAL_SUCCESS) {
+				// Maps to store page results and text by page
+				Map<Integer, PageResult> pageResultMap = new HashMap<>();
+				Map<Integer, StringBuilder> pageTextMap = new HashMap<>();
+
+				// Process all pages
+				String nextToken = null;
+
+				while (true) {
+					GetDocumentTextDetectionRequest pageRequest = GetDocumentTextDetectionRequest.builder().jobId(jobId)
+							.nextToken(nextToken).build();
+
+					response = textractClient.getDocumentTextDetection(pageRequest);
+
+					for (Block block : response.blocks()) {
+						if (block.blockType() == BlockType.PAGE) {
+							int pageNum = block.page();
+							// Skip if page filtering is active and this page is not in the list
+							if (pages != null && !pages.isEmpty() && !pages.contains(pageNum)) {
+								continue;
+							}
+
+							// Create page result if not exists
+							if (!pageResultMap.containsKey(pageNum)) {
+								pageResultMap.put(pageNum, new PageResult(pageNum, ""));
+								pageTextMap.put(pageNum, new StringBuilder());
+							}
+						} else if (block.blockType() == BlockType.LINE) {
+							int pageNum = block.page();
+							// Skip if page filtering is active and this page is not in the list
+							if (pages != null && !pages.isEmpty() && !pages.contains(pageNum)) {
+								continue;
+							}
+
+							// Create page result if not exists
+							if (!pageResultMap.containsKey(pageNum)) {
+								pageResultMap.put(pageNum, new PageResult(pageNum, ""));
+								pageTextMap.put(pageNum, new StringBuilder());
+							}
+
+							// Add line to page result (without geometry)
+							PageResult pageResult = pageResultMap.get(pageNum);
+							LineInfo lineInfo = new LineInfo(block.id(), block.text(), block.confidence());
+
+							// Add line text to page text
+							pageTextMap.get(pageNum).append(block.text()).append("\n");
+							pageResult.lines.add(lineInfo);
+						}
+						// We're not processing WORD blocks
+					}
+
+					// Get next token before we break out of the loop
+					nextToken = response.nextToken();
+					if (nextToken == null) {
+						break;
+					}
+				}
+
+				// Set the text for each page result and create the final list
+				List<PageResult> resultList = new ArrayList<>();
+				for (Map.Entry<Integer, PageResult> entry : pageResultMap.entrySet()) {
+					int pageNum = entry.getKey();
+					PageResult result = entry.getValue();
+					// Set the complete text for the page
+					result.text = pageTextMap.get(pageNum).toString();
+					resultList.add(result);
+				}
+
+				// Sort by page number
+				resultList.sort(Comparator.comparingInt(p -> p.page));
+
+				return new OcrJobResult(status.toString(), resultList);
+			}
+
+			// Default case for unexpected status
+			return new OcrJobResult("UNKNOWN", null);
+
+		} catch (Exception e) {
+			return new OcrJobResult("ERROR: " + e.getMessage(), null);
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.experiment.aws.awsservicetester.models.LineInfo;
+import com.experiment.aws.awsservicetester.models.PageResult;
+
+/**
+ * Prompt-preparation stage that shrinks OCR text before it is sent to Bedrock:
+ * 1. Drops lines whose Textract confidence is below {@code minLineConfidence} (noise, stamps, smudges).
+ * 2. Drops page-number lines ("Page 3 of 10", "3/10") at the top or bottom of a page; a bare number
+ *    ("- 4 -") only when it is that page's number, since it may as well be an amount or an ID.
+ * 3. Keeps only the first copy of boilerplate lines (headers/footers) repeated on many pages.
+ *    Digits are ignored when comparing a page's first and last line, so "Statement 1/12" and
+ *    "Statement 2/12" count as the same header; other lines must repeat exactly, so "Closing balance: 95.00"
+ *    and "Closing balance: 120.00" are both kept.
+ * 4. Optionally cuts the text to a token budget.
+ * Every step is recorded in a {@link Report} so the saving can be shown on the job.
+ */
+@Component
+public class OcrTextCompactor {
+
+    // Groups: "page" prefix, the number, "of N" suffix
+    private static final Pattern PAGE_NUMBER =
+            Pattern.compile("^(page\\s*)?-?\\s*(\\d{1,5})\\s*-?(\\s*(?:of|/)\\s*\\d+)?$");
+    // Only the first/last lines of a page are considered for page-number removal
+    private static final int PAGE_EDGE_LINES = 2;
+
+    private final boolean enabled;
+    private final float minLineConfidence;
+    private final double boilerplateMinPageFraction;
+    private final int maxInputTokens;
+
+    public OcrTextCompactor(@Value("${extraction.compaction.enabled:true}") boolean enabled,
+            @Value("${extraction.compaction.min-line-confidence:50}") float minLineConfidence,
+            @Value("${extraction.compaction.boilerplate-min-page-fraction:0.5}") double boilerplateMinPageFraction,
+            @Value("${extraction.compaction.max-input-tokens:150000}") int maxInputTokens) {
+        this.enabled = enabled;
+        this.minLineConfidence = minLineConfidence;
+        this.boilerplateMinPageFraction = boilerplateMinPageFraction;
+        this.maxInputTokens = maxInputTokens;
+    }
+
+    /**
+     * Returns compacted copies of the pages; the input pages are not modified.
+     */
+    public List<PageResult> compact(List<PageResult> pages, Report report) {
+        for (PageResult page : pages) {
+            report.originalTokens += TokenEstimator.estimate(page.text);
+        }
+        if (!enabled) {
+            report.promptTokens = report.originalTokens;
+            return pages;
+        }
+        Set<String> boilerplate = findBoilerplate(pages);
+        Set<String> seenBoilerplate = new HashSet<>();
+        List<PageResult> compacted = new ArrayList<>(pages.size());
+        for (PageResult page : pages) {
+            List<LineInfo> lines = linesOf(page);
+            PageResult out = new PageResult(page.page, null);
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < lines.size(); i++) {
+                LineInfo line = lines.get(i);
+                if (line.confidence < minLineConfidence) {
+                    report.lowConfidenceLines++;
+                    continue;
+                }
+                String normalized = normalize(line.text);
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                boolean atEdge = i < PAGE_EDGE_LINES || i >= lines.size() - PAGE_EDGE_LINES;
+                if (atEdge && isPageNumber(normalized, page.page)) {
+                    report.pageNumberLines++;
+                    continue;
+                }
+                String key = boilerplateKey(lines, i);
+                if (boilerplate.contains(key) && !seenBoilerplate.add(key)) {
+                    report.boilerplateLines++;
+                    continue;
+                }
+                out.lines.add(line);
+                text.append(line.text).append("\n");
+            }
+            out.text = text.toString();
+            report.promptTokens += TokenEstimator.estimate(out.text);
+            compacted.add(out);
+        }
+        return compacted;
+    }
+
+    /**
+     * Joins the pages' text for a single prompt, cutting whole lines once {@code maxInputTokens}
+     * is reached (0 = no limit). Documents that do not fit should use WINDOWED mode instead.
+     */
+    public String joinWithinBudget(List<PageResult> pages, Report report) {
+        int maxTokens = maxInputTokens;
+        StringBuilder fullText = new StringBuilder();
+        int tokens = 0;
+        boolean full = false;
+        for (PageResult page : pages) {
+            for (String line : (page.text != null ? page.text : "").split("\n")) {
+                int lineTokens = TokenEstimator.estimate(line) + 1;
+                // once the budget is hit, everything after is cut so the text stays contiguous
+                full = full || (maxTokens > 0 && tokens + lineTokens > maxTokens);
+                if (full) {
+                    report.truncatedTokens += lineTokens;
+                    continue;
+                }
+                fullText.append(line).append("\n");
+                tokens += lineTokens;
+            }
+        }
+        report.promptTokens = Math.max(0, report.promptTokens - report.truncatedTokens);
+        return fullText.toString();
+    }
+
+    /**
+     * Boilerplate keys (see {@link #boilerplateKey}) that appear on at least the configured fraction of pages
+     * (and on at least two).
+     */
+    private Set<String> findBoilerplate(List<PageResult> pages) {
+        if (pages.size() < 2) {
+            return Set.of();
+        }
+        Map<String, Integer> pageCounts = new HashMap<>();
+        for (PageResult page : pages) {
+            Set<String> onPage = new HashSet<>();
+            List<LineInfo> lines = linesOf(page);
+            for (int i = 0; i < lines.size(); i++) {
+                String key = boilerplateKey(lines, i);
+                if (!key.isEmpty() && onPage.add(key)) {
+                    pageCounts.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+        int threshold = Math.max(2, (int) Math.ceil(pages.size() * boilerplateMinPageFraction));
+        Set<String> boilerplate = new HashSet<>();
+        pageCounts.forEach((line, count) -> {
+            if (count >= threshold) {
+                boilerplate.add(line);
+            }
+        });
+        return boilerplate;
+    }
+
+    // Pages without line data (e.g. built elsewhere) fall back to their text with full confidence
+    private static List<LineInfo> linesOf(PageResult page) {
+        if (page.lines != null && !page.lines.isEmpty()) {
+            return page.lines;
+        }
+        List<LineInfo> lines = new ArrayList<>();
+        if (page.text != null) {
+            for (String text : page.text.split("\n")) {
+                lines.add(new LineInfo(null, text, 100f));
+            }
+        }
+        return lines;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().toLowerCase().replaceAll("\\s+", " ");
+    }
+
+    // Digits are ignored on a page's first and last line only (running headers/footers); those keys get a
+    // control-character prefix so they never equal an exact key
+    private static String boilerplateKey(List<LineInfo> lines, int i) {
+        String normalized = normalize(lines.get(i).text);
+        if (normalized.isEmpty() || (i > 0 && i < lines.size() - 1)) {
+            return normalized;
+        }
+        return "\u0001" + normalized.replaceAll("\\d+", "#");
+    }
+
+    private static boolean isPageNumber(String normalized, int pageNumber) {
+        Matcher matcher = PAGE_NUMBER.matcher(normalized);
+        if (!matcher.matches()) {
+            return false;
+        }
+        return matcher.group(1) != null || matcher.group(3) != null || Integer.parseInt(matcher.group(2)) == pageNumber;
+    }
+
+    /**
+     * Token estimates for one job's prompt preparation.
+     */
+    public static class Report {
+        public int originalTokens;
+        public int promptTokens;
+        public int truncatedTokens;
+        public int lowConfidenceLines;
+        public int pageNumberLines;
+        public int boilerplateLines;
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("originalTokens", originalTokens);
+            map.put("promptTokens", promptTokens);
+            map.put("tokensSaved", Math.max(0, originalTokens - promptTokens));
+            map.put("truncatedTokens", truncatedTokens);
+            map.put("lowConfidenceLinesDropped", lowConfidenceLines);
+            map.put("pageNumberLinesDropped", pageNumberLines);
+            map.put("boilerplateLinesDropped", boilerplateLines);
+            return map;
+        }
+    }
+}
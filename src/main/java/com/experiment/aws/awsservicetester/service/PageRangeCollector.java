@@ -0,0 +1,56 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.experiment.aws.awsservicetester.models.PageMetadata;
+import com.experiment.aws.awsservicetester.models.PageRange;
+
+/**
+ * Run-length collects page metadata in page order: a page equal to the previous one (and right after it)
+ * extends the current range instead of adding an entry, so a 5000-page document of identical pages is a
+ * single {@link PageRange}. Not thread-safe; parallel readers each fill their own and are merged in order.
+ */
+final class PageRangeCollector {
+
+    private final List<PageRange> ranges = new ArrayList<>();
+    private int from;
+    private int to;
+    private PageMetadata current;
+
+    void add(int page, PageMetadata metadata) {
+        if (current != null && page == to + 1 && current.equals(metadata)) {
+            to = page;
+            return;
+        }
+        flush();
+        from = page;
+        to = page;
+        current = metadata;
+    }
+
+    void addAll(List<PageRange> more) {
+        for (PageRange range : more) {
+            if (current != null && range.from() == to + 1 && current.equals(range.metadata())) {
+                to = range.to();
+            } else {
+                flush();
+                from = range.from();
+                to = range.to();
+                current = range.metadata();
+            }
+        }
+    }
+
+    List<PageRange> toList() {
+        flush();
+        return List.copyOf(ranges);
+    }
+
+    private void flush() {
+        if (current != null) {
+            ranges.add(new PageRange(from, to, current));
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.experiment.aws.awsservicetester.models.LineInfo;
+
+/**
+ * {@link FieldExtractor} backed by a compiled value pattern (or a word dictionary compiled into one).
+ * A field is supported when one of its whole words matches {@code fieldNameTokens}: the field name is
+ * split on anything but letters and digits, so {@code date} takes {@code issue_date} but not {@code candidate_name}.
+ * The match whose line (or the line above it) mentions the most words of the field name wins, e.g.
+ * "Date of Birth" for {@code date_of_birth}; the extractor's own name ("date") is not counted unless it is
+ * the only word. Ties are left unresolved so the field goes to the LLM. A single distinct match is taken
+ * as is only for distinctive formats (emails, PANs); with {@code requireLabel} it needs a label too, since a
+ * document's only date is not necessarily the one asked for.
+ * The confidence is the Textract confidence of the line the value came from.
+ */
+public class PatternFieldExtractor implements FieldExtractor {
+
+    // Field-name words that say nothing about which value is meant
+    private static final Set<String> STOP_WORDS = Set.of("of", "the", "a", "an", "no", "number", "num", "id");
+
+    private final String name;
+    private final Pattern fieldNamePattern;
+    private final Pattern valuePattern;
+    private final boolean requireLabel;
+
+    /**
+     * @param fieldNameTokens alternation of field-name words, e.g. {@code date|dob}; an alternative may span
+     *        words ({@code contact_no}) or exclude a following word with a lookahead ({@code total(?!_pages)})
+     */
+    public PatternFieldExtractor(String name, String fieldNameTokens, String valueRegex, boolean requireLabel) {
+        this.name = name;
+        this.fieldNamePattern = Pattern.compile("(?:^|_)(?:" + fieldNameTokens + ")(?:_|$)");
+        this.valuePattern = Pattern.compile(valueRegex);
+        this.requireLabel = requireLabel;
+    }
+
+    public PatternFieldExtractor(String name, String fieldNameTokens, String valueRegex) {
+        this(name, fieldNameTokens, valueRegex, false);
+    }
+
+    /**
+     * Dictionary extractor: matches any of {@code words} as a whole word, case-insensitively.
+     */
+    public static PatternFieldExtractor dictionary(String name, String fieldNameTokens, String... words) {
+        StringJoiner alternation = new StringJoiner("|", "(?i)\\b(?:", ")\\b");
+        for (String word : words) {
+            alternation.add(Pattern.quote(word));
+        }
+        return new PatternFieldExtractor(name, fieldNameTokens, alternation.toString());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean supports(String field) {
+        return fieldNamePattern.matcher(normalize(field)).find();
+    }
+
+    @Override
+    public Optional<Candidate> extract(String field, List<LineInfo> lines) {
+        List<Pattern> labels = labelPatterns(field, name);
+        // value -> best (label score, confidence) seen for it
+        Map<String, double[]> found = new LinkedHashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            LineInfo line = lines.get(i);
+            if (line.text == null) {
+                continue;
+            }
+            Matcher m = valuePattern.matcher(line.text);
+            while (m.find()) {
+                String value = m.group().trim();
+                String context = (line.text.substring(0, m.start()) + " " + line.text.substring(m.end())).toLowerCase();
+                int score = labelScore(context, labels);
+                if (score == 0 && i > 0 && lines.get(i - 1).text != null) {
+                    // label printed on its own line above the value
+                    score = labelScore(lines.get(i - 1).text.toLowerCase(), labels);
+                }
+                double confidence = line.confidence / 100.0;
+                found.merge(value, new double[] {score, confidence},
+                        (a, b) -> new double[] {Math.max(a[0], b[0]), Math.max(a[1], b[1])});
+            }
+        }
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        if (found.size() == 1) {
+            Map.Entry<String, double[]> only = found.entrySet().iterator().next();
+            if (requireLabel && only.getValue()[0] == 0) {
+                return Optional.empty();
+            }
+            return Optional.of(new Candidate(only.getKey(), only.getValue()[1]));
+        }
+        String best = null;
+        double bestScore = 0;
+        boolean tie = false;
+        for (Map.Entry<String, double[]> e : found.entrySet()) {
+            double score = e.getValue()[0];
+            if (score > bestScore) {
+                best = e.getKey();
+                bestScore = score;
+                tie = false;
+            } else if (score == bestScore && score > 0) {
+                tie = true;
+            }
+        }
+        if (best == null || tie) {
+            return Optional.empty();
+        }
+        return Optional.of(new Candidate(best, found.get(best)[1]));
+    }
+
+    private static String normalize(String field) {
+        return field.toLowerCase().replaceAll("[^a-z0-9]+", "_");
+    }
+
+    // The extractor's own name (e.g. "date" in expiry_date) matches every candidate's label, so it only counts alone
+    private static List<Pattern> labelPatterns(String field, String typeWord) {
+        List<String> words = new ArrayList<>();
+        for (String word : field.toLowerCase().split("[^a-z0-9]+")) {
+            if (!word.isEmpty() && !STOP_WORDS.contains(word)) {
+                words.add(word);
+            }
+        }
+        if (words.size() > 1) {
+            words.remove(typeWord);
+        }
+        List<Pattern> labels = new ArrayList<>();
+        for (String word : words) {
+            labels.add(Pattern.compile("\\b" + Pattern.quote(word) + "\\b"));
+        }
+        return labels;
+    }
+
+    private static int labelScore(String text, List<Pattern> labels) {
+        int score = 0;
+        for (Pattern label : labels) {
+            if (label.matcher(text).find()) {
+                score++;
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,208 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+/**
+ * Read-only, lazy walk over a PDF page tree that yields each page's geometry in document order.
+ * MediaBox, CropBox and Rotate are inherited from parent /Pages nodes as the PDF spec requires.
+ * Only the page tree dictionaries are touched: no PDPage objects, content streams or resources are
+ * created, and the document is never modified. Nodes are resolved one at a time as the iterator
+ * advances, and cycles in /Kids are skipped. A walk can start at any page: subtrees before it are
+ * skipped using their /Count without resolving their pages. Indirect objects go through a {@link Resolver},
+ * so the walk also works on a document opened by {@link LazyPdfParser}; resolver failures surface as
+ * {@link UncheckedIOException}.
+ */
+final class PdfPageTreeWalker implements Iterator<PdfPageTreeWalker.Page> {
+
+    /**
+     * Geometry of one page; {@code rotation} is normalized to 0, 90, 180 or 270.
+     */
+    record Page(int number, PDRectangle mediaBox, PDRectangle cropBox, int rotation) {
+    }
+
+    /**
+     * Dereferences indirect objects.
+     */
+    @FunctionalInterface
+    interface Resolver {
+        COSBase resolve(COSBase base) throws IOException;
+    }
+
+    /**
+     * For documents loaded the usual way, where every object was resolved while parsing.
+     */
+    static final Resolver LOADED = base -> base instanceof COSObject object ? object.getObject() : base;
+
+    // Inheritable attributes in effect for a subtree (null = not set above)
+    private record Inherited(COSArray mediaBox, COSArray cropBox, COSNumber rotate) {
+    }
+
+    private static final class Frame {
+        final COSArray kids;
+        final Inherited inherited;
+        int next;
+
+        Frame(COSArray kids, Inherited inherited) {
+            this.kids = kids;
+            this.inherited = inherited;
+        }
+    }
+
+    private final Resolver resolver;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final int firstPage;
+    private Page pending;
+    private int pageNumber;
+
+    /**
+     * @param firstPage zero-based index of the first page to return
+     */
+    PdfPageTreeWalker(PDDocument document, Resolver resolver, int firstPage) {
+        this.resolver = resolver;
+        this.firstPage = firstPage;
+        if (get(document.getDocumentCatalog().getCOSObject(), COSName.PAGES) instanceof COSDictionary rootNode) {
+            visited.add(rootNode);
+            Inherited inherited = inherit(new Inherited(null, null, null), rootNode);
+            if (get(rootNode, COSName.KIDS) instanceof COSArray kids) {
+                stack.push(new Frame(kids, inherited));
+            } else {
+                // single-page documents sometimes use the page itself as the root
+                pending = firstPage == 0 ? toPage(rootNode, inherited) : null;
+            }
+        }
+    }
+
+    static Iterable<Page> pages(PDDocument document) {
+        return pages(document, LOADED, 0);
+    }
+
+    static Iterable<Page> pages(PDDocument document, Resolver resolver, int firstPage) {
+        return () -> new PdfPageTreeWalker(document, resolver, firstPage);
+    }
+
+    /**
+     * Page count from the root node's /Count, or 0 when it is missing.
+     */
+    static int pageCount(PDDocument document, Resolver resolver) throws IOException {
+        COSBase root = resolver.resolve(document.getDocumentCatalog().getCOSObject().getItem(COSName.PAGES));
+        if (root instanceof COSDictionary rootNode) {
+            return resolver.resolve(rootNode.getItem(COSName.COUNT)) instanceof COSNumber count ? count.intValue() : 0;
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending == null) {
+            pending = advance();
+        }
+        return pending != null;
+    }
+
+    @Override
+    public Page next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Page page = pending;
+        pending = null;
+        return page;
+    }
+
+    private Page advance() {
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.next >= frame.kids.size()) {
+                stack.pop();
+                continue;
+            }
+            if (!(resolve(frame.kids.get(frame.next++)) instanceof COSDictionary node) || !visited.add(node)) {
+                continue;
+            }
+            if (get(node, COSName.KIDS) instanceof COSArray kids) {
+                int count = get(node, COSName.COUNT) instanceof COSNumber n ? n.intValue() : -1;
+                if (count >= 0 && pageNumber + count <= firstPage) {
+                    pageNumber += count; // whole subtree is before the first page
+                    continue;
+                }
+                stack.push(new Frame(kids, inherit(frame.inherited, node)));
+            } else if (!COSName.PAGES.equals(get(node, COSName.TYPE))) {
+                // an empty intermediate /Pages node has no pages of its own
+                if (pageNumber < firstPage) {
+                    pageNumber++;
+                    continue;
+                }
+                return toPage(node, inherit(frame.inherited, node));
+            }
+        }
+        return null;
+    }
+
+    private Page toPage(COSDictionary node, Inherited inherited) {
+        PDRectangle mediaBox = inherited.mediaBox() != null ? new PDRectangle(inherited.mediaBox()) : PDRectangle.LETTER;
+        PDRectangle cropBox = inherited.cropBox() != null ? clip(new PDRectangle(inherited.cropBox()), mediaBox) : mediaBox;
+        int rotation = inherited.rotate() != null ? normalizeRotation(inherited.rotate().intValue()) : 0;
+        return new Page(++pageNumber, mediaBox, cropBox, rotation);
+    }
+
+    private Inherited inherit(Inherited parent, COSDictionary node) {
+        return new Inherited(arrayOr(node, COSName.MEDIA_BOX, parent.mediaBox()),
+                arrayOr(node, COSName.CROP_BOX, parent.cropBox()),
+                get(node, COSName.ROTATE) instanceof COSNumber n ? n : parent.rotate());
+    }
+
+    private COSArray arrayOr(COSDictionary node, COSName key, COSArray fallback) {
+        if (!(get(node, key) instanceof COSArray array) || array.size() < 4) {
+            return fallback;
+        }
+        for (int i = 0; i < array.size(); i++) {
+            resolve(array.get(i)); // PDRectangle expects the numbers to be resolved
+        }
+        return array;
+    }
+
+    private COSBase get(COSDictionary node, COSName key) {
+        return resolve(node.getItem(key));
+    }
+
+    private COSBase resolve(COSBase base) {
+        try {
+            return resolver.resolve(base);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The CropBox is clipped to the MediaBox, as viewers do
+    private static PDRectangle clip(PDRectangle box, PDRectangle bounds) {
+        float llx = Math.max(box.getLowerLeftX(), bounds.getLowerLeftX());
+        float lly = Math.max(box.getLowerLeftY(), bounds.getLowerLeftY());
+        float urx = Math.min(box.getUpperRightX(), bounds.getUpperRightX());
+        float ury = Math.min(box.getUpperRightY(), bounds.getUpperRightY());
+        return urx > llx && ury > lly ? new PDRectangle(llx, lly, urx - llx, ury - lly) : bounds;
+    }
+
+    // Normalize to 0, 90, 180, 270; non-multiples of 90 are rounded to the nearest one
+    static int normalizeRotation(int rotation) {
+        rotation = ((rotation % 360) + 360) % 360;
+        return (Math.round(rotation / 90.0f) * 90) % 360;
+    }
+}
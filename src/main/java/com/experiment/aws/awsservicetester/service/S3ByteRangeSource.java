@@ -0,0 +1,109 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import software.amazon.awssdk.core.exception.SdkException;
+
+/**
+ * {@link ByteRangeSource} over an S3 object that fetches fixed-size blocks with ranged GETs on demand
+ * and keeps the most recently used ones, so the many small reads of a header or PDF parser turn into
+ * a few block requests. All GETs are conditional on the ETag seen when the source was opened.
+ * Safe for concurrent readers; two threads missing the same block may both fetch it.
+ */
+final class S3ByteRangeSource implements ByteRangeSource {
+
+    private final S3Service s3Service;
+    private final String bucket;
+    private final String key;
+    private final long length;
+    private final String eTag;
+    private final int blockSize;
+    private final int maxCachedBlocks;
+
+    // Access-ordered for LRU eviction; guarded by its own monitor
+    private final LinkedHashMap<Long, byte[]> blocks;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesFetched = new AtomicLong();
+
+    S3ByteRangeSource(S3Service s3Service, String bucket, String key, long length, String eTag, int blockSize,
+            int maxCachedBlocks) {
+        this.s3Service = s3Service;
+        this.bucket = bucket;
+        this.key = key;
+        this.length = length;
+        this.eTag = eTag;
+        this.blockSize = blockSize;
+        this.maxCachedBlocks = maxCachedBlocks;
+        this.blocks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > S3ByteRangeSource.this.maxCachedBlocks;
+            }
+        };
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer, int offset, int count) throws IOException {
+        if (position < 0 || position + count > length) {
+            throw new IOException("Read outside s3://" + bucket + "/" + key + " (offset " + position + ", length " + count + ")");
+        }
+        int done = 0;
+        while (done < count) {
+            long index = (position + done) / blockSize;
+            byte[] block = block(index);
+            int inBlock = (int) (position + done - index * blockSize);
+            int chunk = Math.min(count - done, block.length - inBlock);
+            System.arraycopy(block, inBlock, buffer, offset + done, chunk);
+            done += chunk;
+        }
+    }
+
+    private byte[] block(long index) throws IOException {
+        synchronized (blocks) {
+            byte[] block = blocks.get(index);
+            if (block != null) {
+                return block;
+            }
+        }
+        long start = index * blockSize;
+        long end = Math.min(length, start + blockSize) - 1;
+        byte[] block;
+        try {
+            block = s3Service.fetchRange(bucket, key, start, end, eTag);
+        } catch (SdkException e) {
+            throw new IOException("Ranged read of s3://" + bucket + "/" + key + " failed: " + e.getMessage(), e);
+        }
+        if (block.length != end - start + 1) {
+            throw new IOException("Short ranged read of s3://" + bucket + "/" + key + " at offset " + start);
+        }
+        requests.incrementAndGet();
+        bytesFetched.addAndGet(block.length);
+        synchronized (blocks) {
+            blocks.put(index, block);
+        }
+        return block;
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getBytesFetched() {
+        return bytesFetched.get();
+    }
+
+    @Override
+    public void close() {
+        synchronized (blocks) {
+            blocks.clear();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Micro-batcher for sentiment requests. Texts submitted concurrently are held for a short window
+ * (or until a batch is full) and then classified together with one
+ * {@link BedrockService#analyzeSentimentBatch(List)} call; each caller gets its own future back.
+ * Identical texts inside a batch are only sent once.
+ */
+@Component
+public class SentimentBatcher {
+
+	private static final Logger log = LoggerFactory.getLogger(SentimentBatcher.class);
+
+    private final BedrockService bedrockService;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    // Guarded by "this"
+    private List<Pending> pending = new ArrayList<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().daemon().name("sentiment-flush-", 0).factory());
+    // Bounded: caps how many batched Bedrock calls are in flight at once
+    private final ExecutorService dispatcher;
+
+    public SentimentBatcher(BedrockService bedrockService,
+            @Value("${sentiment.batch.window-millis:10}") long windowMillis,
+            @Value("${sentiment.batch.max-size:20}") int maxBatchSize,
+            @Value("${sentiment.batch.max-concurrency:4}") int maxConcurrency) {
+        this.bedrockService = bedrockService;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.dispatcher = Executors.newFixedThreadPool(Math.max(1, maxConcurrency),
+                Thread.ofPlatform().daemon().name("sentiment-batch-", 0).factory());
+    }
+
+    /**
+     * Queues one text; the future completes with its sentiment once the batch it joined has been answered.
+     */
+    public CompletableFuture<String> submit(String text) {
+        return submitAll(List.of(text)).get(0);
+    }
+
+    /**
+     * Queues several texts at once (e.g. from the batch endpoint). They share batches with any
+     * concurrent single-text callers. Futures are returned in input order.
+     */
+    public List<CompletableFuture<String>> submitAll(List<String> texts) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(texts.size());
+        List<List<Pending>> ready = new ArrayList<>();
+        synchronized (this) {
+            for (String text : texts) {
+                CompletableFuture<String> future = new CompletableFuture<>();
+                futures.add(future);
+                pending.add(new Pending(text, future));
+                if (pending.size() == 1 && windowMillis > 0) {
+                    // first item of a new batch opens the window
+                    flusher.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+                }
+                if (pending.size() >= maxBatchSize || windowMillis <= 0) {
+                    ready.add(drain());
+                }
+            }
+        }
+        ready.forEach(this::dispatch);
+        return futures;
+    }
+
+    private void flush() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = drain();
+        }
+        dispatch(batch);
+    }
+
+    // Caller must hold the monitor
+    private List<Pending> drain() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        dispatcher.execute(() -> {
+            Map<String, List<CompletableFuture<String>>> byText = new LinkedHashMap<>();
+            for (Pending p : batch) {
+                byText.computeIfAbsent(p.text(), t -> new ArrayList<>()).add(p.future());
+            }
+            List<String> texts = new ArrayList<>(byText.keySet());
+            try {
+                List<String> sentiments = bedrockService.analyzeSentimentBatch(texts);
+                for (int i = 0; i < texts.size(); i++) {
+                    String sentiment = sentiments.get(i);
+                    byText.get(texts.get(i)).forEach(f -> f.complete(sentiment));
+                }
+            } catch (Exception e) {
+                log.warn("Sentiment batch of {} texts failed: {}", texts.size(), e.getMessage());
+                batch.forEach(p -> p.future().completeExceptionally(e));
+            }
+        });
+    }
+
+    private record Pending(String text, CompletableFuture<String> future) {
+    }
+}
@@ -0,0 +1,266 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import com.experiment.aws.awsservicetester.models.FileMetadataResponse;
+import com.experiment.aws.awsservicetester.models.PageRange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.textract.TextractClient;
+
+/**
+ * Warms the application up before it reports ready. Spring Boot publishes the ACCEPTING_TRAFFIC readiness
+ * state only after every {@link ApplicationRunner} has returned, so load balancers and readiness probes keep
+ * traffic away until this is done:
+ * <ul>
+ *   <li>opens {@code warmup.aws.connections} pooled connections to each of S3, Textract and Bedrock, with
+ *       requests that need no real resources (an error answer from the service still leaves the connection
+ *       in the pool; Bedrock rejects the empty request body before any tokens are billed)</li>
+ *   <li>runs the bundled sample files in {@code classpath:warmup/} through {@link FileMetadataService}
+ *       and a sample model response through the Bedrock and extraction JSON parsers, so the JIT compiles
+ *       these paths before the first request</li>
+ * </ul>
+ * The Tika detector is initialized by {@link FileMetadataService} itself. A failing step is logged and
+ * skipped; warm-up never keeps the application from starting. Durations are logged and kept for
+ * {@code GET /api/warmup}.
+ */
+@Service
+public class StartupWarmup implements ApplicationRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    static final List<String> SAMPLE_FILES = List.of("sample.pdf", "sample.tif", "sample.png", "sample.jpg");
+    static final String SAMPLE_RESPONSE = "bedrock-response.json";
+    // Matches Textract's job id pattern but names no job, so Textract answers InvalidJobIdException
+    private static final String UNKNOWN_JOB_ID = "0".repeat(64);
+
+    private final S3Client s3Client;
+    private final TextractClient textractClient;
+    private final BedrockRuntimeAsyncClient bedrockClient;
+    private final ModelRouter modelRouter;
+    private final FileMetadataService fileMetadataService;
+    private final BedrockService bedrockService;
+    private final ExtractionService extractionService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final boolean awsEnabled;
+    private final int connections;
+    private final int iterations;
+    private final long timeoutMillis;
+
+    private final Map<String, Object> report = new LinkedHashMap<>();
+
+    public StartupWarmup(S3Client s3Client, TextractClient textractClient, BedrockRuntimeAsyncClient bedrockClient,
+            ModelRouter modelRouter, FileMetadataService fileMetadataService, BedrockService bedrockService,
+            ExtractionService extractionService, ObjectMapper objectMapper,
+            @Value("${warmup.enabled:true}") boolean enabled,
+            @Value("${warmup.aws.enabled:true}") boolean awsEnabled,
+            @Value("${warmup.aws.connections:4}") int connections,
+            @Value("${warmup.iterations:200}") int iterations,
+            @Value("${warmup.timeout-seconds:30}") int timeoutSeconds) {
+        this.s3Client = s3Client;
+        this.textractClient = textractClient;
+        this.bedrockClient = bedrockClient;
+        this.modelRouter = modelRouter;
+        this.fileMetadataService = fileMetadataService;
+        this.bedrockService = bedrockService;
+        this.extractionService = extractionService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.awsEnabled = awsEnabled;
+        this.connections = Math.max(1, connections);
+        this.iterations = Math.max(1, iterations);
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            record("enabled", false);
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        record("enabled", true);
+        record("tikaInitMs", fileMetadataService.getDetectorInitMillis());
+
+        // Connections are network-bound, the rest CPU-bound: open the connections in the background meanwhile
+        CompletableFuture<Map<String, Object>> aws = awsEnabled
+                ? CompletableFuture.supplyAsync(this::openConnections)
+                : CompletableFuture.completedFuture(Map.of("skipped", true));
+        record("metadata", timed(() -> warmUpMetadata(deadline)));
+        record("jsonParsing", timed(() -> warmUpJsonParsing(deadline)));
+        try {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            record("aws", aws.get(remaining, TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            log.warn("AWS connection warm-up did not finish within {} ms; continuing", timeoutMillis);
+            record("aws", Map.of("timedOut", true));
+        } catch (Exception e) {
+            log.warn("AWS connection warm-up failed", e);
+            record("aws", Map.of("error", String.valueOf(e.getMessage())));
+        }
+
+        long totalMs = (System.nanoTime() - start) / 1_000_000;
+        record("totalMs", totalMs);
+        record("completedAt", Instant.now().toString());
+        log.info("Warm-up finished in {} ms: {}", totalMs, report());
+    }
+
+    /**
+     * Durations and outcomes of the last warm-up, e.g. {@code totalMs}, {@code metadata.ms}, {@code aws.s3}.
+     */
+    public synchronized Map<String, Object> report() {
+        return new LinkedHashMap<>(report);
+    }
+
+    private synchronized void record(String name, Object value) {
+        report.put(name, value);
+    }
+
+    // Parses every sample file until the iteration count or the deadline is reached
+    Map<String, Object> warmUpMetadata(long deadline) {
+        List<Path> samples = new ArrayList<>();
+        try {
+            for (String name : SAMPLE_FILES) {
+                Path copy = Files.createTempFile("warmup-", "-" + name);
+                samples.add(copy);
+                try (InputStream in = new ClassPathResource("warmup/" + name).getInputStream()) {
+                    Files.write(copy, in.readAllBytes());
+                }
+            }
+            int runs = 0;
+            for (; runs < iterations && System.nanoTime() < deadline; runs++) {
+                for (int i = 0; i < samples.size(); i++) {
+                    // path-based extraction skips the content cache, so every run really parses
+                    List<PageRange> pages = fileMetadataService.extractMetadata(samples.get(i), SAMPLE_FILES.get(i));
+                    objectMapper.writeValueAsBytes(new FileMetadataResponse(SAMPLE_FILES.get(i), null,
+                            Files.size(samples.get(i)), PageRange.pageCount(pages), pages, Instant.now().toString()));
+                }
+            }
+            return Map.of("files", samples.size(), "iterations", runs);
+        } catch (Exception e) {
+            log.warn("Metadata warm-up failed", e);
+            return Map.of("error", String.valueOf(e.getMessage()));
+        } finally {
+            for (Path sample : samples) {
+                try {
+                    Files.deleteIfExists(sample);
+                } catch (IOException e) {
+                    log.debug("Could not delete warm-up file {}", sample, e);
+                }
+            }
+        }
+    }
+
+    Map<String, Object> warmUpJsonParsing(long deadline) {
+        try (InputStream in = new ClassPathResource("warmup/" + SAMPLE_RESPONSE).getInputStream()) {
+            String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            int runs = 0;
+            int fields = 0;
+            for (; runs < iterations && System.nanoTime() < deadline; runs++) {
+                String text = bedrockService.extractContentText(response);
+                fields = extractionService.parseFieldsForWarmup(text);
+            }
+            return Map.of("iterations", runs, "fields", fields);
+        } catch (Exception e) {
+            log.warn("JSON parsing warm-up failed", e);
+            return Map.of("error", String.valueOf(e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> openConnections() {
+        ExecutorService callers = Executors.newFixedThreadPool(2 * connections, r -> {
+            Thread t = new Thread(r, "warmup-aws");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<CompletableFuture<Boolean>> s3 = new ArrayList<>();
+            List<CompletableFuture<Boolean>> textract = new ArrayList<>();
+            List<CompletableFuture<Boolean>> bedrock = new ArrayList<>();
+            String modelId = modelRouter.route(ModelRouter.Operation.PLAYGROUND).primaryModel();
+            long start = System.nanoTime();
+            // concurrent calls, so each one needs a connection of its own
+            for (int i = 0; i < connections; i++) {
+                s3.add(CompletableFuture.supplyAsync(() -> reached(() -> s3Client.listBuckets()), callers));
+                textract.add(CompletableFuture.supplyAsync(() -> reached(() ->
+                        textractClient.getDocumentAnalysis(r -> r.jobId(UNKNOWN_JOB_ID))), callers));
+                bedrock.add(bedrockClient.invokeModel(r -> r.modelId(modelId)
+                                .contentType("application/json")
+                                .body(SdkBytes.fromUtf8String("{}")))
+                        .handle((response, error) -> error == null || isServiceAnswer(error)));
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("s3", opened(s3));
+            result.put("textract", opened(textract));
+            result.put("bedrock", opened(bedrock));
+            result.put("ms", (System.nanoTime() - start) / 1_000_000);
+            return result;
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    // True when the service answered, whatever the answer: the connection is then open and pooled
+    private static boolean reached(Supplier<?> call) {
+        try {
+            call.get();
+            return true;
+        } catch (RuntimeException e) {
+            if (isServiceAnswer(e)) {
+                return true;
+            }
+            log.debug("Warm-up call failed before reaching the service", e);
+            return false;
+        }
+    }
+
+    private static boolean isServiceAnswer(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof AwsServiceException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opened(List<CompletableFuture<Boolean>> calls) {
+        long reached = calls.stream().filter(call -> call.join()).count();
+        return reached + "/" + calls.size();
+    }
+
+    private Map<String, Object> timed(Supplier<Map<String, Object>> step) {
+        long start = System.nanoTime();
+        Map<String, Object> result = new LinkedHashMap<>(step.get());
+        result.put("ms", (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+}
@@ -0,0 +1,11 @@
+package com.experiment.aws.awsservicetester.service;
+
+/**
+ * A prompt split into the parts Anthropic prompt caching cares about, in request order:
+ * {@code instructions} (fixed per use case, sent as the system block), {@code document}
+ * (large context that is often re-sent, e.g. the same OCR text with another field list) and
+ * {@code question} (the short per-request tail). Everything up to the end of the document is
+ * marked cacheable; the question never is.
+ */
+public record StructuredPrompt(String instructions, String document, String question) {
+}
@@ -0,0 +1,21 @@
+package com.experiment.aws.awsservicetester.service;
+
+/**
+ * Cheap, tokenizer-free token estimate used for prompt budgeting.
+ * Claude-family tokenizers average roughly four characters per token on English text,
+ * which is accurate enough to size prompt windows without calling the model.
+ */
+final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private TokenEstimator() {
+    }
+
+    static int estimate(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
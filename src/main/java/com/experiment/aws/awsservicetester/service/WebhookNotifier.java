@@ -0,0 +1,98 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+/**
+ * Delivers job-completion callbacks. Each notification is POSTed as JSON in the background and
+ * retried with exponential backoff on network errors, 5xx and 429 responses; other 4xx responses
+ * are treated as permanent and not retried.
+ */
+@Component
+public class WebhookNotifier {
+
+	private static final Logger log = LoggerFactory.getLogger(WebhookNotifier.class);
+
+    private final RestClient restClient;
+    private final ScheduledExecutorService deliveryScheduler = Executors.newScheduledThreadPool(4,
+            Thread.ofPlatform().daemon().name("webhook-", 0).factory());
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+
+    public WebhookNotifier(RestClient.Builder restClientBuilder,
+            @Value("${webhook.max-attempts:5}") int maxAttempts,
+            @Value("${webhook.initial-backoff-millis:1000}") long initialBackoffMillis,
+            @Value("${webhook.timeout-millis:10000}") int timeoutMillis) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * Rejects anything that is not an absolute http(s) URL, so bad callbacks fail at job start
+     * rather than silently at delivery time.
+     */
+    public void validate(String callbackUrl) {
+        URI uri;
+        try {
+            uri = URI.create(callbackUrl);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("callbackUrl is not a valid URL: " + callbackUrl);
+        }
+        if (uri.getHost() == null || !("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme()))) {
+            throw new IllegalArgumentException("callbackUrl must be an absolute http(s) URL");
+        }
+    }
+
+    /**
+     * Queues the payload for delivery; returns immediately.
+     */
+    public void notify(String callbackUrl, Object payload) {
+        deliveryScheduler.execute(() -> deliver(callbackUrl, payload, 1));
+    }
+
+    private void deliver(String callbackUrl, Object payload, int attempt) {
+        try {
+            restClient.post()
+                    .uri(callbackUrl)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(payload)
+                    .retrieve()
+                    .toBodilessEntity();
+            log.info("Delivered webhook to {} (attempt {})", callbackUrl, attempt);
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value()) {
+                log.warn("Webhook to {} rejected with {}, not retrying", callbackUrl, e.getStatusCode());
+                return;
+            }
+            scheduleRetry(callbackUrl, payload, attempt, e);
+        } catch (Exception e) {
+            scheduleRetry(callbackUrl, payload, attempt, e);
+        }
+    }
+
+    private void scheduleRetry(String callbackUrl, Object payload, int attempt, Exception cause) {
+        if (attempt >= maxAttempts) {
+            log.warn("Giving up on webhook to {} after {} attempts: {}", callbackUrl, attempt, cause.getMessage());
+            return;
+        }
+        long delay = initialBackoffMillis << (attempt - 1);
+        log.debug("Webhook to {} failed (attempt {}), retrying in {} ms: {}", callbackUrl, attempt, delay, cause.getMessage());
+        deliveryScheduler.schedule(() -> deliver(callbackUrl, payload, attempt + 1), delay, TimeUnit.MILLISECONDS);
+    }
+}
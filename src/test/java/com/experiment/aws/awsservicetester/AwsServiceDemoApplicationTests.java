@@ -1,13 +1,57 @@
 package com.experiment.aws.awsservicetester;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+import com.experiment.aws.awsservicetester.service.StartupWarmup;
+
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+
+// No AWS endpoints in tests: warm-up skips the connection step; metrics export is on so the Prometheus
+// registry is the real one
+@AutoConfigureObservability(tracing = false)
+@SpringBootTest(properties = { "warmup.aws.enabled=false", "warmup.iterations=5" })
 class AwsServiceDemoApplicationTests {
 
+	@Autowired
+	private StartupWarmup startupWarmup;
+
+	@Autowired
+	private ApplicationAvailability availability;
+
+	@Autowired
+	private PrometheusMeterRegistry prometheus;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void warmsUpBeforeAcceptingTraffic() {
+		Map<String, Object> report = startupWarmup.report();
+
+		assertEquals(ReadinessState.ACCEPTING_TRAFFIC, availability.getReadinessState());
+		assertEquals(5, ((Map<?, ?>) report.get("metadata")).get("iterations"));
+		assertEquals(10, ((Map<?, ?>) report.get("jsonParsing")).get("fields"));
+		assertEquals(Map.of("skipped", true), report.get("aws"));
+	}
+
+	@Test
+	void publishesAppMetricsToPrometheus() {
+		String scrape = prometheus.scrape();
+
+		assertTrue(scrape.contains("executor_pool_size_threads{name=\"extraction\"}"), scrape);
+		assertTrue(scrape.contains("extraction_jobs_stored "), scrape);
+		assertTrue(scrape.contains("ocr_jobs_watched "), scrape);
+	}
+
 }
@@ -0,0 +1,48 @@
+package com.experiment.aws.awsservicetester.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.experiment.aws.awsservicetester.config.AwsClientProperties.Client;
+import com.experiment.aws.awsservicetester.config.AwsClientProperties.HttpImplementation;
+
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpConfigurationOption;
+import software.amazon.awssdk.utils.AttributeMap;
+
+class AwsClientFactoryTest {
+
+	@Test
+	void passesPoolSettingsAsHttpOptions() {
+		Client settings = new Client();
+		settings.setMaxConnections(200);
+		settings.setConnectionAcquisitionTimeout(Duration.ofMillis(750));
+		settings.setTcpKeepAlive(false);
+
+		AttributeMap options = AwsClientFactory.httpOptions(settings);
+
+		assertEquals(200, options.get(SdkHttpConfigurationOption.MAX_CONNECTIONS));
+		assertEquals(Duration.ofMillis(750), options.get(SdkHttpConfigurationOption.CONNECTION_ACQUIRE_TIMEOUT));
+		assertEquals(false, options.get(SdkHttpConfigurationOption.TCP_KEEPALIVE));
+		assertEquals(true, options.get(SdkHttpConfigurationOption.REAP_IDLE_CONNECTIONS));
+	}
+
+	@Test
+	void buildsTheChosenImplementationAndExplainsMissingOnes() {
+		Client settings = new Client();
+		settings.setHttpImplementation(HttpImplementation.APACHE);
+		try (SdkHttpClient client = AwsClientFactory.syncHttpClient("s3", settings).build()) {
+			assertEquals("Apache", client.clientName());
+		}
+
+		settings.setHttpImplementation(HttpImplementation.NETTY);
+		IllegalStateException e = assertThrows(IllegalStateException.class,
+				() -> AwsClientFactory.syncHttpClient("s3", settings));
+		assertTrue(e.getMessage().contains("aws.clients.s3.http-implementation"), e.getMessage());
+	}
+}
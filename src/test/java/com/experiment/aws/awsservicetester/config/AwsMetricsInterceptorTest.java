@@ -0,0 +1,83 @@
+package com.experiment.aws.awsservicetester.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.textract.TextractClient;
+import software.amazon.awssdk.services.textract.model.InvalidJobIdException;
+
+/**
+ * Calls a local stub of the Textract endpoint and checks the meters it records and what ends up
+ * in the Prometheus output.
+ */
+class AwsMetricsInterceptorTest {
+
+	private final PrometheusMeterRegistry metrics = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+	private final AtomicInteger calls = new AtomicInteger();
+	private HttpServer stub;
+	private TextractClient client;
+
+	@BeforeEach
+	void startStub() throws Exception {
+		stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stub.createContext("/", exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			boolean first = calls.getAndIncrement() == 0;
+			byte[] body = (first
+					? "{\"JobStatus\":\"IN_PROGRESS\"}"
+					: "{\"__type\":\"InvalidJobIdException\",\"Message\":\"unknown job\"}").getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.1");
+			exchange.sendResponseHeaders(first ? 200 : 400, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		stub.start();
+		client = TextractClient.builder()
+				.endpointOverride(URI.create("http://127.0.0.1:" + stub.getAddress().getPort()))
+				.region(Region.US_EAST_1)
+				.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+				.overrideConfiguration(o -> o.addExecutionInterceptor(new AwsMetricsInterceptor(metrics, "textract")))
+				.build();
+	}
+
+	@AfterEach
+	void stopStub() {
+		client.close();
+		stub.stop(0);
+	}
+
+	@Test
+	void recordsEachCallByOperationAndOutcome() {
+		client.getDocumentTextDetection(r -> r.jobId("job-1"));
+		assertThrows(InvalidJobIdException.class, () -> client.getDocumentTextDetection(r -> r.jobId("job-2")));
+
+		assertEquals(1, metrics.get("aws.client.requests")
+				.tags("service", "textract", "operation", "GetDocumentTextDetection", "outcome", "success", "model", "none")
+				.timer().count());
+		assertEquals(1, metrics.get("aws.client.requests").tags("outcome", "InvalidJobIdException").timer().count());
+		assertTrue(metrics.get("aws.client.attempts").tags("operation", "GetDocumentTextDetection").counter().count() >= 2);
+
+		String scrape = metrics.scrape();
+		String success = "model=\"none\",operation=\"GetDocumentTextDetection\",outcome=\"success\",service=\"textract\"";
+		assertTrue(scrape.contains("aws_client_requests_seconds_count{" + success + "} 1\n"), scrape);
+		assertTrue(scrape.contains("aws_client_attempts_total{"), scrape);
+	}
+}
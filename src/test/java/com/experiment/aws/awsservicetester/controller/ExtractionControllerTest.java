@@ -0,0 +1,78 @@
+package com.experiment.aws.awsservicetester.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.experiment.aws.awsservicetester.models.ExtractionJobResult;
+import com.experiment.aws.awsservicetester.service.ExtractionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"warmup.enabled=false", "api.long-poll.max-wait-seconds=60" })
+class ExtractionControllerTest {
+
+	@LocalServerPort
+	private int port;
+
+	@MockitoBean
+	private ExtractionService extractionService;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	@Test
+	void longPollReturnsAsSoonAsTheJobCompletes() throws Exception {
+		CompletableFuture<ExtractionJobResult> completion = new CompletableFuture<>();
+		ExtractionJobResult done = new ExtractionJobResult("SUCCEEDED", Map.of("name", "Ada"));
+		when(extractionService.getExtractionResult("job-1")).thenReturn(new ExtractionJobResult("IN_PROGRESS", null));
+		when(extractionService.awaitCompletion("job-1")).thenReturn(completion);
+
+		long start = System.nanoTime();
+		CompletableFuture<HttpResponse<String>> response = client.sendAsync(
+				HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/extraction/results?jobId=job-1&wait=30"))
+						.build(),
+				HttpResponse.BodyHandlers.ofString());
+		Thread.sleep(300);
+		when(extractionService.getExtractionResult("job-1")).thenReturn(done);
+		completion.complete(done);
+
+		HttpResponse<String> result = response.get(10, TimeUnit.SECONDS);
+		assertEquals(200, result.statusCode());
+		assertEquals("SUCCEEDED", status(result));
+		assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+	}
+
+	@Test
+	void longPollReturnsTheCurrentResultWhenTheWaitRunsOut() throws Exception {
+		when(extractionService.getExtractionResult("job-2")).thenReturn(new ExtractionJobResult("IN_PROGRESS", null));
+		when(extractionService.awaitCompletion("job-2")).thenReturn(new CompletableFuture<>());
+
+		long start = System.nanoTime();
+		HttpResponse<String> result = client.send(
+				HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/extraction/results?jobId=job-2&wait=1"))
+						.build(),
+				HttpResponse.BodyHandlers.ofString());
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertEquals(200, result.statusCode());
+		assertEquals("IN_PROGRESS", status(result));
+		assertTrue(elapsedMillis >= 900 && elapsedMillis < 10_000, elapsedMillis + " ms");
+	}
+
+	private static String status(HttpResponse<String> response) throws Exception {
+		return new ObjectMapper().readTree(response.body()).get("status").asText();
+	}
+}
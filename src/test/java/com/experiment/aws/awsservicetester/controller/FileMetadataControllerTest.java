@@ -0,0 +1,74 @@
+package com.experiment.aws.awsservicetester.controller;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.experiment.aws.awsservicetester.service.FileMetadataService;
+
+// Every file takes far longer than metadata.batch.timeout
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"warmup.enabled=false", "metadata.batch.threads=2", "metadata.batch.timeout=1s" })
+class FileMetadataControllerTest {
+
+	@LocalServerPort
+	private int port;
+
+	@MockitoBean
+	private FileMetadataService fileMetadataService;
+
+	@Test
+	void timedOutBatchStopsItsWorkers() throws Exception {
+		CountDownLatch interrupted = new CountDownLatch(2);
+		when(fileMetadataService.extractMetadata(any(byte[].class), anyInt(), anyString())).thenAnswer(invocation -> {
+			try {
+				Thread.sleep(60_000);
+				return null;
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+				throw e;
+			}
+		});
+
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/metadata/files/batch"))
+				.header("Content-Type", "application/zip")
+				.POST(HttpRequest.BodyPublishers.ofByteArray(zip("a.pdf", "b.pdf", "c.pdf")))
+				.build();
+		CompletableFuture<HttpResponse<String>> response = HttpClient.newHttpClient()
+				.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+
+		// both workers are interrupted well before their files would finish, and the response ends
+		assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+		response.get(10, TimeUnit.SECONDS);
+	}
+
+	private static byte[] zip(String... names) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(out)) {
+			for (String name : names) {
+				zip.putNextEntry(new ZipEntry(name));
+				zip.write(("%PDF " + name).getBytes());
+				zip.closeEntry();
+			}
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,173 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.experiment.aws.awsservicetester.models.BatchExtractionResult;
+import com.experiment.aws.awsservicetester.models.BatchItemResult;
+import com.experiment.aws.awsservicetester.models.ExtractionOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Runs batches against a stubbed S3 listing and a stubbed per-document extraction.
+ */
+class BatchExtractionServiceTest {
+
+	/** Two listing pages under "scans/", the first with a folder placeholder. */
+	private static final S3Client S3 = new S3Client() {
+		@Override
+		public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+			boolean first = request.continuationToken() == null;
+			List<String> keys = first ? List.of("scans/", "scans/1.pdf") : List.of("scans/2.pdf", "scans/3.pdf");
+			return ListObjectsV2Response.builder()
+					.contents(keys.stream().map(k -> S3Object.builder().key(k).build()).toList())
+					.isTruncated(first)
+					.nextContinuationToken(first ? "page-2" : null)
+					.build();
+		}
+
+		@Override
+		public String serviceName() {
+			return "s3";
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	/** Takes {@code millis} per document, fails "bad.pdf" and tracks how many documents run at once. */
+	private static class StubExtractionService extends ExtractionService {
+		final long millis;
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger started = new AtomicInteger();
+		final CountDownLatch interrupted = new CountDownLatch(2);
+
+		StubExtractionService(long millis) {
+			super(null, null, null, null, null, null, null, new SimpleMeterRegistry(), 6000, 512, 0);
+			this.millis = millis;
+		}
+
+		@Override
+		Map<String, String> extractFieldsCached(String bucket, String key, String fields, ExtractionOptions options) {
+			started.incrementAndGet();
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(millis);
+				if (key.equals("bad.pdf")) {
+					throw new IllegalStateException("OCR failed: FAILED");
+				}
+				return Map.of("name", key);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+				throw new CancellationException("Interrupted while waiting for OCR");
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+	}
+
+	private static BatchExtractionService service(StubExtractionService extraction, int maxConcurrency) {
+		return new BatchExtractionService(extraction, new S3Service(S3, null, null), new SimpleMeterRegistry(),
+				maxConcurrency);
+	}
+
+	private static String start(BatchExtractionService service, List<String> keys, String prefix) {
+		return service.startBatch("bucket", keys, prefix, "name", ExtractionOptions.defaults(), false);
+	}
+
+	private static BatchExtractionResult awaitFinished(BatchExtractionService service, String batchId)
+			throws InterruptedException {
+		long giveUp = System.currentTimeMillis() + 5000;
+		BatchExtractionResult result;
+		while ("IN_PROGRESS".equals((result = service.getBatchStatus(batchId)).status)) {
+			assertTrue(System.currentTimeMillis() < giveUp, "batch still running after 5 seconds");
+			Thread.sleep(10);
+		}
+		return result;
+	}
+
+	@Test
+	void listsThePrefixAndBoundsConcurrency() throws Exception {
+		StubExtractionService extraction = new StubExtractionService(100);
+		BatchExtractionService service = service(extraction, 2);
+
+		String batchId = start(service, List.of("a.pdf", "scans/1.pdf"), "scans/");
+		BatchExtractionResult result = awaitFinished(service, batchId);
+
+		assertEquals("COMPLETED", result.status);
+		// explicit keys first, then the listing without the placeholder and the duplicate
+		assertEquals(4, result.total);
+		assertEquals(4, result.succeeded);
+		assertEquals(Set.of("a.pdf", "scans/1.pdf", "scans/2.pdf", "scans/3.pdf"),
+				service.getBatchItems(batchId).stream().map(item -> item.key).collect(Collectors.toSet()));
+		assertEquals(2, extraction.maxRunning.get());
+	}
+
+	@Test
+	void aFailingDocumentOnlyFailsItsOwnResult() throws Exception {
+		BatchExtractionService service = service(new StubExtractionService(10), 2);
+
+		String batchId = start(service, List.of("a.pdf", "bad.pdf", "c.pdf"), null);
+		BatchExtractionResult result = awaitFinished(service, batchId);
+
+		assertEquals("COMPLETED", result.status);
+		assertEquals(2, result.succeeded);
+		assertEquals(1, result.failed);
+		Map<String, String> lines = new ConcurrentHashMap<>();
+		ObjectMapper mapper = new ObjectMapper();
+		for (BatchItemResult item : service.getBatchItems(batchId)) {
+			// one NDJSON line per document, as /batch/results writes them
+			lines.put(item.key, mapper.writeValueAsString(item));
+		}
+		assertEquals("{\"key\":\"bad.pdf\",\"status\":\"FAILED\",\"fields\":null,\"error\":\"OCR failed: FAILED\"}",
+				lines.get("bad.pdf"));
+		assertEquals("{\"key\":\"c.pdf\",\"status\":\"SUCCEEDED\",\"fields\":{\"name\":\"c.pdf\"},\"error\":null}",
+				lines.get("c.pdf"));
+	}
+
+	@Test
+	void cancelInterruptsRunningDocumentsAndDropsQueuedOnes() throws Exception {
+		StubExtractionService extraction = new StubExtractionService(30_000);
+		BatchExtractionService service = service(extraction, 2);
+		String batchId = start(service, List.of("1.pdf", "2.pdf", "3.pdf", "4.pdf"), null);
+		long giveUp = System.currentTimeMillis() + 5000;
+		while (extraction.started.get() < 2) {
+			assertTrue(System.currentTimeMillis() < giveUp);
+			Thread.sleep(10);
+		}
+
+		BatchExtractionResult cancelled = service.cancelBatch(batchId);
+
+		assertEquals("CANCELLED", cancelled.status);
+		assertTrue(extraction.interrupted.await(5, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		assertEquals(2, extraction.started.get());
+		assertEquals("CANCELLED", service.getBatchStatus(batchId).status);
+		for (BatchItemResult item : service.getBatchItems(batchId)) {
+			assertEquals("CANCELLED", item.status);
+			assertNull(item.fields);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.experiment.aws.awsservicetester.models.BatchMetadataItem;
+
+class BatchMetadataServiceTest {
+
+	private final BatchMetadataService service = new BatchMetadataService(
+			new FileMetadataService(new FileMetadataCache(false, 0), null, false, 1, 1000, 65536, 64),
+			new SimpleMeterRegistry(), 2, 2, 1 << 20);
+
+	@Test
+	void reportsEveryZipEntrySeparately() throws Exception {
+		byte[] zip = zip(Map.of(
+				"docs/a.pdf", pdf(3),
+				"scans/b.png", png(),
+				"notes.txt", "not a document".getBytes(),
+				"broken.pdf", "%PDF-1.7 truncated".getBytes(),
+				"big.pdf", new byte[(1 << 20) + 1]));
+		Map<String, BatchMetadataItem> results = new ConcurrentHashMap<>();
+
+		int count = service.processZip(new ByteArrayInputStream(zip), "test.zip", item -> results.put(item.filename, item));
+
+		assertEquals(5, count);
+		assertEquals("SUCCEEDED", results.get("docs/a.pdf").status);
+		assertEquals(3, results.get("docs/a.pdf").pageCount);
+		assertEquals("SUCCEEDED", results.get("scans/b.png").status);
+		assertEquals("UNSUPPORTED", results.get("notes.txt").status);
+		assertEquals("FAILED", results.get("broken.pdf").status);
+		assertEquals("FAILED", results.get("big.pdf").status);
+	}
+
+	@Test
+	void expandsZipPartsOfMultiFileUploads() throws Exception {
+		List<MockMultipartFile> files = List.of(
+				new MockMultipartFile("files", "one.pdf", "application/pdf", pdf(1)),
+				new MockMultipartFile("files", "more.zip", "application/zip", zip(Map.of("two.pdf", pdf(2)))));
+		Map<String, BatchMetadataItem> results = new ConcurrentHashMap<>();
+
+		int count = service.processUploads(List.copyOf(files), item -> results.put(item.filename, item));
+
+		assertEquals(2, count);
+		assertEquals(1, results.get("one.pdf").pageCount);
+		assertEquals(2, results.get("two.pdf").pageCount);
+	}
+
+	private static byte[] pdf(int pages) throws Exception {
+		try (PDDocument document = new PDDocument()) {
+			for (int i = 0; i < pages; i++) {
+				document.addPage(new PDPage());
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			document.save(out);
+			return out.toByteArray();
+		}
+	}
+
+	private static byte[] png() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "png", out);
+		return out.toByteArray();
+	}
+
+	private static byte[] zip(Map<String, byte[]> entries) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(out)) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				zip.putNextEntry(new ZipEntry(entry.getKey()));
+				zip.write(entry.getValue());
+				zip.closeEntry();
+			}
+		}
+		return out.toByteArray();
+	}
+}
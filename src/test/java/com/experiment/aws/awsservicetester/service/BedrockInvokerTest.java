@@ -0,0 +1,131 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+class BedrockInvokerTest {
+
+	/** Answers each call with the next scripted outcome: an exception, or the body "ok". */
+	private static class ScriptedClient implements BedrockRuntimeAsyncClient {
+		final Deque<RuntimeException> failures = new ArrayDeque<>();
+		final AtomicInteger calls = new AtomicInteger();
+		// while set, calls stay in flight until the test completes them
+		volatile List<CompletableFuture<InvokeModelResponse>> held;
+
+		@Override
+		public CompletableFuture<InvokeModelResponse> invokeModel(InvokeModelRequest request) {
+			calls.incrementAndGet();
+			if (held != null) {
+				CompletableFuture<InvokeModelResponse> pending = new CompletableFuture<>();
+				held.add(pending);
+				return pending;
+			}
+			RuntimeException failure;
+			synchronized (failures) {
+				failure = failures.poll();
+			}
+			if (failure != null) {
+				return CompletableFuture.failedFuture(failure);
+			}
+			return CompletableFuture.completedFuture(
+					InvokeModelResponse.builder().body(SdkBytes.fromUtf8String("ok")).build());
+		}
+
+		@Override
+		public String serviceName() {
+			return "bedrock";
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static ThrottlingException throttled() {
+		return (ThrottlingException) ThrottlingException.builder().statusCode(429).message("slow down").build();
+	}
+
+	@Test
+	void retriesThrottlingUntilSuccess() throws Exception {
+		ScriptedClient client = new ScriptedClient();
+		client.failures.add(throttled());
+		client.failures.add(throttled());
+		BedrockInvoker invoker = new BedrockInvoker(client, 4, 4, 1, 5, 10, 5, 30);
+
+		assertEquals("ok", invoker.invoke("model", "{}", null).get());
+		assertEquals(3, client.calls.get());
+	}
+
+	@Test
+	void opensCircuitAfterConsecutiveFailures() {
+		ScriptedClient client = new ScriptedClient();
+		for (int i = 0; i < 4; i++) {
+			client.failures.add(throttled());
+		}
+		// one attempt per call, circuit opens after two failed calls
+		BedrockInvoker invoker = new BedrockInvoker(client, 4, 1, 1, 5, 10, 2, 30);
+
+		assertThrows(ExecutionException.class, () -> invoker.invoke("model", "{}", null).get());
+		assertThrows(ExecutionException.class, () -> invoker.invoke("model", "{}", null).get());
+		ExecutionException rejected = assertThrows(ExecutionException.class,
+				() -> invoker.invoke("model", "{}", null).get());
+
+		assertInstanceOf(BedrockInvoker.CircuitOpenException.class, rejected.getCause());
+		assertEquals(2, client.calls.get());
+	}
+
+	@Test
+	void timesOutCallsStillWaitingForASlot() {
+		ScriptedClient client = new ScriptedClient();
+		client.held = new ArrayList<>();
+		BedrockInvoker invoker = new BedrockInvoker(client, 1, 1, 1, 5, 10, 5, 30);
+
+		CompletableFuture<String> running = invoker.invoke("model", "{}", Duration.ofSeconds(10));
+		CompletableFuture<String> queued = invoker.invoke("model", "{}", Duration.ofMillis(50));
+
+		ExecutionException timedOut = assertThrows(ExecutionException.class, queued::get);
+		assertInstanceOf(ApiCallTimeoutException.class, timedOut.getCause());
+		assertEquals(1, client.calls.get());
+		assertFalse(running.isDone());
+	}
+
+	@Test
+	void skipsCancelledCallsWhenHandingOverASlot() throws Exception {
+		ScriptedClient client = new ScriptedClient();
+		client.held = new ArrayList<>();
+		BedrockInvoker invoker = new BedrockInvoker(client, 1, 1, 1, 5, 10, 5, 30);
+
+		invoker.invoke("model", "{}", null);
+		List<CompletableFuture<String>> cancelled = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			cancelled.add(invoker.invoke("model", "{}", null));
+		}
+		CompletableFuture<String> last = invoker.invoke("model", "{}", null);
+		cancelled.forEach(call -> call.cancel(true));
+		client.held.get(0).complete(InvokeModelResponse.builder().body(SdkBytes.fromUtf8String("ok")).build());
+		client.held.get(1).complete(InvokeModelResponse.builder().body(SdkBytes.fromUtf8String("ok")).build());
+
+		assertEquals("ok", last.get());
+		assertEquals(2, client.calls.get());
+	}
+}
@@ -0,0 +1,141 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.sun.net.httpserver.HttpServer;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+
+/**
+ * Runs extraction and sentiment requests against a local stub of the Bedrock InvokeModel endpoint.
+ */
+class BedrockPromptCacheTest {
+
+	private static final String STUB_RESPONSE = """
+			{"content":[{"type":"text","text":"{\\"name\\": \\"Jane\\"}"}],
+			 "usage":{"input_tokens":12,"cache_read_input_tokens":1800,"cache_creation_input_tokens":0,"output_tokens":9}}
+			""";
+
+	private HttpServer stub;
+	private final AtomicReference<String> lastRequest = new AtomicReference<>();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicReference<String> response = new AtomicReference<>(STUB_RESPONSE);
+	private BedrockRuntimeAsyncClient client;
+
+	@BeforeEach
+	void startStub() throws Exception {
+		stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stub.createContext("/", exchange -> {
+			requests.incrementAndGet();
+			lastRequest.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			byte[] body = response.get().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		stub.start();
+		client = BedrockRuntimeAsyncClient.builder()
+				.endpointOverride(URI.create("http://127.0.0.1:" + stub.getAddress().getPort()))
+				.region(Region.US_EAST_1)
+				.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")))
+				.build();
+	}
+
+	@AfterEach
+	void stopStub() {
+		client.close();
+		stub.stop(0);
+	}
+
+	private BedrockService service(boolean promptCacheEnabled) {
+		BedrockInvoker invoker = new BedrockInvoker(client, 4, 1, 1, 5, 10, 5, 30);
+		ModelRouter router = new ModelRouter("m", "", 1024, "m", "", 16, "m", "", 1024, 8000, 0.2, 20, 60);
+		return new BedrockService(invoker, router, new BedrockResponseCache(1024, 60), new SimpleMeterRegistry(),
+				false, promptCacheEnabled, 300);
+	}
+
+	@Test
+	void marksInstructionsAndDocumentCacheableAndReportsUsage() throws Exception {
+		BedrockService service = service(true);
+		StructuredPrompt prompt = new StructuredPrompt("Extract fields.", "OCR Text:\nJane Doe", "Fields: name");
+
+		assertEquals("{\"name\": \"Jane\"}", service.getExtractionResponse(prompt, null, null));
+
+		JSONObject request = new JSONObject(lastRequest.get());
+		assertEquals("ephemeral", request.getJSONArray("system").getJSONObject(0)
+				.getJSONObject("cache_control").getString("type"));
+		var content = request.getJSONArray("messages").getJSONObject(0).getJSONArray("content");
+		assertEquals("OCR Text:\nJane Doe", content.getJSONObject(0).getString("text"));
+		assertEquals("ephemeral", content.getJSONObject(0).getJSONObject("cache_control").getString("type"));
+		assertFalse(content.getJSONObject(1).has("cache_control"));
+
+		Map<String, Object> stats = service.getPromptCacheStats();
+		assertEquals(1L, stats.get("requestsWithCacheHit"));
+		assertEquals(1800L, stats.get("cacheReadInputTokens"));
+	}
+
+	@Test
+	void omitsCacheControlWhenDisabled() {
+		service(false).getExtractionResponse(new StructuredPrompt("Extract fields.", "doc", "Fields: name"), null, null);
+
+		assertFalse(lastRequest.get().contains("cache_control"));
+	}
+
+	@Test
+	void escapesUserTextAndNormalizesSentimentLabels() {
+		response.set("{\"content\":[{\"type\":\"text\",\"text\":\" Positive.\"}]}");
+		String review = "Said \"great\" \\o/\tthen left";
+
+		assertEquals("positive", service(false).analyzeSentiment(review));
+
+		JSONObject request = new JSONObject(lastRequest.get());
+		String sent = request.getJSONArray("messages").getJSONObject(0).getString("content");
+		assertTrue(sent.endsWith("Text: " + review), sent);
+	}
+
+	@Test
+	void cachesSentimentOnlyWhenThePrimaryModelAnswered() {
+		response.set("{\"content\":[{\"type\":\"text\",\"text\":\"positive\"}]}");
+		BedrockInvoker invoker = new BedrockInvoker(client, 4, 1, 1, 5, 10, 5, 30);
+		// sentiment: small -> big fallback after 5 slow samples
+		ModelRouter router = new ModelRouter("m", "", 1024, "small", "big", 16, "m", "", 1024, 1000, 0.2, 5, 60);
+		BedrockService service = new BedrockService(invoker, router, new BedrockResponseCache(1024, 60),
+				new SimpleMeterRegistry(), true, false, 300);
+		for (int i = 0; i < 5; i++) {
+			router.record("small", TimeUnit.MILLISECONDS.toNanos(3000), true);
+		}
+
+		assertEquals("positive", service.analyzeSentiment("great"));
+		assertEquals("positive", service.analyzeSentiment("great"));
+		// the fallback's answers were not stored under the primary's key
+		assertEquals(2, requests.get());
+
+		ModelRouter healthy = new ModelRouter("m", "", 1024, "small", "big", 16, "m", "", 1024, 1000, 0.2, 5, 60);
+		BedrockService primary = new BedrockService(invoker, healthy, new BedrockResponseCache(1024, 60),
+				new SimpleMeterRegistry(), true, false, 300);
+		primary.analyzeSentiment("great");
+		primary.analyzeSentiment("great");
+		assertEquals(3, requests.get());
+	}
+}
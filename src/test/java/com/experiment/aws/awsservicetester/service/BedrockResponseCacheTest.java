@@ -0,0 +1,35 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+class BedrockResponseCacheTest {
+
+	@Test
+	void keyIgnoresCosmeticWhitespaceButNotParams() {
+		String a = BedrockResponseCache.key("model", "  Tell me\ta  joke\r\n", "max_tokens=1024");
+		String b = BedrockResponseCache.key("model", "Tell me a joke", "max_tokens=1024");
+		String c = BedrockResponseCache.key("model", "Tell me a joke", "max_tokens=16");
+
+		assertEquals(a, b);
+		assertNotEquals(b, c);
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedByWeight() {
+		// each entry weighs just under 900 bytes, so only two fit
+		BedrockResponseCache cache = new BedrockResponseCache(2500, 60);
+		String value = "x".repeat(400);
+		cache.put("a", value);
+		cache.put("b", value);
+		cache.get("a");
+		cache.put("c", value);
+
+		assertEquals(value, cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(1L, cache.stats().get("evictions"));
+	}
+}
@@ -0,0 +1,100 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.experiment.aws.awsservicetester.models.ExtractionOptions;
+
+class ExtractionResultCacheTest {
+
+	private static ExtractionResultCache.Key key(String eTag, String fields) {
+		return ExtractionResultCache.Key.of("bucket", "doc.pdf", eTag, fields, "model", ExtractionOptions.defaults());
+	}
+
+	@Test
+	void fieldListIsNormalized() {
+		assertEquals(key("e1", "name, DOB,name"), key("e1", "dob,name"));
+	}
+
+	@Test
+	void newETagMisses() {
+		ExtractionResultCache cache = new ExtractionResultCache(10, 60);
+		cache.getOrCompute(key("e1", "name"), () -> Map.of("name", "Jane"));
+
+		assertEquals(Map.of("name", "Jane"), cache.getIfPresent(key("e1", "name")));
+		assertNull(cache.getIfPresent(key("e2", "name")));
+	}
+
+	@Test
+	void evictsLeastRecentlyUsed() {
+		ExtractionResultCache cache = new ExtractionResultCache(2, 60);
+		cache.getOrCompute(key("a", "f"), () -> Map.of("f", "a"));
+		cache.getOrCompute(key("b", "f"), () -> Map.of("f", "b"));
+		cache.getIfPresent(key("a", "f"));
+		cache.getOrCompute(key("c", "f"), () -> Map.of("f", "c"));
+
+		assertNull(cache.getIfPresent(key("b", "f")));
+		assertEquals(Map.of("f", "a"), cache.getIfPresent(key("a", "f")));
+	}
+
+	@Test
+	void concurrentMissesShareOneLoad() throws Exception {
+		ExtractionResultCache cache = new ExtractionResultCache(10, 60);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] callers = new Future<?>[4];
+			for (int i = 0; i < callers.length; i++) {
+				callers[i] = pool.submit(() -> cache.getOrCompute(key("e1", "name"), () -> {
+					loads.incrementAndGet();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return Map.of("name", "Jane");
+				}));
+			}
+			Thread.sleep(200);
+			release.countDown();
+			for (Future<?> caller : callers) {
+				assertEquals(Map.of("name", "Jane"), caller.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(1, loads.get());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void countsOneMissPerRequest() {
+		ExtractionResultCache cache = new ExtractionResultCache(10, 60);
+
+		assertNull(cache.getIfPresent(key("e1", "name")));
+		cache.getOrComputeAfterMiss(key("e1", "name"), () -> Map.of("name", "Jane"), () -> true);
+		cache.getIfPresent(key("e1", "name"));
+
+		assertEquals(1L, cache.stats().get("misses"));
+		assertEquals(1L, cache.stats().get("hits"));
+	}
+
+	@Test
+	void doesNotStoreLoadsThatAreNotCacheable() {
+		ExtractionResultCache cache = new ExtractionResultCache(10, 60);
+
+		assertEquals(Map.of("name", "Jane"), cache.getOrCompute(key("e1", "name"), () -> Map.of("name", "Jane"), () -> false));
+
+		assertNull(cache.getIfPresent(key("e1", "name")));
+	}
+}
@@ -0,0 +1,395 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.experiment.aws.awsservicetester.models.ExtractionJobResult;
+import com.experiment.aws.awsservicetester.models.ExtractionOptions;
+import com.experiment.aws.awsservicetester.models.OcrJobResult;
+import com.experiment.aws.awsservicetester.models.PageResult;
+
+/**
+ * Runs extraction jobs against stubbed OCR and Bedrock services.
+ */
+class ExtractionServiceTest {
+
+	/** Every OCR run finishes with the given result. */
+	static class StubOcrService extends OcrService {
+		volatile CompletableFuture<OcrJobResult> watch;
+		final CountDownLatch watching = new CountDownLatch(1);
+
+		StubOcrService(OcrJobResult result) {
+			super(null, null, new SimpleMeterRegistry(), 1, 30, 3);
+			this.watch = CompletableFuture.completedFuture(result);
+		}
+
+		@Override
+		public String startOcrProcessing(String bucket, String key) {
+			return "ocr-" + key;
+		}
+
+		@Override
+		public CompletableFuture<OcrJobResult> watchJob(String jobId) {
+			watching.countDown();
+			return watch;
+		}
+	}
+
+	/** Answers every extraction prompt with {@code answer}, on behalf of {@code answeringModel}. */
+	static class StubBedrockService extends BedrockService {
+		volatile Function<StructuredPrompt, CompletableFuture<String>> answer;
+		volatile String answeringModel = "m";
+
+		StubBedrockService(Function<StructuredPrompt, CompletableFuture<String>> answer) {
+			super(null, null, null, null, false, false, 300);
+			this.answer = answer;
+		}
+
+		@Override
+		public String getModelId() {
+			return "m";
+		}
+
+		// blocks like the real call: an interrupted caller cancels the Bedrock request
+		@Override
+		public String getExtractionResponse(StructuredPrompt prompt, Duration timeout, Consumer<String> answeredBy) {
+			CompletableFuture<String> call = answer.apply(prompt);
+			try {
+				String response = call.get();
+				answeredBy.accept(answeringModel);
+				return response;
+			} catch (InterruptedException e) {
+				call.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Interrupted while waiting for Bedrock");
+			} catch (ExecutionException e) {
+				throw (RuntimeException) e.getCause();
+			}
+		}
+
+		@Override
+		public CompletableFuture<String> getExtractionResponseAsync(StructuredPrompt prompt, int maxTokens,
+				Duration timeout, Consumer<String> answeredBy) {
+			CompletableFuture<String> call = answer.apply(prompt);
+			CompletableFuture<String> answered = call.thenApply(response -> {
+				answeredBy.accept(answeringModel);
+				return response;
+			});
+			answered.whenComplete((response, error) -> {
+				if (answered.isCancelled()) {
+					call.cancel(true);
+				}
+			});
+			return answered;
+		}
+	}
+
+	static class StubS3Service extends S3Service {
+		StubS3Service() {
+			super(null, null, null);
+		}
+
+		@Override
+		public String getETag(String bucket, String key) {
+			return "etag-" + key;
+		}
+	}
+
+	static ExtractionService service(OcrService ocr, BedrockService bedrock, int windowMaxInputTokens) {
+		return service(ocr, bedrock, windowMaxInputTokens, new SimpleMeterRegistry());
+	}
+
+	static ExtractionService service(OcrService ocr, BedrockService bedrock, int windowMaxInputTokens,
+			MeterRegistry metrics) {
+		return new ExtractionService(ocr, bedrock, new StubS3Service(), new ExtractionResultCache(100, 60), null,
+				new FieldExtractorRegistry(List.of(), false, 0.9), new OcrTextCompactor(false, 0, 0.5, 150000),
+				metrics, windowMaxInputTokens, 512, 0);
+	}
+
+	static List<PageResult> pages(String... texts) {
+		List<PageResult> pages = new ArrayList<>();
+		for (int i = 0; i < texts.length; i++) {
+			pages.add(new PageResult(i + 1, texts[i]));
+		}
+		return pages;
+	}
+
+	private static ExtractionJobResult run(ExtractionService service) throws Exception {
+		return run(service, "name", ExtractionOptions.defaults());
+	}
+
+	private static String start(ExtractionService service, Long deadlineSeconds) {
+		return service.startExtractionJob("bucket", "doc.pdf", "name", ExtractionOptions.defaults(), true, null,
+				deadlineSeconds);
+	}
+
+	private static ExtractionJobResult run(ExtractionService service, String fields, ExtractionOptions options)
+			throws Exception {
+		String jobId = service.startExtractionJob("bucket", "doc.pdf", fields, options, true, null, null);
+		return service.awaitCompletion(jobId).get(5, TimeUnit.SECONDS);
+	}
+
+	// "This is part 2 of 3 ..." -> 2
+	private static int windowOf(StructuredPrompt prompt) {
+		return Integer.parseInt(prompt.document().split(" ")[3]);
+	}
+
+	@Test
+	void partialOcrStillExtractsAndRecordsAWarning() throws Exception {
+		StubOcrService ocr = new StubOcrService(new OcrJobResult("PARTIAL_SUCCESS", pages("Name: Ada")));
+		StubBedrockService bedrock = new StubBedrockService(p -> CompletableFuture.completedFuture("{\"name\": \"Ada\"}"));
+
+		ExtractionJobResult result = run(service(ocr, bedrock, 6000));
+
+		assertEquals("SUCCEEDED", result.status);
+		assertEquals(Map.of("name", "Ada"), result.fields);
+		assertEquals(1, result.warnings.size());
+		assertTrue(result.warnings.get(0).contains("PARTIAL_SUCCESS"), result.warnings.get(0));
+	}
+
+	@Test
+	void failedOcrFailsTheJob() throws Exception {
+		StubOcrService ocr = new StubOcrService(new OcrJobResult("FAILED", null));
+		StubBedrockService bedrock = new StubBedrockService(p -> CompletableFuture.completedFuture("{}"));
+
+		ExtractionJobResult result = run(service(ocr, bedrock, 6000));
+
+		assertEquals("FAILED", result.status);
+		assertEquals("OCR failed: FAILED", result.error);
+		assertNull(result.warnings);
+	}
+
+	@Test
+	void cachesResultsOnlyWhenThePrimaryModelAnswered() {
+		StubOcrService ocr = new StubOcrService(new OcrJobResult("SUCCEEDED", pages("Name: Ada")));
+		AtomicInteger prompts = new AtomicInteger();
+		StubBedrockService bedrock = new StubBedrockService(p -> {
+			prompts.incrementAndGet();
+			return CompletableFuture.completedFuture("{\"name\": \"Ada\"}");
+		});
+		ExtractionService service = service(ocr, bedrock, 6000);
+		bedrock.answeringModel = "fallback";
+
+		service.extractFieldsCached("bucket", "doc.pdf", "name", ExtractionOptions.defaults());
+		service.extractFieldsCached("bucket", "doc.pdf", "name", ExtractionOptions.defaults());
+		assertEquals(2, prompts.get());
+
+		bedrock.answeringModel = "m";
+		service.extractFieldsCached("bucket", "doc.pdf", "name", ExtractionOptions.defaults());
+		assertEquals(Map.of("name", "Ada"),
+				service.extractFieldsCached("bucket", "doc.pdf", "name", ExtractionOptions.defaults()));
+		assertEquals(3, prompts.get());
+	}
+
+	@Test
+	void windowsFollowPageBoundariesWithinTheTokenBudget() {
+		ExtractionService service = service(null, null, 25);
+		String page = "x".repeat(40); // 10 tokens
+
+		List<String> windows = service.buildWindows(pages(page + "1", page + "2", page + "3"), 25);
+
+		assertEquals(List.of(page + "1\n" + page + "2\n", page + "3\n"), windows);
+	}
+
+	@Test
+	void splitsAnOversizedPageOnLineBoundaries() {
+		ExtractionService service = service(null, null, 15);
+		String line = "y".repeat(36); // 9 tokens, 10 with its line break
+
+		List<String> windows = service.buildWindows(pages("intro", line + "1\n" + line + "2\n" + line + "3"), 15);
+
+		assertEquals(List.of("intro\n", line + "1\n", line + "2\n", line + "3\n"), windows);
+	}
+
+	@Test
+	void firstNonEmptyMergesInDocumentOrder() throws Exception {
+		StubOcrService ocr = new StubOcrService(new OcrJobResult("SUCCEEDED", pages("x".repeat(40), "y".repeat(40))));
+		StubBedrockService bedrock = new StubBedrockService(prompt -> windowOf(prompt) == 1
+				// the first window answers last
+				? CompletableFuture.supplyAsync(() -> "{\"name\": \"Ada\", \"id\": \"\"}",
+						CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS))
+				: CompletableFuture.completedFuture("{\"name\": \"Grace\", \"id\": \"42\"}"));
+		ExtractionOptions windowed = new ExtractionOptions(ExtractionOptions.Mode.WINDOWED,
+				ExtractionOptions.MergePolicy.FIRST_NON_EMPTY);
+
+		ExtractionJobResult result = run(service(ocr, bedrock, 10), "name,id", windowed);
+
+		assertEquals("SUCCEEDED", result.status);
+		assertEquals(Map.of("name", "Ada", "id", "42"), result.fields);
+	}
+
+	@Test
+	void highestConfidenceKeepsTheEarlierValueOnTiesAndIgnoresEmptyValues() {
+		ExtractionService service = service(null, null, 10);
+		Map<String, String> merged = new LinkedHashMap<>();
+		Map<String, Double> best = new HashMap<>();
+
+		service.mergeWindow("{\"name\": {\"value\": \"Ada\", \"confidence\": 0.8},"
+				+ " \"id\": {\"value\": \"\", \"confidence\": 0.99}}", merged, best, true);
+		service.mergeWindow("{\"name\": {\"value\": \"Grace\", \"confidence\": 0.8},"
+				+ " \"id\": {\"value\": \"n/a\", \"confidence\": 1}}", merged, best, true);
+		assertEquals(Map.of("name", "Ada", "id", ""), merged);
+
+		service.mergeWindow("{\"name\": {\"value\": \"Lin\", \"confidence\": 0.5},"
+				+ " \"id\": {\"value\": \"42\", \"confidence\": 0.1}}", merged, best, true);
+		service.mergeWindow("{\"name\": {\"value\": \"Bob\", \"confidence\": 0.9}}", merged, best, true);
+		assertEquals(Map.of("name", "Bob", "id", "42"), merged);
+	}
+
+	@Test
+	void cancelsOutstandingWindowsWhenOneFails() throws Exception {
+		StubOcrService ocr = new StubOcrService(new OcrJobResult("SUCCEEDED",
+				pages("x".repeat(40), "y".repeat(40), "z".repeat(40))));
+		List<CompletableFuture<String>> outstanding = new CopyOnWriteArrayList<>();
+		StubBedrockService bedrock = new StubBedrockService(prompt -> {
+			if (windowOf(prompt) == 1) {
+				return CompletableFuture.failedFuture(new IllegalStateException("throttled"));
+			}
+			CompletableFuture<String> call = new CompletableFuture<>();
+			outstanding.add(call);
+			return call;
+		});
+		ExtractionOptions windowed = new ExtractionOptions(ExtractionOptions.Mode.WINDOWED,
+				ExtractionOptions.MergePolicy.HIGHEST_CONFIDENCE);
+
+		ExtractionJobResult result = run(service(ocr, bedrock, 10), "name", windowed);
+
+		assertEquals("FAILED", result.status);
+		assertEquals("throttled", result.error);
+		assertEquals(2, outstanding.size());
+		outstanding.forEach(call -> assertTrue(call.isCancelled()));
+	}
+
+	@Test
+	void cancelRecordsCancelledAndStopsTheOcrWatch() throws Exception {
+		StubOcrService ocr = new StubOcrService(null);
+		ocr.watch = new CompletableFuture<>(); // Textract never finishes
+		ExtractionService service = service(ocr, new StubBedrockService(p -> new CompletableFuture<>()), 6000);
+		String jobId = start(service, null);
+		assertTrue(ocr.watching.await(5, TimeUnit.SECONDS));
+
+		ExtractionJobResult cancelled = service.cancelExtractionJob(jobId);
+
+		assertEquals("CANCELLED", cancelled.status);
+		assertSame(cancelled, service.awaitCompletion(jobId).get(5, TimeUnit.SECONDS));
+		await(() -> ocr.watch.isCancelled());
+		// the interrupted background task does not overwrite the result
+		assertSame(cancelled, service.getExtractionResult(jobId));
+	}
+
+	@Test
+	void deadlineRecordsDeadlineExceededAndCancelsTheBedrockCall() throws Exception {
+		StubOcrService ocr = new StubOcrService(new OcrJobResult("SUCCEEDED", pages("Name: Ada")));
+		BlockingQueue<CompletableFuture<String>> calls = new LinkedBlockingQueue<>();
+		StubBedrockService bedrock = new StubBedrockService(prompt -> {
+			CompletableFuture<String> call = new CompletableFuture<>();
+			calls.add(call);
+			return call;
+		});
+		ExtractionService service = service(ocr, bedrock, 6000);
+
+		String jobId = start(service, 1L);
+		CompletableFuture<String> call = calls.poll(5, TimeUnit.SECONDS);
+		ExtractionJobResult result = service.awaitCompletion(jobId).get(5, TimeUnit.SECONDS);
+
+		assertEquals("DEADLINE_EXCEEDED", result.status);
+		await(call::isCancelled);
+		assertSame(result, service.getExtractionResult(jobId));
+	}
+
+	@Test
+	void firstTerminalResultWinsWhenCancelRacesCompletion() throws Exception {
+		StubOcrService ocr = new StubOcrService(new OcrJobResult("SUCCEEDED", pages("Name: Ada")));
+		BlockingQueue<CompletableFuture<String>> calls = new LinkedBlockingQueue<>();
+		StubBedrockService bedrock = new StubBedrockService(prompt -> {
+			CompletableFuture<String> call = new CompletableFuture<>();
+			calls.add(call);
+			return call;
+		});
+		SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+		ExtractionService service = service(ocr, bedrock, 6000, metrics);
+		ExecutorService racers = Executors.newFixedThreadPool(2);
+		try {
+			for (int i = 1; i <= 50; i++) {
+				String jobId = start(service, null);
+				CompletableFuture<String> call = calls.poll(5, TimeUnit.SECONDS);
+				CountDownLatch go = new CountDownLatch(1);
+				racers.submit(() -> {
+					go.await();
+					return call.complete("{\"name\": \"Ada\"}");
+				});
+				Future<ExtractionJobResult> cancel = racers.submit(() -> {
+					go.await();
+					return service.cancelExtractionJob(jobId);
+				});
+				go.countDown();
+
+				ExtractionJobResult seen = service.awaitCompletion(jobId).get(5, TimeUnit.SECONDS);
+				cancel.get(5, TimeUnit.SECONDS);
+				int finished = i;
+				// the background run has ended once it recorded its timer
+				await(() -> metrics.find("extraction.jobs").timers().stream().mapToLong(Timer::count).sum() == finished);
+
+				assertSame(seen, service.getExtractionResult(jobId), "result changed after it was published");
+				if ("CANCELLED".equals(seen.status)) {
+					assertNull(seen.fields);
+				} else {
+					assertEquals("SUCCEEDED", seen.status);
+					assertEquals(Map.of("name", "Ada"), seen.fields);
+				}
+			}
+		} finally {
+			racers.shutdownNow();
+		}
+	}
+
+	@Test
+	void cancellingAFinishedJobKeepsItsResult() throws Exception {
+		StubOcrService ocr = new StubOcrService(new OcrJobResult("SUCCEEDED", pages("Name: Ada")));
+		StubBedrockService bedrock = new StubBedrockService(p -> CompletableFuture.completedFuture("{\"name\": \"Ada\"}"));
+		ExtractionService service = service(ocr, bedrock, 6000);
+		String jobId = start(service, null);
+		ExtractionJobResult done = service.awaitCompletion(jobId).get(5, TimeUnit.SECONDS);
+
+		assertSame(done, service.cancelExtractionJob(jobId));
+		assertEquals("SUCCEEDED", done.status);
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long giveUp = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < giveUp, "condition not met within 5 seconds");
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.experiment.aws.awsservicetester.models.PageRange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class FileMetadataServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private final FileMetadataService service = new FileMetadataService(new FileMetadataCache(false, 0), null, false, 1, 1000, 65536, 64);
+
+	@Test
+	void readsPdfPagesFromFile() throws Exception {
+		Path pdf = dir.resolve("doc.pdf");
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage(PDRectangle.LETTER));
+			PDPage rotated = new PDPage(PDRectangle.A4);
+			rotated.setRotation(90);
+			document.addPage(rotated);
+			document.save(pdf.toFile());
+		}
+
+		List<PageRange> pages = service.extractMetadata(pdf, "doc.pdf");
+
+		assertEquals(2, PageRange.pageCount(pages));
+		assertEquals(612, PageRange.forPage(pages, 1).width());
+		assertEquals(792, PageRange.forPage(pages, 1).height());
+		assertEquals(0, PageRange.forPage(pages, 1).rotation());
+		assertEquals(595, PageRange.forPage(pages, 2).width());
+		assertEquals(90, PageRange.forPage(pages, 2).rotation());
+	}
+
+	@Test
+	void inheritsBoxesAndRotationFromPageTree() throws Exception {
+		Path pdf = dir.resolve("inherited.pdf");
+		try (PDDocument document = new PDDocument()) {
+			COSDictionary root = document.getPages().getCOSObject();
+			root.setItem(COSName.MEDIA_BOX, PDRectangle.A4.getCOSArray());
+			root.setInt(COSName.ROTATE, 270);
+			document.addPage(new PDPage(new COSDictionary()));
+			PDPage cropped = new PDPage(new COSDictionary());
+			cropped.setCropBox(new PDRectangle(0, 0, 300, 400));
+			document.addPage(cropped);
+			document.save(pdf.toFile());
+		}
+
+		List<PageRange> pages = service.extractMetadata(pdf, "inherited.pdf");
+
+		assertEquals(595, PageRange.forPage(pages, 1).width());
+		assertEquals(270, PageRange.forPage(pages, 1).rotation());
+		assertEquals(0, PageRange.forPage(pages, 1).cropWidth());
+		assertEquals(300, PageRange.forPage(pages, 2).cropWidth());
+		assertEquals(270, PageRange.forPage(pages, 2).rotation());
+	}
+
+	@Test
+	void parallelPdfReadMatchesSequential() throws Exception {
+		Path pdf = dir.resolve("long.pdf");
+		try (PDDocument document = new PDDocument()) {
+			for (int i = 0; i < 600; i++) {
+				PDPage page = new PDPage(i % 3 == 0 ? PDRectangle.A4 : PDRectangle.LETTER);
+				page.setRotation(i % 4 * 90);
+				document.addPage(page);
+			}
+			document.save(pdf.toFile());
+		}
+		FileMetadataService parallel = new FileMetadataService(new FileMetadataCache(false, 0), null, true, 3, 500, 65536, 64);
+
+		List<PageRange> expected = service.extractMetadata(pdf, "long.pdf");
+		List<PageRange> actual = parallel.extractMetadata(pdf, "long.pdf");
+
+		assertEquals(600, PageRange.pageCount(actual));
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	void collapsesIdenticalPagesIntoRanges() throws Exception {
+		Path pdf = dir.resolve("uniform.pdf");
+		try (PDDocument document = new PDDocument()) {
+			for (int i = 0; i < 1000; i++) {
+				document.addPage(new PDPage(i == 999 ? PDRectangle.A4 : PDRectangle.LETTER));
+			}
+			document.save(pdf.toFile());
+		}
+
+		List<PageRange> pages = service.extractMetadata(pdf, "uniform.pdf");
+
+		assertEquals(2, pages.size());
+		assertEquals(1000, PageRange.pageCount(pages));
+		assertEquals(999, pages.get(0).to());
+		assertEquals(595, PageRange.forPage(pages, 1000).width());
+		String json = new ObjectMapper().writeValueAsString(pages.get(0));
+		assertEquals("{\"from\":1,\"to\":999,\"type\":\"pdf\",\"width\":612,\"height\":792,\"size\":"
+				+ pages.get(0).metadata().size() + ",\"dpi\":72,\"rotation\":0}", json);
+	}
+
+	@Test
+	void readsImageUpload() throws Exception {
+		Path png = dir.resolve("scan.png");
+		ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "png", png.toFile());
+		MockMultipartFile upload = new MockMultipartFile("file", "scan.png", "image/png", Files.readAllBytes(png));
+
+		List<PageRange> pages = service.extractMetadata(upload);
+
+		assertEquals(1, PageRange.pageCount(pages));
+		assertEquals(40, PageRange.forPage(pages, 1).width());
+		assertEquals(30, PageRange.forPage(pages, 1).height());
+		assertEquals("png", PageRange.forPage(pages, 1).type());
+	}
+
+	@Test
+	void readsOtherImageFormatsThroughImaging() throws Exception {
+		Path bmp = dir.resolve("scan.bmp");
+		ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "bmp", bmp.toFile());
+		byte[] content = Files.readAllBytes(bmp);
+
+		List<PageRange> fromFile = service.extractMetadata(
+				new MockMultipartFile("file", "scan.bmp", "image/bmp", content));
+		List<PageRange> fromMemory = service.extractMetadata(content, content.length, "scan.bmp");
+
+		for (List<PageRange> pages : List.of(fromFile, fromMemory)) {
+			assertEquals(1, PageRange.pageCount(pages));
+			assertEquals(40, PageRange.forPage(pages, 1).width());
+			assertEquals(30, PageRange.forPage(pages, 1).height());
+			assertEquals("bmp", PageRange.forPage(pages, 1).type());
+		}
+	}
+
+	@Test
+	void reusesMetadataForIdenticalUploads() throws Exception {
+		Path png = dir.resolve("scan.png");
+		ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "png", png.toFile());
+		byte[] content = Files.readAllBytes(png);
+		FileMetadataService cached = new FileMetadataService(new FileMetadataCache(true, 1 << 20), null, false, 1, 1000, 65536, 64);
+
+		List<PageRange> first = cached.extractMetadata(
+				new MockMultipartFile("file", "scan.png", "image/png", content));
+		List<PageRange> second = cached.extractMetadata(
+				new MockMultipartFile("file", "retry.png", "image/png", content));
+
+		assertSame(first, second);
+		assertEquals(1L, cached.getCacheStats().get("hits"));
+		assertEquals(1L, cached.getCacheStats().get("misses"));
+	}
+
+	@Test
+	void fallsBackToFullParseForBrokenXref() throws Exception {
+		ByteArrayOutputStream saved = new ByteArrayOutputStream();
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage(PDRectangle.LETTER));
+			document.addPage(new PDPage(PDRectangle.A4));
+			document.save(saved);
+		}
+		// point startxref at the wrong offset: the strict lazy parse fails, the lenient parse rebuilds the xref
+		String pdf = new String(saved.toByteArray(), StandardCharsets.ISO_8859_1);
+		int startxref = pdf.lastIndexOf("startxref");
+		String broken = pdf.substring(0, startxref) + pdf.substring(startxref).replaceFirst("\\d+", "999999");
+		byte[] content = broken.getBytes(StandardCharsets.ISO_8859_1);
+
+		// in-memory content goes through the lazy parser first
+		List<PageRange> pages = service.extractMetadata(content, content.length, "broken.pdf");
+
+		assertEquals(2, PageRange.pageCount(pages));
+		assertEquals(595, PageRange.forPage(pages, 2).width());
+	}
+}
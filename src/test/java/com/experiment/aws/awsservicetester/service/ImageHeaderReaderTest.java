@@ -0,0 +1,81 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageHeaderReaderTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void readsEachTiffPageFromItsOwnDirectory() throws Exception {
+		Path tiff = dir.resolve("pages.tif");
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+		try (ImageOutputStream out = ImageIO.createImageOutputStream(tiff.toFile())) {
+			writer.setOutput(out);
+			writer.prepareWriteSequence(null);
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionType("LZW");
+			writer.writeToSequence(new IIOImage(new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB), null, null), param);
+			writer.writeToSequence(new IIOImage(new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_GRAY), null, null), param);
+			writer.endWriteSequence();
+		} finally {
+			writer.dispose();
+		}
+
+		ImageHeaderReader.Result result;
+		try (ByteRangeSource source = new FileByteRangeSource(tiff)) {
+			result = ImageHeaderReader.read(source);
+		}
+
+		List<ImageHeaderReader.PageInfo> pages = result.pages();
+		assertEquals(2, pages.size());
+		assertEquals(800, pages.get(0).width());
+		assertEquals(24, pages.get(0).bitsPerPixel());
+		assertEquals("RGB", pages.get(0).colorType());
+		assertEquals(300, pages.get(1).width());
+		assertEquals(200, pages.get(1).height());
+		assertEquals(8, pages.get(1).bitsPerPixel());
+		assertEquals("GRAYSCALE", pages.get(1).colorType());
+		assertEquals("LZW", pages.get(1).compression());
+		assertTrue(result.bytesRead() < 1024, "only directory bytes should be read");
+	}
+
+	@Test
+	void readsJpegAndPngHeaders() throws Exception {
+		Path jpeg = dir.resolve("photo.jpg");
+		ImageIO.write(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), "jpg", jpeg.toFile());
+		Path png = dir.resolve("scan.png");
+		ImageIO.write(new BufferedImage(120, 90, BufferedImage.TYPE_BYTE_GRAY), "png", png.toFile());
+
+		try (ByteRangeSource source = new FileByteRangeSource(jpeg)) {
+			ImageHeaderReader.PageInfo page = ImageHeaderReader.read(source).pages().get(0);
+			assertEquals(640, page.width());
+			assertEquals(480, page.height());
+			assertEquals(24, page.bitsPerPixel());
+		}
+		try (ByteRangeSource source = new FileByteRangeSource(png)) {
+			ImageHeaderReader.Result result = ImageHeaderReader.read(source);
+			assertEquals("png", result.format());
+			assertEquals(120, result.pages().get(0).width());
+			assertEquals("GRAYSCALE", result.pages().get(0).colorType());
+			assertTrue(result.bytesRead() < Files.size(png));
+		}
+	}
+}
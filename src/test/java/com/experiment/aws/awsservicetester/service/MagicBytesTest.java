@@ -0,0 +1,52 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.tika.detect.DefaultDetector;
+import org.apache.tika.metadata.Metadata;
+import org.junit.jupiter.api.Test;
+
+class MagicBytesTest {
+
+	private final DefaultDetector tika = new DefaultDetector();
+
+	@Test
+	void agreesWithTikaOnSupportedFormats() throws Exception {
+		BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+		for (String format : new String[] {"png", "jpeg", "tiff", "gif", "bmp"}) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ImageIO.write(image, format, out);
+			assertSameAsTika(out.toByteArray());
+		}
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage());
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			document.save(out);
+			assertSameAsTika(out.toByteArray());
+		}
+	}
+
+	@Test
+	void leavesUnknownAndTruncatedInputToTika() {
+		byte[] text = "plain text, not an image".getBytes();
+		assertNull(MagicBytes.detect(text, MagicBytes.HEADER_LENGTH));
+		assertNull(MagicBytes.detect(new byte[] {(byte) 0x89, 'P', 'N', 'G'}, 4));
+		assertNull(MagicBytes.detect(new byte[MagicBytes.HEADER_LENGTH], 0));
+	}
+
+	private void assertSameAsTika(byte[] file) throws Exception {
+		byte[] header = Arrays.copyOf(file, MagicBytes.HEADER_LENGTH);
+		String expected = tika.detect(new ByteArrayInputStream(file), new Metadata()).toString();
+		assertEquals(expected, MagicBytes.detect(header, Math.min(file.length, header.length)));
+	}
+}
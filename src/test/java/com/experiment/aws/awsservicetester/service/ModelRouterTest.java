@@ -0,0 +1,58 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.experiment.aws.awsservicetester.service.ModelRouter.Operation;
+
+class ModelRouterTest {
+
+	// sentiment: small -> big fallback; p95 limit 1s, error rate 20%, 5 samples, 60s window
+	private static ModelRouter router() {
+		return new ModelRouter("big", "", 1024, "small", "big", 16, "big", "", 1024, 1000, 0.2, 5, 60);
+	}
+
+	@Test
+	void fallsBackWhenPrimaryIsSlow() {
+		ModelRouter router = router();
+		for (int i = 0; i < 5; i++) {
+			router.record("small", TimeUnit.MILLISECONDS.toNanos(3000), true);
+		}
+
+		assertEquals("big", router.select(Operation.SENTIMENT));
+		// routes without a fallback are unaffected
+		assertEquals("big", router.select(Operation.EXTRACTION));
+	}
+
+	@Test
+	void staysOnPrimaryBelowMinSamplesOrWithoutErrors() {
+		ModelRouter router = router();
+		for (int i = 0; i < 4; i++) {
+			router.record("small", TimeUnit.MILLISECONDS.toNanos(3000), false);
+		}
+		assertEquals("small", router.select(Operation.SENTIMENT));
+
+		ModelRouter healthy = router();
+		for (int i = 0; i < 10; i++) {
+			healthy.record("small", TimeUnit.MILLISECONDS.toNanos(200), true);
+		}
+		assertEquals("small", healthy.select(Operation.SENTIMENT));
+	}
+
+	@Test
+	void returnsToPrimaryOnceSlowSamplesAgeOut() throws Exception {
+		ModelRouter router = new ModelRouter("big", "", 1024, "small", "big", 16, "big", "", 1024, 1000, 0.2, 5, 1);
+		for (int i = 0; i < 5; i++) {
+			router.record("small", TimeUnit.MILLISECONDS.toNanos(3000), true);
+		}
+		assertEquals("big", router.select(Operation.SENTIMENT));
+
+		Thread.sleep(1100);
+
+		// no new calls were recorded; the cached window still expires with its oldest sample
+		assertEquals("small", router.select(Operation.SENTIMENT));
+	}
+}
@@ -0,0 +1,48 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.experiment.aws.awsservicetester.models.OcrJobResult;
+
+import software.amazon.awssdk.services.textract.TextractClient;
+import software.amazon.awssdk.services.textract.model.GetDocumentTextDetectionRequest;
+import software.amazon.awssdk.services.textract.model.GetDocumentTextDetectionResponse;
+import software.amazon.awssdk.services.textract.model.InvalidJobIdException;
+
+class OcrServiceTest {
+
+	@Test
+	void stopsWatchingAfterConsecutiveErrors() throws Exception {
+		AtomicInteger polls = new AtomicInteger();
+		TextractClient textract = new TextractClient() {
+			@Override
+			public GetDocumentTextDetectionResponse getDocumentTextDetection(GetDocumentTextDetectionRequest request) {
+				polls.incrementAndGet();
+				throw InvalidJobIdException.builder().message("unknown job").build();
+			}
+
+			@Override
+			public String serviceName() {
+				return "textract";
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		OcrService service = new OcrService(textract, null, new SimpleMeterRegistry(), 1, 30, 3);
+
+		OcrJobResult result = service.watchJob("job-1").get(5, TimeUnit.SECONDS);
+
+		assertTrue(result.status.startsWith("ERROR"), result.status);
+		assertEquals(3, polls.get());
+	}
+}
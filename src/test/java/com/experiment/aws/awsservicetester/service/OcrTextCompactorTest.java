@@ -0,0 +1,87 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.experiment.aws.awsservicetester.models.LineInfo;
+import com.experiment.aws.awsservicetester.models.PageResult;
+
+class OcrTextCompactorTest {
+
+	private static PageResult page(int number, Object... linesAndConfidences) {
+		PageResult page = new PageResult(number, "");
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < linesAndConfidences.length; i += 2) {
+			String line = (String) linesAndConfidences[i];
+			page.lines.add(new LineInfo(null, line, (Float) linesAndConfidences[i + 1]));
+			text.append(line).append("\n");
+		}
+		page.text = text.toString();
+		return page;
+	}
+
+	@Test
+	void dropsNoiseAndKeepsFirstCopyOfBoilerplate() {
+		OcrTextCompactor compactor = new OcrTextCompactor(true, 50, 0.5, 0);
+		List<PageResult> pages = List.of(
+				page(1, "ACME Bank Statement 1/2", 99f, "Account holder: Jane Doe", 98f, "x#~", 12f, "Page 1 of 2", 97f),
+				page(2, "ACME Bank Statement 2/2", 99f, "Closing balance: 120.00", 98f, "Page 2 of 2", 97f));
+		OcrTextCompactor.Report report = new OcrTextCompactor.Report();
+
+		List<PageResult> compacted = compactor.compact(pages, report);
+
+		assertEquals("ACME Bank Statement 1/2\nAccount holder: Jane Doe\n", compacted.get(0).text);
+		assertEquals("Closing balance: 120.00\n", compacted.get(1).text);
+		assertEquals(1, report.lowConfidenceLines);
+		assertEquals(2, report.pageNumberLines);
+		assertEquals(1, report.boilerplateLines);
+		assertTrue(report.promptTokens < report.originalTokens);
+		// the OCR result itself is left untouched
+		assertTrue(pages.get(1).text.contains("Page 2 of 2"));
+	}
+
+	@Test
+	void cutsTextAtTokenBudget() {
+		OcrTextCompactor compactor = new OcrTextCompactor(false, 50, 0.5, 10);
+		List<PageResult> pages = List.of(page(1, "first line of the document", 99f),
+				page(2, "a second line that no longer fits in the budget", 99f));
+		OcrTextCompactor.Report report = new OcrTextCompactor.Report();
+
+		String text = compactor.joinWithinBudget(compactor.compact(pages, report), report);
+
+		assertEquals("first line of the document\n", text);
+		assertTrue(report.truncatedTokens > 0);
+		assertFalse(text.contains("second"));
+	}
+
+	@Test
+	void keepsLabelLinesWhoseValuesDifferPerPage() {
+		OcrTextCompactor compactor = new OcrTextCompactor(true, 50, 0.5, 0);
+		List<PageResult> pages = List.of(
+				page(1, "ACME Bank Statement", 99f, "Opening balance: 10.00", 98f, "Closing balance: 95.00", 98f, "Branch 042", 99f),
+				page(2, "ACME Bank Statement", 99f, "Opening balance: 95.00", 98f, "Closing balance: 120.00", 98f, "Branch 042", 99f));
+		OcrTextCompactor.Report report = new OcrTextCompactor.Report();
+
+		List<PageResult> compacted = compactor.compact(pages, report);
+
+		assertEquals("Opening balance: 95.00\nClosing balance: 120.00\n", compacted.get(1).text);
+		assertEquals(2, report.boilerplateLines);
+	}
+
+	@Test
+	void dropsBareNumbersOnlyWhenTheyAreThePageNumber() {
+		OcrTextCompactor compactor = new OcrTextCompactor(true, 50, 0.5, 0);
+		List<PageResult> pages = List.of(page(3, "PIN", 99f, "4821", 99f, "- 3 -", 99f));
+		OcrTextCompactor.Report report = new OcrTextCompactor.Report();
+
+		List<PageResult> compacted = compactor.compact(pages, report);
+
+		assertEquals("PIN\n4821\n", compacted.get(0).text);
+		assertEquals(1, report.pageNumberLines);
+	}
+}
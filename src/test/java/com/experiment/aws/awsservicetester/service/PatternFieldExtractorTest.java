@@ -0,0 +1,69 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.experiment.aws.awsservicetester.config.FieldExtractorConfig;
+import com.experiment.aws.awsservicetester.models.LineInfo;
+
+class PatternFieldExtractorTest {
+
+	private final FieldExtractorConfig config = new FieldExtractorConfig();
+
+	private static List<LineInfo> lines(String... texts) {
+		return Arrays.stream(texts).map(t -> new LineInfo("id", t, 99.0f)).toList();
+	}
+
+	@Test
+	void picksTheDateNextToItsLabel() {
+		List<LineInfo> lines = lines("Date of Issue: 01/02/2020", "Date of Birth", "14-Mar-1990");
+
+		assertEquals("14-Mar-1990", config.dateExtractor().extract("date_of_birth", lines).orElseThrow().value());
+		assertEquals("01/02/2020", config.dateExtractor().extract("issue_date", lines).orElseThrow().value());
+	}
+
+	@Test
+	void leavesAmbiguousValuesUnresolved() {
+		List<LineInfo> lines = lines("Subtotal $10.00", "Tax $1.00");
+
+		assertTrue(config.amountExtractor().extract("total_amount", lines).isEmpty());
+	}
+
+	@Test
+	void findsSingleIdentifiers() {
+		List<LineInfo> lines = lines("Permanent Account Number", "ABCDE1234F", "mail: jane.doe@example.com");
+
+		assertEquals("ABCDE1234F", config.panExtractor().extract("pan_number", lines).orElseThrow().value());
+		assertEquals("jane.doe@example.com", config.emailExtractor().extract("email", lines).orElseThrow().value());
+	}
+
+	@Test
+	void matchesWholeWordsOfTheFieldName() {
+		assertTrue(config.dateExtractor().supports("Expiry Date"));
+		assertTrue(config.amountExtractor().supports("total_due"));
+		assertTrue(config.phoneExtractor().supports("contact_number"));
+
+		assertFalse(config.dateExtractor().supports("candidate_name"));
+		assertFalse(config.dateExtractor().supports("updated_by"));
+		assertFalse(config.dateExtractor().supports("validator"));
+		assertFalse(config.emailExtractor().supports("mailing_address"));
+		assertFalse(config.phoneExtractor().supports("contact_name"));
+		assertFalse(config.amountExtractor().supports("total_pages"));
+		assertFalse(config.amountExtractor().supports("due_diligence"));
+		assertFalse(config.amountExtractor().supports("prepaid_plan"));
+	}
+
+	@Test
+	void leavesTheOnlyDateUnresolvedWhenItBelongsToAnotherLabel() {
+		List<LineInfo> lines = lines("Name: Jane Doe", "Date of Birth: 01/02/1990");
+
+		assertTrue(config.dateExtractor().extract("expiry_date", lines).isEmpty());
+		assertEquals("01/02/1990", config.dateExtractor().extract("birth_date", lines).orElseThrow().value());
+	}
+}
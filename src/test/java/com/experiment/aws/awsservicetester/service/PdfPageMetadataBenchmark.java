@@ -0,0 +1,81 @@
+package com.experiment.aws.awsservicetester.service;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+/**
+ * Manual benchmark (not run by Surefire) comparing the per-page cost of the old PDF metadata loop, which
+ * opened a PDPageContentStream per page, with {@link PdfPageTreeWalker}.
+ * Run the main method on the test classpath; the optional argument is the page count (default 1000).
+ */
+public class PdfPageMetadataBenchmark {
+
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		File pdf = Files.createTempFile("benchmark-", ".pdf").toFile();
+		try {
+			try (PDDocument document = new PDDocument()) {
+				for (int i = 0; i < pageCount; i++) {
+					PDPage page = new PDPage(i % 2 == 0 ? PDRectangle.LETTER : PDRectangle.A4);
+					page.setRotation(i % 4 * 90);
+					document.addPage(page);
+				}
+				document.save(pdf);
+			}
+			for (int round = 0; round < ROUNDS; round++) {
+				long legacy = time(pdf, PdfPageMetadataBenchmark::legacy);
+				long walker = time(pdf, PdfPageMetadataBenchmark::walker);
+				System.out.printf("round %d: content-stream loop %.1f us/page, page-tree walker %.1f us/page%n", round + 1,
+						legacy / 1000.0 / pageCount, walker / 1000.0 / pageCount);
+			}
+		} finally {
+			pdf.delete();
+		}
+	}
+
+	private interface PageLoop {
+		long run(PDDocument document) throws Exception;
+	}
+
+	// Loading is excluded; only the per-page work is timed
+	private static long time(File pdf, PageLoop loop) throws Exception {
+		try (PDDocument document = PDDocument.load(pdf, MemoryUsageSetting.setupTempFileOnly())) {
+			long start = System.nanoTime();
+			long checksum = loop.run(document);
+			long elapsed = System.nanoTime() - start;
+			if (checksum == 42) {
+				System.out.print("");
+			}
+			return elapsed;
+		}
+	}
+
+	// The loop FileMetadataService used before the page-tree walker
+	private static long legacy(PDDocument document) throws Exception {
+		long checksum = 0;
+		for (int i = 0; i < document.getNumberOfPages(); i++) {
+			PDPage page = document.getPage(i);
+			checksum += (long) page.getMediaBox().getWidth() + page.getRotation();
+			PDPageContentStream contentStream = new PDPageContentStream(document, page,
+					PDPageContentStream.AppendMode.APPEND, true, true);
+			contentStream.close();
+		}
+		return checksum;
+	}
+
+	private static long walker(PDDocument document) {
+		long checksum = 0;
+		for (PdfPageTreeWalker.Page page : PdfPageTreeWalker.pages(document)) {
+			checksum += (long) page.mediaBox().getWidth() + page.rotation();
+		}
+		return checksum;
+	}
+}
@@ -0,0 +1,97 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.experiment.aws.awsservicetester.models.FileMetadataResponse;
+import com.experiment.aws.awsservicetester.models.PageRange;
+
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+/**
+ * Reads metadata through ranged GETs against an S3Service stand-in backed by a local file.
+ */
+class S3MetadataTest {
+
+	@TempDir
+	Path dir;
+
+	private static class FileBackedS3Service extends S3Service {
+		final Path file;
+		final AtomicLong bytesServed = new AtomicLong();
+
+		FileBackedS3Service(Path file) {
+			super(null, null, null);
+			this.file = file;
+		}
+
+		@Override
+		public HeadObjectResponse headObject(String bucket, String key) {
+			try {
+				return HeadObjectResponse.builder().contentLength(Files.size(file)).eTag("\"etag\"")
+						.contentType("application/pdf").build();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public byte[] fetchRange(String bucket, String key, long start, long endInclusive, String eTag) {
+			try {
+				byte[] all = Files.readAllBytes(file);
+				bytesServed.addAndGet(endInclusive - start + 1);
+				return Arrays.copyOfRange(all, (int) start, (int) endInclusive + 1);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	@Test
+	void readsPdfPagesWithoutDownloadingTheObject() throws Exception {
+		Path pdf = dir.resolve("large.pdf");
+		try (PDDocument document = new PDDocument()) {
+			for (int i = 0; i < 100; i++) {
+				PDPage page = new PDPage(i == 7 ? PDRectangle.A4 : PDRectangle.LETTER);
+				document.addPage(page);
+				// page content makes up the bulk of the file, as in real documents
+				try (PDPageContentStream content = new PDPageContentStream(document, page, AppendMode.OVERWRITE, false)) {
+					content.beginText();
+					content.setFont(PDType1Font.HELVETICA, 8);
+					for (int line = 0; line < 400; line++) {
+						content.newLineAtOffset(0, 9);
+						content.showText("Line " + line + " of page " + i + " with some filler text to make it longer");
+					}
+					content.endText();
+				}
+			}
+			document.save(pdf.toFile());
+		}
+		FileBackedS3Service s3 = new FileBackedS3Service(pdf);
+		FileMetadataService service = new FileMetadataService(new FileMetadataCache(false, 0), s3, false, 1, 1000, 4096, 64);
+
+		FileMetadataResponse response = service.extractMetadata("bucket", "large.pdf");
+
+		assertEquals(100, response.getPageCount());
+		assertEquals(595, PageRange.forPage(response.getPages(), 8).width());
+		assertEquals(612, PageRange.forPage(response.getPages(), 9).width());
+		assertTrue(s3.bytesServed.get() < Files.size(pdf) / 10,
+				s3.bytesServed.get() + " of " + Files.size(pdf) + " bytes fetched");
+	}
+}
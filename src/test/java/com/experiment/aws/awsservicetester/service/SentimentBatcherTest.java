@@ -0,0 +1,57 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+class SentimentBatcherTest {
+
+	/** Records each batched call and answers "positive" for every text. */
+	private static class RecordingBedrockService extends BedrockService {
+		final List<List<String>> calls = new CopyOnWriteArrayList<>();
+
+		RecordingBedrockService() {
+			super(null, null, null, null, false, false, 300);
+		}
+
+		@Override
+		public List<String> analyzeSentimentBatch(List<String> texts) {
+			calls.add(texts);
+			List<String> out = new ArrayList<>();
+			texts.forEach(t -> out.add(t.startsWith("bad") ? "negative" : "positive"));
+			return out;
+		}
+	}
+
+	@Test
+	void concurrentTextsShareOneCall() throws Exception {
+		RecordingBedrockService bedrock = new RecordingBedrockService();
+		SentimentBatcher batcher = new SentimentBatcher(bedrock, 50, 20, 1);
+
+		CompletableFuture<String> a = batcher.submit("good one");
+		CompletableFuture<String> b = batcher.submit("bad one");
+		CompletableFuture<String> c = batcher.submit("good one");
+
+		assertEquals("positive", a.get());
+		assertEquals("negative", b.get());
+		assertEquals("positive", c.get());
+		// duplicates are sent once
+		assertEquals(List.of(List.of("good one", "bad one")), bedrock.calls);
+	}
+
+	@Test
+	void fullBatchIsSentWithoutWaitingForTheWindow() throws Exception {
+		RecordingBedrockService bedrock = new RecordingBedrockService();
+		SentimentBatcher batcher = new SentimentBatcher(bedrock, 60_000, 2, 1);
+
+		List<CompletableFuture<String>> futures = batcher.submitAll(List.of("x", "y"));
+
+		assertEquals("positive", futures.get(1).get());
+		assertEquals(1, bedrock.calls.size());
+	}
+}
@@ -0,0 +1,117 @@
+package com.experiment.aws.awsservicetester.service;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Delivers webhooks to a local HTTP stub that answers each attempt with a scripted status.
+ */
+class WebhookNotifierTest {
+
+	private final List<String> bodies = new CopyOnWriteArrayList<>();
+	private HttpServer stub;
+
+	// timeout 300 ms, backoff 10 ms doubling per attempt
+	private final WebhookNotifier notifier = new WebhookNotifier(RestClient.builder(), 4, 10, 300);
+
+	/**
+	 * Starts the stub; {@code statusForAttempt} maps the 1-based attempt to the status to answer, or to 0 to
+	 * stall past the client's read timeout. Returns the callback URL.
+	 */
+	private String startStub(IntUnaryOperator statusForAttempt, CountDownLatch received) throws Exception {
+		stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stub.createContext("/hook", exchange -> {
+			bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			int status = statusForAttempt.applyAsInt(bodies.size());
+			received.countDown();
+			if (status == 0) {
+				try {
+					Thread.sleep(1000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				status = 200;
+			}
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+		});
+		stub.start();
+		return "http://127.0.0.1:" + stub.getAddress().getPort() + "/hook";
+	}
+
+	@AfterEach
+	void stopStub() {
+		if (stub != null) {
+			stub.stop(0);
+		}
+	}
+
+	@Test
+	void retriesServerErrorsThrottlingAndTimeoutsUntilDelivered() throws Exception {
+		CountDownLatch received = new CountDownLatch(4);
+		String url = startStub(attempt -> switch (attempt) {
+			case 1 -> 503;
+			case 2 -> 429;
+			case 3 -> 0;
+			default -> 204;
+		}, received);
+
+		notifier.notify(url, Map.of("jobId", "job-1"));
+
+		assertTrue(received.await(5, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		assertEquals(4, bodies.size());
+		bodies.forEach(body -> assertEquals("{\"jobId\":\"job-1\"}", body));
+	}
+
+	@Test
+	void givesUpAfterMaxAttempts() throws Exception {
+		CountDownLatch received = new CountDownLatch(4);
+		String url = startStub(attempt -> 500, received);
+
+		notifier.notify(url, Map.of("jobId", "job-1"));
+
+		assertTrue(received.await(5, TimeUnit.SECONDS));
+		// a fifth attempt would have come after 80 ms
+		Thread.sleep(500);
+		assertEquals(4, bodies.size());
+	}
+
+	@Test
+	void doesNotRetryOtherClientErrors() throws Exception {
+		CountDownLatch received = new CountDownLatch(1);
+		String url = startStub(attempt -> 404, received);
+
+		notifier.notify(url, Map.of("jobId", "job-1"));
+
+		assertTrue(received.await(5, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		assertEquals(1, bodies.size());
+	}
+
+	@Test
+	void acceptsOnlyAbsoluteHttpUrls() {
+		assertDoesNotThrow(() -> notifier.validate("http://localhost:8080/hook"));
+		assertDoesNotThrow(() -> notifier.validate("https://example.com/jobs?id=1"));
+		for (String url : List.of("ftp://example.com/hook", "/relative/hook", "example.com/hook", "http://", "not a url")) {
+			assertThrows(IllegalArgumentException.class, () -> notifier.validate(url), url);
+		}
+	}
+}